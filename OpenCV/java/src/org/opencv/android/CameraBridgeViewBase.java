@@ -191,6 +191,46 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         public Mat gray();
     };
 
+    /**
+     * Frame that additionally carries the capture result it was produced with.
+     * Views backed by camera2 deliver frames implementing this interface, clients can check for it
+     * with instanceof. Values that the camera did not report are -1.
+     * Same as for CvCameraViewFrame, do not keep the object outside of onCameraFrame callback!
+     */
+    public interface CvCameraViewFrame2 extends CvCameraViewFrame {
+
+        /**
+         * Start of exposure in nanoseconds, same time base as Image.getTimestamp()
+         */
+        public long timestamp();
+
+        /**
+         * Frame number assigned by the camera device, gaps mean dropped frames
+         */
+        public long frameNumber();
+
+        /**
+         * Exposure time in nanoseconds
+         */
+        public long exposureTime();
+
+        /**
+         * Sensor sensitivity (ISO)
+         */
+        public int sensitivity();
+
+        /**
+         * One of CaptureResult.FLASH_STATE_* values
+         */
+        public int flashState();
+
+        /**
+         * True if the flash unit was lit for the whole frame, in torch mode or fired by
+         * auto-exposure: flashState() is CaptureResult.FLASH_STATE_FIRED
+         */
+        public boolean isFlashFired();
+    };
+
     public void surfaceChanged(SurfaceHolder arg0, int arg1, int arg2, int arg3) {
         Log.d(TAG, "call surfaceChanged event");
         synchronized(mSyncObject) {
@@ -404,10 +444,15 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected void deliverAndDrawFrame(CvCameraViewFrame frame) {
         Mat modified;
 
-        if (mListener != null) {
-            modified = mListener.onCameraFrame(frame);
-        } else {
-            modified = frame.rgba();
+        boolean traced = FrameTrace.begin(FrameTrace.ON_CAMERA_FRAME);
+        try {
+            if (mListener != null) {
+                modified = mListener.onCameraFrame(frame);
+            } else {
+                modified = frame.rgba();
+            }
+        } finally {
+            FrameTrace.end(traced);
         }
 
         boolean bmpValid = true;
@@ -423,32 +468,41 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         }
 
         if (bmpValid && mCacheBitmap != null) {
-            Canvas canvas = getHolder().lockCanvas();
-            if (canvas != null) {
-                canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
-                if (BuildConfig.DEBUG)
-                    Log.d(TAG, "mStretch value: " + mScale);
-
-                if (mScale != 0) {
-                    canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2),
-                         (int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2 + mScale*mCacheBitmap.getWidth()),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2 + mScale*mCacheBitmap.getHeight())), null);
-                } else {
-                     canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((canvas.getWidth() - mCacheBitmap.getWidth()) / 2,
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2,
-                         (canvas.getWidth() - mCacheBitmap.getWidth()) / 2 + mCacheBitmap.getWidth(),
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2 + mCacheBitmap.getHeight()), null);
-                }
+            traced = FrameTrace.begin(FrameTrace.DRAW_FRAME);
+            try {
+                drawFrame();
+            } finally {
+                FrameTrace.end(traced);
+            }
+        }
+    }
 
-                if (mFpsMeter != null) {
-                    mFpsMeter.measure();
-                    mFpsMeter.draw(canvas, 20, 30);
-                }
-                getHolder().unlockCanvasAndPost(canvas);
+    private void drawFrame() {
+        Canvas canvas = getHolder().lockCanvas();
+        if (canvas != null) {
+            canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
+            if (BuildConfig.DEBUG)
+                Log.d(TAG, "mStretch value: " + mScale);
+
+            if (mScale != 0) {
+                canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
+                     new Rect((int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2),
+                     (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2),
+                     (int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2 + mScale*mCacheBitmap.getWidth()),
+                     (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2 + mScale*mCacheBitmap.getHeight())), null);
+            } else {
+                 canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
+                     new Rect((canvas.getWidth() - mCacheBitmap.getWidth()) / 2,
+                     (canvas.getHeight() - mCacheBitmap.getHeight()) / 2,
+                     (canvas.getWidth() - mCacheBitmap.getWidth()) / 2 + mCacheBitmap.getWidth(),
+                     (canvas.getHeight() - mCacheBitmap.getHeight()) / 2 + mCacheBitmap.getHeight()), null);
+            }
+
+            if (mFpsMeter != null) {
+                mFpsMeter.measure();
+                mFpsMeter.draw(canvas, 20, 30);
             }
+            getHolder().unlockCanvasAndPost(canvas);
         }
     }
 
@@ -1,23 +1,43 @@
 package org.opencv.android;
 
-import java.text.DecimalFormat;
-
-import org.opencv.core.Core;
+import java.util.Arrays;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.util.Log;
 
+/**
+ * Frame rate and frame interval statistics of a camera stream.
+ *
+ * measure() is called once per frame and only stores the interval since the previous frame; every
+ * STEP frames the statistics are recomputed over the last WINDOW intervals. Neither allocates.
+ * The text is formatted by draw(), and only when the numbers changed since the last draw().
+ *
+ * Missed frames are counted against the expected frame period: an interval of about n periods
+ * means n - 1 frames were not delivered. Without setExpectedFrameRate() the median interval of the
+ * window is taken as the period.
+ */
 public class FpsMeter {
-    private static final String TAG               = "FpsMeter";
     private static final int    STEP              = 20;
-    private static final DecimalFormat FPS_FORMAT = new DecimalFormat("0.00");
+    private static final int    WINDOW            = 128;
 
+    private final long[]        mIntervals = new long[WINDOW]; // ring buffer, ns
+    private final long[]        mSorted = new long[WINDOW];
+    private int                 mIntervalCount;
+    private int                 mNext;
     private int                 mFramesCounter;
-    private double              mFrequency;
     private long                mprevFrameTime;
-    private String              mStrfps;
+    private long                mExpectedPeriodNs;
+
+    private volatile double     mFps;
+    private volatile long       mP50Ns;
+    private volatile long       mP99Ns;
+    private volatile long       mMaxNs;
+    private volatile double     mJitterNs;
+    private volatile long       mMissedFrames;
+    private boolean             mUpdated;
+
+    private final StringBuilder mText = new StringBuilder(64);
     Paint                       mPaint;
     boolean                     mIsInitialized = false;
     int                         mWidth = 0;
@@ -25,9 +45,14 @@ public class FpsMeter {
 
     public void init() {
         mFramesCounter = 0;
-        mFrequency = Core.getTickFrequency();
-        mprevFrameTime = Core.getTickCount();
-        mStrfps = "";
+        mIntervalCount = 0;
+        mNext = 0;
+        mprevFrameTime = System.nanoTime();
+        mFps = 0;
+        mP50Ns = mP99Ns = mMaxNs = 0;
+        mJitterNs = 0;
+        mMissedFrames = 0;
+        mText.setLength(0);
 
         mPaint = new Paint();
         mPaint.setColor(Color.BLUE);
@@ -38,29 +63,124 @@ public class FpsMeter {
         if (!mIsInitialized) {
             init();
             mIsInitialized = true;
-        } else {
-            mFramesCounter++;
-            if (mFramesCounter % STEP == 0) {
-                long time = Core.getTickCount();
-                double fps = STEP * mFrequency / (time - mprevFrameTime);
-                mprevFrameTime = time;
-                if (mWidth != 0 && mHeight != 0)
-                    mStrfps = FPS_FORMAT.format(fps) + " FPS@" + Integer.valueOf(mWidth) + "x" + Integer.valueOf(mHeight);
-                else
-                    mStrfps = FPS_FORMAT.format(fps) + " FPS";
-                Log.i(TAG, mStrfps);
-            }
+            return;
         }
+        long time = System.nanoTime();
+        mIntervals[mNext] = time - mprevFrameTime;
+        mNext = (mNext + 1) % WINDOW;
+        if (mIntervalCount < WINDOW)
+            mIntervalCount++;
+        mprevFrameTime = time;
+
+        mFramesCounter++;
+        if (mFramesCounter % STEP == 0)
+            update();
+    }
+
+    /**
+     * Sets the frame rate the camera was configured for, used to count missed frames.
+     * 0 derives the period from the median measured interval.
+     */
+    public void setExpectedFrameRate(double fps) {
+        mExpectedPeriodNs = fps > 0 ? Math.round(1e9 / fps) : 0;
     }
 
     public void setResolution(int width, int height) {
         mWidth = width;
         mHeight = height;
+        mUpdated = true;
+    }
+
+    /** Frames per second over the window */
+    public double getFps() {
+        return mFps;
+    }
+
+    /** Median frame interval over the window, in nanoseconds */
+    public long getIntervalP50Ns() {
+        return mP50Ns;
+    }
+
+    /** 99th percentile of the frame interval over the window, in nanoseconds */
+    public long getIntervalP99Ns() {
+        return mP99Ns;
+    }
+
+    public long getIntervalMaxNs() {
+        return mMaxNs;
+    }
+
+    /** Standard deviation of the frame interval over the window, in nanoseconds */
+    public double getJitterNs() {
+        return mJitterNs;
+    }
+
+    /** Frames missed since init(), counted every STEP frames */
+    public long getMissedFrames() {
+        return mMissedFrames;
     }
 
     public void draw(Canvas canvas, float offsetx, float offsety) {
-        Log.d(TAG, mStrfps);
-        canvas.drawText(mStrfps, offsetx, offsety, mPaint);
+        if (mUpdated) {
+            mUpdated = false;
+            format();
+        }
+        canvas.drawText(mText, 0, mText.length(), offsetx, offsety, mPaint);
+    }
+
+    private void update() {
+        int n = mIntervalCount;
+        long sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += mIntervals[i];
+        double mean = (double) sum / n;
+        double var = 0;
+        for (int i = 0; i < n; i++) {
+            double d = mIntervals[i] - mean;
+            var += d * d;
+        }
+        System.arraycopy(mIntervals, 0, mSorted, 0, n);
+        Arrays.sort(mSorted, 0, n);
+        long p50 = mSorted[(n - 1) / 2];
+
+        // only the intervals added since the previous update, the older ones were counted then
+        long period = mExpectedPeriodNs > 0 ? mExpectedPeriodNs : p50;
+        long missed = 0;
+        int fresh = Math.min(STEP, n);
+        for (int i = 1; i <= fresh; i++) {
+            long interval = mIntervals[(mNext - i + WINDOW) % WINDOW];
+            long frames = (interval + period / 2) / period;
+            if (frames > 1)
+                missed += frames - 1;
+        }
+
+        mFps = sum > 0 ? n * 1e9 / sum : 0;
+        mP50Ns = p50;
+        mP99Ns = mSorted[Math.max(0, (int) Math.ceil(n * 0.99) - 1)];
+        mMaxNs = mSorted[n - 1];
+        mJitterNs = Math.sqrt(var / n);
+        mMissedFrames += missed;
+        mUpdated = true;
     }
 
+    private void format() {
+        StringBuilder sb = mText;
+        sb.setLength(0);
+        appendFixed(sb, mFps, 100).append(" FPS");
+        if (mWidth != 0 && mHeight != 0)
+            sb.append('@').append(mWidth).append('x').append(mHeight);
+        sb.append(" p50 ");
+        appendFixed(sb, mP50Ns / 1e6, 10).append(" p99 ");
+        appendFixed(sb, mP99Ns / 1e6, 10).append(" jitter ");
+        appendFixed(sb, mJitterNs / 1e6, 10).append(" ms missed ").append(mMissedFrames);
+    }
+
+    // appends v with log10(scale) decimals, without DecimalFormat
+    private static StringBuilder appendFixed(StringBuilder sb, double v, int scale) {
+        long fixed = Math.round(v * scale);
+        sb.append(fixed / scale).append('.');
+        for (int s = scale / 10; s > 0; s /= 10)
+            sb.append((fixed / s) % 10);
+        return sb;
+    }
 }
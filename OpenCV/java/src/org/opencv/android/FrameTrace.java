@@ -0,0 +1,81 @@
+package org.opencv.android;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Optional android.os.Trace sections around the camera, conversion and processing stages, for
+ * Perfetto or systrace captures of production builds.
+ * <pre>
+ * boolean traced = FrameTrace.begin(FrameTrace.MAT_TO_BITMAP);
+ * try {
+ *     ...
+ * } finally {
+ *     FrameTrace.end(traced);
+ * }
+ * </pre>
+ * Tracing is off until setEnabled(true); while off, begin() and end() cost one volatile read.
+ * begin() returns whether it opened a section, so that a section is closed correctly even if
+ * tracing is switched off in between. Async slices (API 29+) follow one frame across threads,
+ * keyed by a frame number.
+ */
+public final class FrameTrace {
+
+    public static final String CAMERA_FRAME = "CameraFrame";
+    public static final String ACQUIRE_IMAGE = "AcquireImage";
+    public static final String FRAME_RGBA = "FrameRgba";
+    public static final String ON_CAMERA_FRAME = "OnCameraFrame";
+    public static final String DRAW_FRAME = "DrawFrame";
+    public static final String BITMAP_TO_MAT = "BitmapToMat";
+    public static final String MAT_TO_BITMAP = "MatToBitmap";
+
+    private static volatile boolean sEnabled;
+
+    private FrameTrace() {}
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Opens a section on the calling thread if tracing is enabled; pass the result to end().
+     * @param name - a constant, to avoid building a String per frame
+     */
+    public static boolean begin(String name) {
+        if (!sEnabled)
+            return false;
+        Trace.beginSection(name);
+        return true;
+    }
+
+    public static void end(boolean begun) {
+        if (begun)
+            Trace.endSection();
+    }
+
+    /**
+     * Starts an async slice of a frame, it may end on another thread; no-op below API 29.
+     */
+    public static boolean beginAsync(String name, long frameNumber) {
+        if (!sEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q)
+            return false;
+        Trace.beginAsyncSection(name, cookie(frameNumber));
+        return true;
+    }
+
+    /**
+     * @param begun - the result of beginAsync(), kept with the frame until it ends
+     */
+    public static void endAsync(boolean begun, String name, long frameNumber) {
+        if (begun && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            Trace.endAsyncSection(name, cookie(frameNumber));
+    }
+
+    private static int cookie(long frameNumber) {
+        return (int) (frameNumber ^ (frameNumber >>> 32));
+    }
+}
@@ -13,6 +13,8 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
@@ -55,6 +57,21 @@ public class JavaCamera2View extends CameraBridgeViewBase {
     private HandlerThread mBackgroundThread;
     protected Handler mBackgroundHandler;
 
+    /* Capture results waiting to be matched to images by sensor timestamp.
+     * Written and read on the background thread only, stored in primitive arrays so that
+     * tracking metadata does not allocate per frame. */
+    private static final int METADATA_RING_SIZE = 8;
+    private final long[] mMetaTimestamp = new long[METADATA_RING_SIZE];
+    private final long[] mMetaFrameNumber = new long[METADATA_RING_SIZE];
+    private final long[] mMetaExposureTime = new long[METADATA_RING_SIZE];
+    private final int[] mMetaSensitivity = new int[METADATA_RING_SIZE];
+    private final int[] mMetaFlashState = new int[METADATA_RING_SIZE];
+    private int mMetaNext = 0;
+    /* Image that arrived before its capture result, delivered as soon as the result shows up */
+    private Image mPendingImage;
+    private boolean mPendingTraced;
+    private JavaCamera2Frame mFrame;
+
     public JavaCamera2View(Context context, int cameraId) {
         super(context, cameraId);
     }
@@ -170,23 +187,42 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                 return;
             }
 
-            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, 2);
+            // one extra image for the frame waiting for its capture result
+            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, 3);
+            clearCaptureMetadata();
             mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
                 @Override
                 public void onImageAvailable(ImageReader reader) {
-                    Image image = reader.acquireLatestImage();
+                    boolean traced = FrameTrace.begin(FrameTrace.ACQUIRE_IMAGE);
+                    Image image;
+                    try {
+                        image = reader.acquireLatestImage();
+                    } finally {
+                        FrameTrace.end(traced);
+                    }
                     if (image == null)
                         return;
+                    // ends in deliverImage(), possibly after the capture result arrived
+                    boolean frameTraced = FrameTrace.beginAsync(FrameTrace.CAMERA_FRAME, image.getTimestamp());
 
                     // sanity checks - 3 planes
                     Image.Plane[] planes = image.getPlanes();
                     assert (planes.length == 3);
                     assert (image.getFormat() == mPreviewFormat);
 
-                    JavaCamera2Frame tempFrame = new JavaCamera2Frame(image);
-                    deliverAndDrawFrame(tempFrame);
-                    tempFrame.release();
-                    image.close();
+                    if (mPendingImage != null) {
+                        // its capture result never arrived, do not hold the pipeline any longer
+                        Image pending = mPendingImage;
+                        mPendingImage = null;
+                        deliverImage(pending, findCaptureMetadata(pending.getTimestamp()), mPendingTraced);
+                    }
+                    int slot = findCaptureMetadata(image.getTimestamp());
+                    if (slot < 0) {
+                        mPendingImage = image;
+                        mPendingTraced = frameTraced;
+                    } else {
+                        deliverImage(image, slot, frameTraced);
+                    }
                 }
             }, mBackgroundHandler);
             Surface surface = mImageReader.getSurface();
@@ -209,7 +245,7 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                             mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE,
                                     CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
 
-                            mCaptureSession.setRepeatingRequest(mPreviewRequestBuilder.build(), null, mBackgroundHandler);
+                            mCaptureSession.setRepeatingRequest(mPreviewRequestBuilder.build(), mCaptureCallback, mBackgroundHandler);
                             Log.i(LOGTAG, "CameraPreviewSession has been started");
                         } catch (Exception e) {
                             Log.e(LOGTAG, "createCaptureSession failed", e);
@@ -228,6 +264,60 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         }
     }
 
+    private final CameraCaptureSession.CaptureCallback mCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request, TotalCaptureResult result) {
+            Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (timestamp == null)
+                return;
+            int slot = mMetaNext;
+            mMetaNext = (mMetaNext + 1) % METADATA_RING_SIZE;
+            mMetaTimestamp[slot] = timestamp;
+            mMetaFrameNumber[slot] = result.getFrameNumber();
+            Long exposureTime = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+            mMetaExposureTime[slot] = exposureTime != null ? exposureTime : -1;
+            Integer sensitivity = result.get(CaptureResult.SENSOR_SENSITIVITY);
+            mMetaSensitivity[slot] = sensitivity != null ? sensitivity : -1;
+            Integer flashState = result.get(CaptureResult.FLASH_STATE);
+            mMetaFlashState[slot] = flashState != null ? flashState : -1;
+
+            if (mPendingImage != null && mPendingImage.getTimestamp() == mMetaTimestamp[slot]) {
+                Image pending = mPendingImage;
+                mPendingImage = null;
+                deliverImage(pending, slot, mPendingTraced);
+            }
+        }
+    };
+
+    private void clearCaptureMetadata() {
+        for (int i = 0; i < METADATA_RING_SIZE; i++)
+            mMetaTimestamp[i] = -1;
+        mMetaNext = 0;
+    }
+
+    private int findCaptureMetadata(long timestamp) {
+        for (int i = 0; i < METADATA_RING_SIZE; i++) {
+            if (mMetaTimestamp[i] == timestamp)
+                return i;
+        }
+        return -1;
+    }
+
+    /* traced - the result of FrameTrace.beginAsync() for this image */
+    private void deliverImage(Image image, int metadataSlot, boolean traced) {
+        long timestamp = image.getTimestamp();
+        try {
+            if (mFrame == null)
+                mFrame = new JavaCamera2Frame();
+            mFrame.setImage(image, metadataSlot);
+            deliverAndDrawFrame(mFrame);
+            mFrame.recycle();
+            image.close();
+        } finally {
+            FrameTrace.endAsync(traced, FrameTrace.CAMERA_FRAME, timestamp);
+        }
+    }
+
     @Override
     protected void disconnectCamera() {
         Log.i(LOGTAG, "close camera");
@@ -243,6 +333,16 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             }
         } finally {
             stopBackgroundThread();
+            if (null != mPendingImage) {
+                long timestamp = mPendingImage.getTimestamp();
+                mPendingImage.close();
+                mPendingImage = null;
+                FrameTrace.endAsync(mPendingTraced, FrameTrace.CAMERA_FRAME, timestamp);
+            }
+            if (null != mFrame) {
+                mFrame.release();
+                mFrame = null;
+            }
             if (null != mImageReader) {
                 mImageReader.close();
                 mImageReader = null;
@@ -327,7 +427,7 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return true;
     }
 
-    private class JavaCamera2Frame implements CvCameraViewFrame {
+    private class JavaCamera2Frame implements CvCameraViewFrame2 {
         @Override
         public Mat gray() {
             Image.Plane[] planes = mImage.getPlanes();
@@ -342,6 +442,15 @@ public class JavaCamera2View extends CameraBridgeViewBase {
 
         @Override
         public Mat rgba() {
+            boolean traced = FrameTrace.begin(FrameTrace.FRAME_RGBA);
+            try {
+                return convertToRgba();
+            } finally {
+                FrameTrace.end(traced);
+            }
+        }
+
+        private Mat convertToRgba() {
             Image.Plane[] planes = mImage.getPlanes();
             int w = mImage.getWidth();
             int h = mImage.getHeight();
@@ -428,19 +537,67 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         }
 
 
-        public JavaCamera2Frame(Image image) {
+        @Override
+        public long timestamp() {
+            return mImage.getTimestamp();
+        }
+
+        @Override
+        public long frameNumber() {
+            return mSlot < 0 ? -1 : mMetaFrameNumber[mSlot];
+        }
+
+        @Override
+        public long exposureTime() {
+            return mSlot < 0 ? -1 : mMetaExposureTime[mSlot];
+        }
+
+        @Override
+        public int sensitivity() {
+            return mSlot < 0 ? -1 : mMetaSensitivity[mSlot];
+        }
+
+        @Override
+        public int flashState() {
+            return mSlot < 0 ? -1 : mMetaFlashState[mSlot];
+        }
+
+        @Override
+        public boolean isFlashFired() {
+            return mSlot >= 0 && mMetaFlashState[mSlot] == CaptureResult.FLASH_STATE_FIRED;
+        }
+
+        public JavaCamera2Frame() {
             super();
-            mImage = image;
             mRgba = new Mat();
             mGray = new Mat();
         }
 
+        /**
+         * Points the frame to the next image, the RGBA buffer is kept between frames.
+         * @param metadataSlot - index into the capture metadata ring or -1 if the result is unknown
+         */
+        void setImage(Image image, int metadataSlot) {
+            mImage = image;
+            mSlot = metadataSlot;
+        }
+
+        /**
+         * Drops the references to the delivered image, its planes are about to be closed.
+         */
+        void recycle() {
+            mGray.release();
+            mImage = null;
+            mSlot = -1;
+        }
+
         public void release() {
             mRgba.release();
             mGray.release();
         }
 
         private Image mImage;
+        private int mSlot = -1;
         private Mat mRgba;
         private Mat mGray;
     };
@@ -1,6 +1,7 @@
 package org.opencv.android;
 
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 import android.content.Context;
 import android.graphics.ImageFormat;
@@ -31,15 +32,18 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
     private static final int MAGIC_TEXTURE_ID = 10;
     private static final String TAG = "JavaCameraView";
+    private static final int DEFAULT_CALLBACK_BUFFER_COUNT = 3;
 
-    private byte mBuffer[];
-    private Mat[] mFrameChain;
-    private int mChainIdx = 0;
-    private Thread mThread;
-    private boolean mStopThread;
+    private int mCallbackBufferCount = DEFAULT_CALLBACK_BUFFER_COUNT;
+    private byte[][] mBuffers;
+    private SpscQueue<byte[]> mFrameQueue;
+    private volatile int mPeakQueuedFrames;
+    private Mat mFrameMat;
+    private volatile Thread mThread;
+    private volatile boolean mStopThread;
 
     protected Camera mCamera;
-    protected JavaCameraFrame[] mCameraFrame;
+    protected JavaCameraFrame mCameraFrame;
     private SurfaceTexture mSurfaceTexture;
     private int mPreviewFormat = ImageFormat.NV21;
 
@@ -66,6 +70,39 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         super(context, attrs);
     }
 
+    /**
+     * Sets how many preview buffers are handed to the camera with addCallbackBuffer().
+     * Frames waiting for the processing thread keep their buffer, so a deeper ring lets a burst
+     * of slow frames be absorbed instead of being dropped by the camera.
+     * Takes effect on the next camera connection.
+     * @param count - number of callback buffers, at least 2
+     */
+    public void setCallbackBufferCount(int count) {
+        if (count < 2)
+            throw new IllegalArgumentException("At least 2 callback buffers are required: " + count);
+        mCallbackBufferCount = count;
+    }
+
+    public int getCallbackBufferCount() {
+        return mCallbackBufferCount;
+    }
+
+    /**
+     * Number of preview frames currently waiting for the processing thread.
+     */
+    public int getQueuedFrameCount() {
+        SpscQueue<byte[]> queue = mFrameQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * The highest number of waiting frames seen since the camera was connected.
+     * A value equal to getCallbackBufferCount() means the camera ran out of buffers and dropped frames.
+     */
+    public int getPeakQueuedFrameCount() {
+        return mPeakQueuedFrames;
+    }
+
     protected boolean initializeCamera(int width, int height) {
         Log.d(TAG, "Initialize java camera");
         boolean result = true;
@@ -190,20 +227,22 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
                     int size = mFrameWidth * mFrameHeight;
                     size  = size * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
-                    mBuffer = new byte[size];
 
-                    mCamera.addCallbackBuffer(mBuffer);
+                    /* Every callback buffer can be waiting in the queue at the same time */
+                    mFrameQueue = new SpscQueue<byte[]>(mCallbackBufferCount);
+                    mPeakQueuedFrames = 0;
+                    mBuffers = new byte[mCallbackBufferCount][];
+                    for (int i = 0; i < mCallbackBufferCount; i++) {
+                        mBuffers[i] = new byte[size];
+                        mCamera.addCallbackBuffer(mBuffers[i]);
+                    }
                     mCamera.setPreviewCallbackWithBuffer(this);
 
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
-                    mFrameChain[1] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
+                    mFrameMat = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
 
                     AllocateCache();
 
-                    mCameraFrame = new JavaCameraFrame[2];
-                    mCameraFrame[0] = new JavaCameraFrame(mFrameChain[0], mFrameWidth, mFrameHeight);
-                    mCameraFrame[1] = new JavaCameraFrame(mFrameChain[1], mFrameWidth, mFrameHeight);
+                    mCameraFrame = new JavaCameraFrame(mFrameMat, mFrameWidth, mFrameHeight);
 
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
                         mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
@@ -235,19 +274,19 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                 mCamera.release();
             }
             mCamera = null;
-            if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
+            if (mFrameQueue != null) {
+                mFrameQueue.clear();
+            }
+            mBuffers = null;
+            if (mFrameMat != null) {
+                mFrameMat.release();
             }
             if (mCameraFrame != null) {
-                mCameraFrame[0].release();
-                mCameraFrame[1].release();
+                mCameraFrame.release();
             }
         }
     }
 
-    private boolean mCameraFrameReady = false;
-
     @Override
     protected boolean connectCamera(int width, int height) {
 
@@ -259,8 +298,6 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         if (!initializeCamera(width, height))
             return false;
 
-        mCameraFrameReady = false;
-
         /* now we can start update thread */
         Log.d(TAG, "Starting processing thread");
         mStopThread = false;
@@ -276,15 +313,15 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
          * 2. Stop camera and release it
          */
         Log.d(TAG, "Disconnecting from camera");
+        Thread thread = mThread;
         try {
             mStopThread = true;
             Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                Log.d(TAG, "Waiting for thread");
+                thread.join();
             }
-            Log.d(TAG, "Waiting for thread");
-            if (mThread != null)
-                mThread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -293,21 +330,25 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         /* Now release camera */
         releaseCamera();
-
-        mCameraFrameReady = false;
     }
 
     @Override
     public void onPreviewFrame(byte[] frame, Camera arg1) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[mChainIdx].put(0, 0, frame);
-            mCameraFrameReady = true;
-            this.notify();
+        /* The buffer stays out of the camera until the processing thread has consumed it */
+        SpscQueue<byte[]> queue = mFrameQueue;
+        if (queue == null || !queue.offer(frame)) {
+            if (mCamera != null)
+                mCamera.addCallbackBuffer(frame);
+            return;
         }
-        if (mCamera != null)
-            mCamera.addCallbackBuffer(mBuffer);
+        int queued = queue.size();
+        if (queued > mPeakQueuedFrames)
+            mPeakQueuedFrames = queued;
+        Thread thread = mThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
     }
 
     private class JavaCameraFrame implements CvCameraViewFrame {
@@ -350,29 +391,24 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         @Override
         public void run() {
-            do {
-                boolean hasFrame = false;
-                synchronized (JavaCameraView.this) {
-                    try {
-                        while (!mCameraFrameReady && !mStopThread) {
-                            JavaCameraView.this.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    if (mCameraFrameReady)
-                    {
-                        mChainIdx = 1 - mChainIdx;
-                        mCameraFrameReady = false;
-                        hasFrame = true;
-                    }
+            final SpscQueue<byte[]> queue = mFrameQueue;
+            while (!mStopThread) {
+                byte[] frame = queue.poll();
+                if (frame == null) {
+                    /* onPreviewFrame() unparks us after queueing, a permit issued before park() is not lost */
+                    LockSupport.park(JavaCameraView.this);
+                    continue;
                 }
 
-                if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
-                }
-            } while (!mStopThread);
+                mFrameMat.put(0, 0, frame);
+                /* Frame data now lives in the Mat, the camera may fill this buffer again */
+                Camera camera = mCamera;
+                if (camera != null)
+                    camera.addCallbackBuffer(frame);
+
+                if (!mStopThread && !mFrameMat.empty())
+                    deliverAndDrawFrame(mCameraFrame);
+            }
             Log.d(TAG, "Finish processing thread");
         }
     }
@@ -0,0 +1,88 @@
+package org.opencv.android;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for handing objects from exactly one producer thread to exactly
+ * one consumer thread (for example from the camera callback thread to a processing worker).
+ * offer() must only be called by the producer, poll() and clear() only by the consumer.
+ * Neither side allocates or blocks; the consumer is expected to park itself when poll()
+ * returns null and to be unparked by the producer after a successful offer().
+ */
+public final class SpscQueue<E> {
+
+    private final Object[] mSlots;
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong(); // next slot to poll, written by consumer
+    private final AtomicLong mTail = new AtomicLong(); // next slot to offer, written by producer
+
+    /**
+     * @param capacity - minimum number of elements the queue can hold, rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        mSlots = new Object[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Appends an element. Producer thread only.
+     * @return false if the queue is full
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException("Null elements are not supported");
+        long tail = mTail.get();
+        if (tail - mHead.get() >= mSlots.length)
+            return false;
+        mSlots[(int) tail & mMask] = e;
+        mTail.lazySet(tail + 1); // publishes the slot write
+        return true;
+    }
+
+    /**
+     * Removes the oldest element. Consumer thread only.
+     * @return the element or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long head = mHead.get();
+        if (head == mTail.get())
+            return null;
+        int idx = (int) head & mMask;
+        E e = (E) mSlots[idx];
+        mSlots[idx] = null;
+        mHead.lazySet(head + 1);
+        return e;
+    }
+
+    /**
+     * Drops all queued elements. Consumer thread only.
+     */
+    public void clear() {
+        while (poll() != null) {
+            /* drain */
+        }
+    }
+
+    /**
+     * Number of queued elements. Safe to call from any thread, the value is a snapshot.
+     */
+    public int size() {
+        long head = mHead.get();
+        long tail = mTail.get();
+        return (int) Math.max(0, Math.min(tail - head, mSlots.length));
+    }
+
+    public boolean isEmpty() {
+        return mHead.get() == mTail.get();
+    }
+
+    public int capacity() {
+        return mSlots.length;
+    }
+}
@@ -6,6 +6,7 @@ import android.graphics.Bitmap;
 import org.opencv.core.CvException;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.MatPool;
 import org.opencv.imgcodecs.Imgcodecs;
 
 import java.io.ByteArrayOutputStream;
@@ -90,7 +91,12 @@ public class Utils {
             throw new IllegalArgumentException("bmp == null");
         if (mat == null)
             throw new IllegalArgumentException("mat == null");
-        nBitmapToMat2(bmp, mat.nativeObj, unPremultiplyAlpha);
+        boolean traced = FrameTrace.begin(FrameTrace.BITMAP_TO_MAT);
+        try {
+            nBitmapToMat2(bmp, mat.nativeObj, unPremultiplyAlpha);
+        } finally {
+            FrameTrace.end(traced);
+        }
     }
 
     /**
@@ -102,6 +108,33 @@ public class Utils {
         bitmapToMat(bmp, mat, false);
     }
 
+    /**
+     * Converts Android Bitmap to a 'CV_8UC4' RGBA Mat taken from a pool.
+     * @param bmp is a valid input Bitmap object of the type 'ARGB_8888' or 'RGB_565'.
+     * @param pool provides the output Mat; hand it back with pool.release() when done.
+     * @param unPremultiplyAlpha see bitmapToMat(bmp, mat, unPremultiplyAlpha).
+     * @return the Mat holding the converted Bitmap.
+     */
+    public static Mat bitmapToMat(Bitmap bmp, MatPool pool, boolean unPremultiplyAlpha) {
+        if (bmp == null)
+            throw new IllegalArgumentException("bmp == null");
+        if (pool == null)
+            throw new IllegalArgumentException("pool == null");
+        boolean traced = FrameTrace.begin(FrameTrace.BITMAP_TO_MAT);
+        try {
+            Mat mat = pool.acquire(bmp.getHeight(), bmp.getWidth(), CvType.CV_8UC4);
+            try {
+                nBitmapToMat2(bmp, mat.nativeObj, unPremultiplyAlpha);
+            } catch (RuntimeException e) {
+                pool.release(mat);
+                throw e;
+            }
+            return mat;
+        } finally {
+            FrameTrace.end(traced);
+        }
+    }
+
 
     /**
      * Converts OpenCV Mat to Android Bitmap.
@@ -120,7 +153,12 @@ public class Utils {
             throw new IllegalArgumentException("mat == null");
         if (bmp == null)
             throw new IllegalArgumentException("bmp == null");
-        nMatToBitmap2(mat.nativeObj, bmp, premultiplyAlpha);
+        boolean traced = FrameTrace.begin(FrameTrace.MAT_TO_BITMAP);
+        try {
+            nMatToBitmap2(mat.nativeObj, bmp, premultiplyAlpha);
+        } finally {
+            FrameTrace.end(traced);
+        }
     }
 
     /**
@@ -0,0 +1,238 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable output of Imgproc.findContours(Mat, Contours, Mat, int, int) for per-frame use.
+ *
+ * All kept contours are stored in one flat PointBufferI with an offset table, so filling it creates
+ * no per-contour Java objects once the buffers have grown to the usual frame content. Contours with
+ * too few points or an area outside [minArea, maxArea] are dropped while reading, before anything
+ * is copied. Kept contours can be exported to MatOfPoint instances that are pooled and reused
+ * across frames together with their native storage.
+ *
+ * Not thread safe. Call release() when done to free the pooled native memory right away.
+ */
+public final class Contours {
+
+    private final PointBufferI mPoints = new PointBufferI(256);
+    private int[] mOffsets = new int[17]; // contour i spans points [mOffsets[i], mOffsets[i + 1])
+    private int[] mSourceIndex = new int[16];
+    private double[] mArea = new double[16];
+    private int mCount;
+
+    private int mMinPoints = 1;
+    private double mMinArea = 0;
+    private double mMaxArea = Double.POSITIVE_INFINITY;
+
+    // vector_Mat of contour addresses written by the findContours natives, reused between calls
+    private Mat mVectorMat;
+    private int[] mAddrs = new int[0];
+    private int[] mScratch = new int[64];
+    // MatOfPoint instances not handed out by toMatOfPointList(), kept with their native buffers
+    private final ArrayList<MatOfPoint> mSpare = new ArrayList<MatOfPoint>();
+
+    /**
+     * Sets the pre-filter applied while reading contours. The area is the one of contourArea().
+     */
+    public void setFilter(int minPoints, double minArea, double maxArea) {
+        if (minPoints < 1)
+            throw new IllegalArgumentException("minPoints must be at least 1: " + minPoints);
+        if (minArea > maxArea)
+            throw new IllegalArgumentException("minArea " + minArea + " > maxArea " + maxArea);
+        mMinPoints = minPoints;
+        mMinArea = minArea;
+        mMaxArea = maxArea;
+    }
+
+    /** Number of kept contours */
+    public int size() {
+        return mCount;
+    }
+
+    public void clear() {
+        mCount = 0;
+        mOffsets[0] = 0;
+        mPoints.clear();
+    }
+
+    /**
+     * All points of all kept contours; contour i spans [offset(i), offset(i + 1)).
+     */
+    public PointBufferI points() {
+        return mPoints;
+    }
+
+    /**
+     * First point index of contour i; offset(size()) is the total number of points.
+     */
+    public int offset(int i) {
+        if (i < 0 || i > mCount)
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mCount);
+        return mOffsets[i];
+    }
+
+    public int pointCount(int i) {
+        checkIndex(i);
+        return mOffsets[i + 1] - mOffsets[i];
+    }
+
+    /** Area of contour i as computed by contourArea(contour, false) */
+    public double area(int i) {
+        checkIndex(i);
+        return mArea[i];
+    }
+
+    /**
+     * Index of contour i in the unfiltered findContours() output, which is what the hierarchy refers to.
+     */
+    public int sourceIndex(int i) {
+        checkIndex(i);
+        return mSourceIndex[i];
+    }
+
+    /**
+     * Upright bounding rectangle of contour i.
+     * @return r, for chaining
+     */
+    public Rect boundingRect(int i, Rect r) {
+        checkIndex(i);
+        int[] d = mPoints.array();
+        int from = mOffsets[i], to = mOffsets[i + 1];
+        int minX = d[from * 2], maxX = minX, minY = d[from * 2 + 1], maxY = minY;
+        for (int p = from + 1; p < to; p++) {
+            int x = d[p * 2], y = d[p * 2 + 1];
+            if (x < minX) minX = x; else if (x > maxX) maxX = x;
+            if (y < minY) minY = y; else if (y > maxY) maxY = y;
+        }
+        r.x = minX;
+        r.y = minY;
+        r.width = maxX - minX + 1;
+        r.height = maxY - minY + 1;
+        return r;
+    }
+
+    /**
+     * Copies contour i into m, reallocating m only if its point count changed.
+     */
+    public void copyTo(int i, Mat m) {
+        checkIndex(i);
+        int from = mOffsets[i], n = mOffsets[i + 1] - from;
+        m.create(n, 1, CvType.CV_32SC2);
+        m.put(0, 0, mPoints.array(), from * 2, n * 2);
+    }
+
+    /**
+     * Makes dst hold the kept contours as MatOfPoint. Instances already in dst are reused in place,
+     * missing ones come from a pool of instances removed by earlier calls, so in steady state no
+     * Mat is created and native buffers are reallocated only when a contour changes its length.
+     * The MatOfPoint objects stay owned by this object; do not close them or keep them across calls.
+     */
+    public void toMatOfPointList(List<MatOfPoint> dst) {
+        while (dst.size() > mCount)
+            mSpare.add(dst.remove(dst.size() - 1));
+        for (int i = 0; i < mCount; i++) {
+            MatOfPoint m;
+            if (i < dst.size()) {
+                m = dst.get(i);
+            } else {
+                m = mSpare.isEmpty() ? MatScope.exclude(new MatOfPoint()) : mSpare.remove(mSpare.size() - 1);
+                dst.add(m);
+            }
+            copyTo(i, m);
+        }
+    }
+
+    /**
+     * Reads a vector_Mat of contours as produced by the findContours natives, applying the filter.
+     * Every contour Mat referenced by the vector is deleted, kept or not; the vector itself is left
+     * as it is. Used by Imgproc.findContours(Mat, Contours, Mat, int, int).
+     */
+    public void fromVectorMat(Mat vectorMat) {
+        clear();
+        int n = vectorMat.empty() ? 0 : vectorMat.rows();
+        if (n == 0)
+            return;
+        if (vectorMat.type() != CvType.CV_32SC2 || vectorMat.cols() != 1)
+            throw new IllegalArgumentException("CvType.CV_32SC2 != m.type() ||  m.cols()!=1\n" + vectorMat);
+        if (mAddrs.length < n * 2)
+            mAddrs = new int[Math.max(n * 2, mAddrs.length * 2)];
+        vectorMat.get(0, 0, mAddrs, 0, n * 2);
+        int i = 0;
+        try {
+            for (; i < n; i++) {
+                long addr = (((long) mAddrs[i * 2]) << 32) | (((long) mAddrs[i * 2 + 1]) & 0xffffffffL);
+                try {
+                    readContour(addr, i);
+                } finally {
+                    Mat.nativeDelete(addr);
+                }
+            }
+        } finally {
+            // do not leak the remaining contours if reading one of them failed
+            for (i++; i < n; i++)
+                Mat.nativeDelete((((long) mAddrs[i * 2]) << 32) | (((long) mAddrs[i * 2 + 1]) & 0xffffffffL));
+        }
+    }
+
+    /**
+     * Reusable Mat for the contour address vector, see Imgproc.findContours(Mat, Contours, Mat, int, int).
+     */
+    public Mat vectorMat() {
+        if (mVectorMat == null)
+            mVectorMat = MatScope.exclude(new Mat());
+        return mVectorMat;
+    }
+
+    /**
+     * Frees the pooled MatOfPoint instances and the address vector; the object stays usable.
+     */
+    public void release() {
+        for (MatOfPoint m : mSpare)
+            m.close();
+        mSpare.clear();
+        if (mVectorMat != null) {
+            mVectorMat.close();
+            mVectorMat = null;
+        }
+    }
+
+    private void readContour(long addr, int sourceIndex) {
+        if (Mat.nativeType(addr) != CvType.CV_32SC2)
+            return;
+        int n = Mat.nativeRows(addr) * Mat.nativeCols(addr);
+        if (n < mMinPoints)
+            return;
+        if (mScratch.length < n * 2)
+            mScratch = new int[Math.max(n * 2, mScratch.length * 2)];
+        int[] s = mScratch;
+        Mat.nativeGetInts(addr, n * 2, s);
+
+        long twice = 0;
+        for (int p = 0, q = n - 1; p < n; q = p++)
+            twice += (long) s[q * 2] * s[p * 2 + 1] - (long) s[p * 2] * s[q * 2 + 1];
+        double area = Math.abs(twice) / 2.0;
+        if (area < mMinArea || area > mMaxArea)
+            return;
+
+        if (mCount == mArea.length) {
+            int cap = mCount * 2;
+            mOffsets = Arrays.copyOf(mOffsets, cap + 1);
+            mSourceIndex = Arrays.copyOf(mSourceIndex, cap);
+            mArea = Arrays.copyOf(mArea, cap);
+        }
+        int start = mPoints.size();
+        mPoints.resize(start + n);
+        System.arraycopy(s, 0, mPoints.array(), start * 2, n * 2);
+        mSourceIndex[mCount] = sourceIndex;
+        mArea[mCount] = area;
+        mOffsets[++mCount] = start + n;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mCount)
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mCount);
+    }
+}
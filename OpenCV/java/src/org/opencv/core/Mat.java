@@ -1,17 +1,30 @@
 package org.opencv.core;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 // C++: class Mat
 //javadoc: Mat
-public class Mat {
+public class Mat implements AutoCloseable {
 
     public final long nativeObj;
 
+    // frees the native object once this Mat is unreachable, unless close() did it before
+    private NativeCleaner.Cleanable mCleanable;
+
+    // direct buffer the data was created on, shared with submatrices; keeps the memory alive
+    private ByteBuffer mDataBuffer;
+    private long mDataBufferAddr;
+
     public Mat(long addr) {
         if (addr == 0)
             throw new UnsupportedOperationException("Native object address is NULL");
         nativeObj = addr;
+        track();
     }
 
     //
@@ -21,6 +34,7 @@ public class Mat {
     // javadoc: Mat::Mat()
     public Mat() {
         nativeObj = n_Mat();
+        track();
     }
 
     //
@@ -30,6 +44,7 @@ public class Mat {
     // javadoc: Mat::Mat(rows, cols, type)
     public Mat(int rows, int cols, int type) {
         nativeObj = n_Mat(rows, cols, type);
+        track();
     }
 
     //
@@ -39,6 +54,9 @@ public class Mat {
     // javadoc: Mat::Mat(rows, cols, type, data)
     public Mat(int rows, int cols, int type, ByteBuffer data) {
         nativeObj = n_Mat(rows, cols, type, data);
+        track();
+        mDataBuffer = data;
+        mDataBufferAddr = dataAddr();
     }
 
     //
@@ -48,6 +66,9 @@ public class Mat {
     // javadoc: Mat::Mat(rows, cols, type, data, step)
     public Mat(int rows, int cols, int type, ByteBuffer data, long step) {
         nativeObj = n_Mat(rows, cols, type, data, step);
+        track();
+        mDataBuffer = data;
+        mDataBufferAddr = dataAddr();
     }
 
     //
@@ -57,6 +78,7 @@ public class Mat {
     // javadoc: Mat::Mat(size, type)
     public Mat(Size size, int type) {
         nativeObj = n_Mat(size.width, size.height, type);
+        track();
     }
 
     //
@@ -66,6 +88,7 @@ public class Mat {
     // javadoc: Mat::Mat(sizes, type)
     public Mat(int[] sizes, int type) {
         nativeObj = n_Mat(sizes.length, sizes, type);
+        track();
     }
 
     //
@@ -75,6 +98,7 @@ public class Mat {
     // javadoc: Mat::Mat(rows, cols, type, s)
     public Mat(int rows, int cols, int type, Scalar s) {
         nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        track();
     }
 
     //
@@ -84,6 +108,7 @@ public class Mat {
     // javadoc: Mat::Mat(size, type, s)
     public Mat(Size size, int type, Scalar s) {
         nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        track();
     }
 
     //
@@ -93,6 +118,7 @@ public class Mat {
     // javadoc: Mat::Mat(sizes, type, s)
     public Mat(int[] sizes, int type, Scalar s) {
         nativeObj = n_Mat(sizes.length, sizes, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        track();
     }
 
     //
@@ -102,11 +128,15 @@ public class Mat {
     // javadoc: Mat::Mat(m, rowRange, colRange)
     public Mat(Mat m, Range rowRange, Range colRange) {
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        track();
+        shareDataBuffer(m);
     }
 
     // javadoc: Mat::Mat(m, rowRange)
     public Mat(Mat m, Range rowRange) {
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        track();
+        shareDataBuffer(m);
     }
 
     //
@@ -116,6 +146,8 @@ public class Mat {
     // javadoc: Mat::Mat(m, ranges)
     public Mat(Mat m, Range[] ranges) {
         nativeObj = n_Mat(m.nativeObj, ranges);
+        track();
+        shareDataBuffer(m);
     }
 
     //
@@ -125,6 +157,8 @@ public class Mat {
     // javadoc: Mat::Mat(m, roi)
     public Mat(Mat m, Rect roi) {
         nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        track();
+        shareDataBuffer(m);
     }
 
     //
@@ -194,7 +228,7 @@ public class Mat {
 
     // javadoc: Mat::col(x)
     public Mat col(int x) {
-        return new Mat(n_col(nativeObj, x));
+        return shareDataBuffer(new Mat(n_col(nativeObj, x)), this);
     }
 
     //
@@ -203,7 +237,7 @@ public class Mat {
 
     // javadoc: Mat::colRange(startcol, endcol)
     public Mat colRange(int startcol, int endcol) {
-        return new Mat(n_colRange(nativeObj, startcol, endcol));
+        return shareDataBuffer(new Mat(n_colRange(nativeObj, startcol, endcol)), this);
     }
 
     //
@@ -212,7 +246,7 @@ public class Mat {
 
     // javadoc: Mat::colRange(r)
     public Mat colRange(Range r) {
-        return new Mat(n_colRange(nativeObj, r.start, r.end));
+        return shareDataBuffer(new Mat(n_colRange(nativeObj, r.start, r.end)), this);
     }
 
     //
@@ -569,7 +603,7 @@ public class Mat {
 
     // javadoc: Mat::row(y)
     public Mat row(int y) {
-        return new Mat(n_row(nativeObj, y));
+        return shareDataBuffer(new Mat(n_row(nativeObj, y)), this);
     }
 
     //
@@ -578,7 +612,7 @@ public class Mat {
 
     // javadoc: Mat::rowRange(startrow, endrow)
     public Mat rowRange(int startrow, int endrow) {
-        return new Mat(n_rowRange(nativeObj, startrow, endrow));
+        return shareDataBuffer(new Mat(n_rowRange(nativeObj, startrow, endrow)), this);
     }
 
     //
@@ -587,7 +621,7 @@ public class Mat {
 
     // javadoc: Mat::rowRange(r)
     public Mat rowRange(Range r) {
-        return new Mat(n_rowRange(nativeObj, r.start, r.end));
+        return shareDataBuffer(new Mat(n_rowRange(nativeObj, r.start, r.end)), this);
     }
 
     //
@@ -670,7 +704,7 @@ public class Mat {
 
     // javadoc: Mat::operator()(rowStart, rowEnd, colStart, colEnd)
     public Mat submat(int rowStart, int rowEnd, int colStart, int colEnd) {
-        return new Mat(n_submat_rr(nativeObj, rowStart, rowEnd, colStart, colEnd));
+        return shareDataBuffer(new Mat(n_submat_rr(nativeObj, rowStart, rowEnd, colStart, colEnd)), this);
     }
 
     //
@@ -679,7 +713,7 @@ public class Mat {
 
     // javadoc: Mat::operator()(rowRange, colRange)
     public Mat submat(Range rowRange, Range colRange) {
-        return new Mat(n_submat_rr(nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end));
+        return shareDataBuffer(new Mat(n_submat_rr(nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end)), this);
     }
 
     //
@@ -688,7 +722,7 @@ public class Mat {
 
     // javadoc: Mat::operator()(ranges[])
     public Mat submat(Range[] ranges) {
-        return new Mat(n_submat_ranges(nativeObj, ranges));
+        return shareDataBuffer(new Mat(n_submat_ranges(nativeObj, ranges)), this);
     }
 
     //
@@ -697,7 +731,7 @@ public class Mat {
 
     // javadoc: Mat::operator()(roi)
     public Mat submat(Rect roi) {
-        return new Mat(n_submat(nativeObj, roi.x, roi.y, roi.width, roi.height));
+        return shareDataBuffer(new Mat(n_submat(nativeObj, roi.x, roi.y, roi.width, roi.height)), this);
     }
 
     //
@@ -754,10 +788,174 @@ public class Mat {
         return new Mat(n_zeros(sizes.length, sizes, type));
     }
 
+    /**
+     * Frees the native Mat right away instead of leaving it to the garbage collector.
+     * The object must not be used afterwards; calling close() again has no effect.
+     */
     @Override
-    protected void finalize() throws Throwable {
+    public void close() {
+        if (mCleanable.clean())
+            MatStats.onClosed();
+    }
+
+    /**
+     * Allocates a continuous Mat whose pixel data lives in a direct ByteBuffer owned by Java,
+     * so that asByteBuffer() and the typed views can expose it without copies.
+     * OpenCV functions writing into such a Mat reuse its buffer as long as size and type match.
+     */
+    public static Mat allocateDirect(int rows, int cols, int type) {
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Negative size: " + rows + "x" + cols);
+        long bytes = (long) rows * cols * CvType.ELEM_SIZE(type);
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Mat too large for a ByteBuffer: " + bytes + " bytes");
+        ByteBuffer data = ByteBuffer.allocateDirect((int) Math.max(bytes, 1)).order(ByteOrder.nativeOrder());
+        return new Mat(rows, cols, type, data);
+    }
+
+    /**
+     * Direct view of the pixel data, in native byte order, without copying.
+     *
+     * Available for continuous Mats created on a direct buffer, i.e. by allocateDirect() or the
+     * ByteBuffer constructors, and for their continuous submatrices such as rowRange().
+     * The view covers exactly total() * elemSize() bytes. The memory is owned by Java, so the view
+     * never dangles: after release() or a reallocation by create() it simply no longer shows
+     * the Mat data, and calling asByteBuffer() again fails.
+     *
+     * @throws UnsupportedOperationException if the data was allocated by OpenCV
+     * @throws IllegalStateException if the Mat is empty, not continuous or no longer uses the buffer
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer data = mDataBuffer;
+        if (data == null)
+            throw new UnsupportedOperationException(
+                    "Mat data is not backed by a direct ByteBuffer, create it with Mat.allocateDirect()");
+        if (empty())
+            throw new IllegalStateException("Mat is empty");
+        if (!isContinuous())
+            throw new IllegalStateException("Mat is not continuous: " + this);
+        long offset = dataAddr() - mDataBufferAddr;
+        long bytes = total() * elemSize();
+        if (offset < 0 || offset + bytes > data.capacity())
+            throw new IllegalStateException("Mat data was reallocated outside of its direct buffer");
+        ByteBuffer view = data.duplicate();
+        view.limit((int) (offset + bytes)).position((int) offset);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * asByteBuffer() for CV_16U and CV_16S Mats.
+     */
+    public ShortBuffer asShortBuffer() {
+        int d = CvType.depth(type());
+        if (d != CvType.CV_16U && d != CvType.CV_16S)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type());
+        return asByteBuffer().asShortBuffer();
+    }
+
+    /**
+     * asByteBuffer() for CV_32S Mats.
+     */
+    public IntBuffer asIntBuffer() {
+        if (CvType.depth(type()) != CvType.CV_32S)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type());
+        return asByteBuffer().asIntBuffer();
+    }
+
+    /**
+     * asByteBuffer() for CV_32F Mats.
+     */
+    public FloatBuffer asFloatBuffer() {
+        if (CvType.depth(type()) != CvType.CV_32F)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type());
+        return asByteBuffer().asFloatBuffer();
+    }
+
+    /**
+     * asByteBuffer() for CV_64F Mats.
+     */
+    public DoubleBuffer asDoubleBuffer() {
+        if (CvType.depth(type()) != CvType.CV_64F)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type());
+        return asByteBuffer().asDoubleBuffer();
+    }
+
+    /**
+     * View from the first to the last byte of a 2D Mat whose data lives in its direct buffer, row
+     * padding included, or null otherwise. Unlike asByteBuffer() this works for non-continuous ROIs.
+     */
+    ByteBuffer directDataSpan() {
+        ByteBuffer data = mDataBuffer;
+        if (data == null || empty() || dims() > 2)
+            return null;
+        long offset = dataAddr() - mDataBufferAddr;
+        long span = (rows() - 1) * step1(0) * elemSize1() + cols() * elemSize();
+        if (offset < 0 || offset + span > data.capacity())
+            return null;
+        ByteBuffer view = data.duplicate();
+        view.limit((int) (offset + span)).position((int) offset);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void shareDataBuffer(Mat parent) {
+        mDataBuffer = parent.mDataBuffer;
+        mDataBufferAddr = parent.mDataBufferAddr;
+    }
+
+    private static Mat shareDataBuffer(Mat m, Mat parent) {
+        m.shareDataBuffer(parent);
+        return m;
+    }
+
+    private void track() {
+        mCleanable = NativeCleaner.register(this, nativeObj, NATIVE_DELETER, MatStats.onCreated());
+        MatScope.onCreated(this);
+    }
+
+    private static final NativeCleaner.Deleter NATIVE_DELETER = new NativeCleaner.Deleter() {
+        @Override
+        public void delete(long nativeObj) {
+            n_delete(nativeObj);
+        }
+
+        @Override
+        public void collected(long nativeObj, Object allocationSite) {
+            MatStats.onCollected(nativeObj, (Throwable) allocationSite);
+        }
+    };
+
+    // accessors on raw native addresses for MatStats and Contours, valid only while the native object is alive
+    static int nativeType(long nativeObj) {
+        return n_type(nativeObj);
+    }
+
+    static int nativeRows(long nativeObj) {
+        return n_rows(nativeObj);
+    }
+
+    static int nativeCols(long nativeObj) {
+        return n_cols(nativeObj);
+    }
+
+    static long nativeDataBytes(long nativeObj) {
+        return n_empty(nativeObj) ? 0 : n_total(nativeObj) * n_elemSize(nativeObj);
+    }
+
+    static long nativeDataAddr(long nativeObj) {
+        return n_dataAddr(nativeObj);
+    }
+
+    static boolean nativeIsSubmatrix(long nativeObj) {
+        return n_isSubmatrix(nativeObj);
+    }
+
+    // raw access for Contours, which reads and frees the contour Mats of a native vector_Mat
+    static int nativeGetInts(long nativeObj, int count, int[] data) {
+        return nGetI(nativeObj, 0, 0, count, data);
+    }
+
+    static void nativeDelete(long nativeObj) {
         n_delete(nativeObj);
-        super.finalize();
     }
 
     // javadoc:Mat::toString()
@@ -965,6 +1163,62 @@ public class Mat {
         throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
     }
 
+    // javadoc:Mat::put(row,col,data,offset,length)
+    public int put(int row, int col, short[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_16U || CvType.depth(t) == CvType.CV_16S) {
+            if (offset == 0)
+                return nPutS(nativeObj, row, col, length, data);
+            short[] tmp = Workspace.get().shorts(length);
+            System.arraycopy(data, offset, tmp, 0, length);
+            return nPutS(nativeObj, row, col, length, tmp);
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::put(row,col,data,offset,length)
+    public int put(int row, int col, int[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_32S) {
+            if (offset == 0)
+                return nPutI(nativeObj, row, col, length, data);
+            int[] tmp = Workspace.get().ints(length);
+            System.arraycopy(data, offset, tmp, 0, length);
+            return nPutI(nativeObj, row, col, length, tmp);
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::put(row,col,data,offset,length)
+    public int put(int row, int col, float[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_32F) {
+            if (offset == 0)
+                return nPutF(nativeObj, row, col, length, data);
+            float[] tmp = Workspace.get().floats(length);
+            System.arraycopy(data, offset, tmp, 0, length);
+            return nPutF(nativeObj, row, col, length, tmp);
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::put(row,col,data,offset,length)
+    public int put(int row, int col, double[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_64F) {
+            if (offset == 0)
+                return nPutD(nativeObj, row, col, length, data);
+            double[] tmp = Workspace.get().doubles(length);
+            System.arraycopy(data, offset, tmp, 0, length);
+            return nPutD(nativeObj, row, col, length, tmp);
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
     // javadoc:Mat::get(row,col,data)
     public int get(int row, int col, byte[] data) {
         int t = type();
@@ -1125,6 +1379,218 @@ public class Mat {
         throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
     }
 
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, byte[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_8U || CvType.depth(t) == CvType.CV_8S) {
+            if (offset == 0)
+                return nGetB(nativeObj, row, col, length, data);
+            byte[] tmp = Workspace.get().bytes(length);
+            int res = nGetB(nativeObj, row, col, length, tmp);
+            System.arraycopy(tmp, 0, data, offset, length);
+            return res;
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, short[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_16U || CvType.depth(t) == CvType.CV_16S) {
+            if (offset == 0)
+                return nGetS(nativeObj, row, col, length, data);
+            short[] tmp = Workspace.get().shorts(length);
+            int res = nGetS(nativeObj, row, col, length, tmp);
+            System.arraycopy(tmp, 0, data, offset, length);
+            return res;
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, int[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_32S) {
+            if (offset == 0)
+                return nGetI(nativeObj, row, col, length, data);
+            int[] tmp = Workspace.get().ints(length);
+            int res = nGetI(nativeObj, row, col, length, tmp);
+            System.arraycopy(tmp, 0, data, offset, length);
+            return res;
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, float[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_32F) {
+            if (offset == 0)
+                return nGetF(nativeObj, row, col, length, data);
+            float[] tmp = Workspace.get().floats(length);
+            int res = nGetF(nativeObj, row, col, length, tmp);
+            System.arraycopy(tmp, 0, data, offset, length);
+            return res;
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, double[] data, int offset, int length) {
+        int t = type();
+        checkRange(data == null ? -1 : data.length, offset, length, t);
+        if (CvType.depth(t) == CvType.CV_64F) {
+            if (offset == 0)
+                return nGetD(nativeObj, row, col, length, data);
+            double[] tmp = Workspace.get().doubles(length);
+            int res = nGetD(nativeObj, row, col, length, tmp);
+            System.arraycopy(tmp, 0, data, offset, length);
+            return res;
+        }
+        throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    /**
+     * Copies rows [startRow, endRow) of this 2D Mat into data starting at offset, packed without
+     * row padding. Works on non-continuous Mats such as ROIs, e.g. new Mat(m, roi); all rows are
+     * copied in a single native call. putRows() copies in the other direction.
+     * @return number of bytes copied
+     */
+    public int getRows(int startRow, int endRow, byte[] data, int offset) {
+        return get(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int putRows(int startRow, int endRow, byte[] data, int offset) {
+        return put(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int getRows(int startRow, int endRow, short[] data, int offset) {
+        return get(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int putRows(int startRow, int endRow, short[] data, int offset) {
+        return put(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int getRows(int startRow, int endRow, int[] data, int offset) {
+        return get(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int putRows(int startRow, int endRow, int[] data, int offset) {
+        return put(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int getRows(int startRow, int endRow, float[] data, int offset) {
+        return get(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int putRows(int startRow, int endRow, float[] data, int offset) {
+        return put(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int getRows(int startRow, int endRow, double[] data, int offset) {
+        return get(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    public int putRows(int startRow, int endRow, double[] data, int offset) {
+        return put(startRow, 0, data, offset, rowRangeLength(startRow, endRow));
+    }
+
+    private int rowRangeLength(int startRow, int endRow) {
+        if (dims() > 2)
+            throw new UnsupportedOperationException("Row copies need a 2D Mat, dims=" + dims());
+        if (startRow < 0 || endRow > rows() || startRow > endRow)
+            throw new IndexOutOfBoundsException("Rows [" + startRow + ", " + endRow + ") of " + rows());
+        long n = (long) (endRow - startRow) * cols() * channels();
+        if (n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Row range too large: " + n + " elements");
+        return (int) n;
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length, int t) {
+        if (arrayLength < 0)
+            throw new UnsupportedOperationException("Provided data is null");
+        if (length % CvType.channels(t) != 0)
+            throw new UnsupportedOperationException(
+                    "Provided data element number (" + length +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset > arrayLength - length)
+            throw new IndexOutOfBoundsException(
+                    "offset " + offset + ", length " + length + ", array length " + arrayLength);
+    }
+
+    // per-thread temporaries for get/put with a non-zero offset, the natives always start at index 0
+    private static final class Workspace {
+        private static final int MAX_RETAINED = 1 << 20; // elements kept per array and thread
+
+        private static final ThreadLocal<Workspace> sWorkspace = new ThreadLocal<Workspace>() {
+            @Override
+            protected Workspace initialValue() {
+                return new Workspace();
+            }
+        };
+
+        private byte[] mBytes = new byte[0];
+        private short[] mShorts = new short[0];
+        private int[] mInts = new int[0];
+        private float[] mFloats = new float[0];
+        private double[] mDoubles = new double[0];
+
+        static Workspace get() {
+            return sWorkspace.get();
+        }
+
+        byte[] bytes(int n) {
+            if (mBytes.length >= n)
+                return mBytes;
+            byte[] a = new byte[n];
+            if (n <= MAX_RETAINED)
+                mBytes = a;
+            return a;
+        }
+
+        short[] shorts(int n) {
+            if (mShorts.length >= n)
+                return mShorts;
+            short[] a = new short[n];
+            if (n <= MAX_RETAINED)
+                mShorts = a;
+            return a;
+        }
+
+        int[] ints(int n) {
+            if (mInts.length >= n)
+                return mInts;
+            int[] a = new int[n];
+            if (n <= MAX_RETAINED)
+                mInts = a;
+            return a;
+        }
+
+        float[] floats(int n) {
+            if (mFloats.length >= n)
+                return mFloats;
+            float[] a = new float[n];
+            if (n <= MAX_RETAINED)
+                mFloats = a;
+            return a;
+        }
+
+        double[] doubles(int n) {
+            if (mDoubles.length >= n)
+                return mDoubles;
+            double[] a = new double[n];
+            if (n <= MAX_RETAINED)
+                mDoubles = a;
+            return a;
+        }
+    }
+
     // javadoc:Mat::get(row,col)
     public double[] get(int row, int col) {
         return nGet(nativeObj, row, col);
@@ -1834,7 +2300,7 @@ public class Mat {
     // C++: static Mat Mat::zeros(int ndims, const int* sizes, int type)
     private static native long n_zeros(int ndims, int[] sizes, int type);
 
-    // native support for java finalize()
+    // native support for close() and NativeCleaner
     private static native void n_delete(long nativeObj);
 
     private static native int nPutD(long self, int row, int col, int count, double[] data);
@@ -45,6 +45,42 @@ inline fun <reified T> Mat.at(idx: IntArray) : Atable<T> =
         else -> throw RuntimeException("Unsupported class type")
     }
 
+/***
+ *  at() makes JNI calls and allocates on every access. For loops over many pixels use a PixelCursor:
+ *
+ *  val sum = mat.withPixels { c ->
+ *      var s = 0L
+ *      c.forEachPixel { row, col -> s += c.u8(row, col, 0) }
+ *      s
+ *  }
+ *
+ */
+inline fun <R> Mat.withPixels(writable: Boolean = false, block: (PixelCursor) -> R): R {
+    val cursor = PixelCursor()
+    try {
+        return block(cursor.attach(this, writable))
+    } finally {
+        cursor.release()
+    }
+}
+
+/***
+ *  Same as withPixels(writable, block) with a cursor kept by the caller, so its copy buffer is reused.
+ */
+inline fun <R> Mat.withPixels(cursor: PixelCursor, writable: Boolean = false, block: (PixelCursor) -> R): R {
+    try {
+        return block(cursor.attach(this, writable))
+    } finally {
+        cursor.detach()
+    }
+}
+
+inline fun PixelCursor.forEachPixel(action: (row: Int, col: Int) -> Unit) {
+    for (row in 0 until rows())
+        for (col in 0 until cols())
+            action(row, col)
+}
+
 class AtableUByte(val mat: Mat, val indices: IntArray): Atable<UByte> {
 
     constructor(mat: Mat, row: Int, col: Int) : this(mat, intArrayOf(row, col))
@@ -0,0 +1,297 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of Mats keyed by (rows, cols, type), for pipeline stages that repeatedly need temporaries
+ * of a few recurring shapes.
+ * <pre>
+ * Mat mask = pool.acquire(rows, cols, CvType.CV_8UC1);
+ * try {
+ *     ...
+ * } finally {
+ *     pool.release(mask);
+ * }
+ * </pre>
+ * Released Mats first go to a small cache of the releasing thread, which serves the next acquire()
+ * of the same shape on that thread without locking. Overflow goes to a shared pool ordered by
+ * release time; when the pooled bytes exceed the budget, the least recently released Mats are
+ * closed. The budget covers the per-thread caches as well.
+ *
+ * Pooled Mats are not part of any MatScope. Thread safe.
+ */
+public final class MatPool {
+
+    /** Mats kept per thread before they go to the shared pool */
+    private static final int THREAD_CACHE_SIZE = 2;
+    private static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private static volatile MatPool sDefault;
+
+    private final long mBudgetBytes;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mEvictions = new AtomicLong();
+    private final AtomicLong mPooledBytes = new AtomicLong();
+
+    // shared pool: entries in a list ordered by release time, oldest first; guarded by this
+    private final Entry mLru = new Entry(); // sentinel
+    private Entry mFreeEntries;
+
+    private final ArrayList<ThreadCache> mThreadCaches = new ArrayList<ThreadCache>();
+    private final ThreadLocal<ThreadCache> mThreadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            ThreadCache c = new ThreadCache();
+            synchronized (MatPool.this) {
+                mThreadCaches.add(c);
+            }
+            return c;
+        }
+    };
+
+    private static final class Entry {
+        Mat mat;
+        long key;
+        long bytes;
+        Entry prev = this;
+        Entry next = this;
+    }
+
+    // entries [0, count) ordered by release time, oldest first
+    private static final class ThreadCache {
+        final Mat[] mats = new Mat[THREAD_CACHE_SIZE];
+        final long[] keys = new long[THREAD_CACHE_SIZE];
+        final long[] bytes = new long[THREAD_CACHE_SIZE];
+        int count;
+
+        void removeAt(int i) {
+            count--;
+            System.arraycopy(mats, i + 1, mats, i, count - i);
+            System.arraycopy(keys, i + 1, keys, i, count - i);
+            System.arraycopy(bytes, i + 1, bytes, i, count - i);
+            mats[count] = null;
+        }
+    }
+
+    /**
+     * @param budgetBytes - upper bound of the pixel memory held by pooled Mats
+     */
+    public MatPool(long budgetBytes) {
+        if (budgetBytes < 0)
+            throw new IllegalArgumentException("Negative budget: " + budgetBytes);
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Process wide pool with a 32 MiB budget, shared by the pipeline stages and Utils.
+     */
+    public static MatPool getDefault() {
+        MatPool pool = sDefault;
+        if (pool == null) {
+            synchronized (MatPool.class) {
+                pool = sDefault;
+                if (pool == null)
+                    sDefault = pool = new MatPool(DEFAULT_BUDGET_BYTES);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns a continuous Mat of the given shape with undefined content, from the pool if possible.
+     * Hand it back with release(), or close() it to drop it.
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        long key = key(rows, cols, type);
+
+        ThreadCache c = mThreadCache.get();
+        synchronized (c) { // uncontended unless clear() or an eviction runs concurrently
+            for (int i = c.count - 1; i >= 0; i--) {
+                if (c.keys[i] == key) {
+                    Mat m = c.mats[i];
+                    mPooledBytes.addAndGet(-c.bytes[i]);
+                    c.removeAt(i);
+                    mHits.incrementAndGet();
+                    return m;
+                }
+            }
+        }
+
+        synchronized (this) {
+            // most recently released first, its memory is the most likely to be cached
+            for (Entry e = mLru.prev; e != mLru; e = e.prev) {
+                if (e.key == key) {
+                    Mat m = e.mat;
+                    mPooledBytes.addAndGet(-e.bytes);
+                    recycle(e);
+                    mHits.incrementAndGet();
+                    return m;
+                }
+            }
+        }
+
+        mMisses.incrementAndGet();
+        return MatScope.exclude(new Mat(rows, cols, type));
+    }
+
+    /**
+     * Returns m to the pool. Its current shape decides what it is pooled as, so a Mat reallocated by
+     * an OpenCV function is fine. Empty Mats and submatrices are closed instead.
+     * m must not be used after this call.
+     */
+    public void release(Mat m) {
+        if (m == null)
+            return;
+        if (m.empty() || m.isSubmatrix() || !m.isContinuous() || m.dims() > 2) {
+            m.close();
+            return;
+        }
+        long bytes = m.total() * m.elemSize();
+        if (bytes > mBudgetBytes) {
+            m.close();
+            return;
+        }
+        MatScope.exclude(m);
+        long key = key(m.rows(), m.cols(), m.type());
+        mPooledBytes.addAndGet(bytes);
+
+        ThreadCache c = mThreadCache.get();
+        Mat overflow = null;
+        long overflowKey = 0, overflowBytes = 0;
+        synchronized (c) {
+            if (c.count == THREAD_CACHE_SIZE) {
+                // the oldest cached Mat moves on to the shared pool
+                overflow = c.mats[0];
+                overflowKey = c.keys[0];
+                overflowBytes = c.bytes[0];
+                c.removeAt(0);
+            }
+            c.mats[c.count] = m;
+            c.keys[c.count] = key;
+            c.bytes[c.count] = bytes;
+            c.count++;
+        }
+
+        if (overflow != null || mPooledBytes.get() > mBudgetBytes) {
+            synchronized (this) {
+                if (overflow != null)
+                    append(overflow, overflowKey, overflowBytes);
+                evictOverBudget();
+            }
+        }
+    }
+
+    /**
+     * Closes every pooled Mat, including those in the caches of all threads.
+     */
+    public synchronized void clear() {
+        while (mLru.next != mLru) {
+            Entry e = mLru.next;
+            Mat m = e.mat;
+            mPooledBytes.addAndGet(-e.bytes);
+            recycle(e);
+            m.close();
+        }
+        for (ThreadCache c : mThreadCaches) {
+            synchronized (c) {
+                while (c.count > 0) {
+                    c.mats[0].close();
+                    mPooledBytes.addAndGet(-c.bytes[0]);
+                    c.removeAt(0);
+                }
+            }
+        }
+    }
+
+    public long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    /** acquire() calls served from the pool */
+    public long getHits() {
+        return mHits.get();
+    }
+
+    /** acquire() calls that allocated a new Mat */
+    public long getMisses() {
+        return mMisses.get();
+    }
+
+    /** Mats closed to stay within the budget */
+    public long getEvictions() {
+        return mEvictions.get();
+    }
+
+    /** Pixel memory of the Mats currently held by the pool */
+    public long getPooledBytes() {
+        return mPooledBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MatPool hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions()
+                + " pooled=" + getPooledBytes() + "/" + mBudgetBytes + " bytes";
+    }
+
+    private static long key(int rows, int cols, int type) {
+        if (rows <= 0 || cols <= 0 || rows >= (1 << 26) || cols >= (1 << 26))
+            throw new IllegalArgumentException("Unsupported Mat size: " + rows + "x" + cols);
+        // type is below 4096: depth in 3 bits, channels - 1 in 9 bits
+        return ((long) rows << 38) | ((long) cols << 12) | (type & 0xfff);
+    }
+
+    // callers hold the lock of this
+
+    private void append(Mat m, long key, long bytes) {
+        Entry e = mFreeEntries;
+        if (e != null)
+            mFreeEntries = e.next;
+        else
+            e = new Entry();
+        e.mat = m;
+        e.key = key;
+        e.bytes = bytes;
+        e.prev = mLru.prev;
+        e.next = mLru;
+        mLru.prev.next = e;
+        mLru.prev = e;
+    }
+
+    private void recycle(Entry e) {
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+        e.mat = null;
+        e.prev = null;
+        e.next = mFreeEntries;
+        mFreeEntries = e;
+    }
+
+    private void evict(Entry e) {
+        Mat m = e.mat;
+        mPooledBytes.addAndGet(-e.bytes);
+        recycle(e);
+        m.close();
+        mEvictions.incrementAndGet();
+    }
+
+    private void evictOverBudget() {
+        while (mPooledBytes.get() > mBudgetBytes && mLru.next != mLru)
+            evict(mLru.next);
+        if (mPooledBytes.get() <= mBudgetBytes)
+            return;
+        // the shared pool is empty, drain the per-thread caches oldest first
+        for (ThreadCache c : mThreadCaches) {
+            synchronized (c) {
+                while (c.count > 0 && mPooledBytes.get() > mBudgetBytes) {
+                    c.mats[0].close();
+                    mPooledBytes.addAndGet(-c.bytes[0]);
+                    c.removeAt(0);
+                    mEvictions.incrementAndGet();
+                }
+            }
+        }
+    }
+}
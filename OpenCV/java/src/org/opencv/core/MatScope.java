@@ -0,0 +1,129 @@
+package org.opencv.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects every Mat created on the current thread while the scope is open, including Mats
+ * created inside Imgproc/Core wrappers and Converters, and closes them when the scope is closed.
+ * <pre>
+ * try (MatScope scope = MatScope.open()) {
+ *     Mat gray = new Mat();
+ *     Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_RGBA2GRAY);
+ *     result = scope.keep(process(gray)); // survives the scope
+ * }
+ * </pre>
+ * Scopes nest; a Mat belongs to the innermost open scope of the thread that created it.
+ * A scope must be closed on the thread that opened it, in reverse order of opening.
+ * Mats created on threads without an open scope are not affected.
+ */
+public final class MatScope implements AutoCloseable {
+
+    private static final ThreadLocal<MatScope> sCurrent = new ThreadLocal<MatScope>();
+    // lets Mat constructors skip the ThreadLocal lookup while no scope is open anywhere
+    private static final AtomicInteger sOpenScopes = new AtomicInteger();
+
+    private final MatScope mParent;
+    private final Thread mOwner;
+    private Mat[] mMats = new Mat[16];
+    private int mCount;
+    private boolean mClosed;
+
+    private MatScope(MatScope parent) {
+        mParent = parent;
+        mOwner = Thread.currentThread();
+    }
+
+    /**
+     * Opens a new innermost scope for the current thread.
+     */
+    public static MatScope open() {
+        MatScope scope = new MatScope(sCurrent.get());
+        sCurrent.set(scope);
+        sOpenScopes.incrementAndGet();
+        return scope;
+    }
+
+    /**
+     * Removes the Mat from this scope so it is not closed with it. If there is an enclosing scope,
+     * the Mat is handed over to it.
+     * @return m, for chaining
+     */
+    public <T extends Mat> T keep(T m) {
+        if (remove(m) && mParent != null)
+            mParent.add(m);
+        return m;
+    }
+
+    /**
+     * Number of Mats currently owned by this scope.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Closes all Mats owned by this scope, newest first, and makes the enclosing scope current.
+     */
+    @Override
+    public void close() {
+        if (mClosed)
+            return;
+        if (Thread.currentThread() != mOwner)
+            throw new IllegalStateException("MatScope must be closed on the thread that opened it");
+        if (sCurrent.get() != this)
+            throw new IllegalStateException("Nested MatScope is still open");
+        mClosed = true;
+        sCurrent.set(mParent);
+        sOpenScopes.decrementAndGet();
+        for (int i = mCount - 1; i >= 0; i--) {
+            mMats[i].close();
+            mMats[i] = null;
+        }
+        mCount = 0;
+    }
+
+    /**
+     * Takes m out of the current thread's innermost scope without handing it to an enclosing one,
+     * for Mats owned by long-lived objects such as pools that may be filled while a scope is open.
+     * @return m, for chaining
+     */
+    static <T extends Mat> T exclude(T m) {
+        if (sOpenScopes.get() == 0)
+            return m;
+        MatScope scope = sCurrent.get();
+        if (scope != null)
+            scope.remove(m);
+        return m;
+    }
+
+    /**
+     * Called from every Mat constructor.
+     */
+    static void onCreated(Mat m) {
+        if (sOpenScopes.get() == 0)
+            return;
+        MatScope scope = sCurrent.get();
+        if (scope != null)
+            scope.add(m);
+    }
+
+    private boolean remove(Mat m) {
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (mMats[i] == m) {
+                System.arraycopy(mMats, i + 1, mMats, i, mCount - i - 1);
+                mMats[--mCount] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(Mat m) {
+        if (mCount == mMats.length) {
+            Mat[] grown = new Mat[mMats.length * 2];
+            System.arraycopy(mMats, 0, grown, 0, mCount);
+            mMats = grown;
+        }
+        mMats[mCount++] = m;
+    }
+}
@@ -0,0 +1,260 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounting of native Mat allocations and a detector for Mats that leaked to the garbage collector.
+ *
+ * The counters are always on and cost one atomic increment per Mat; reading them is a volatile read,
+ * so they can stay enabled in production builds. A Mat counts as leaked when the garbage collector
+ * reclaimed it while it still held pixel data, i.e. neither close() nor release() was called.
+ *
+ * Allocation sites are recorded only when sampling is enabled with setAllocationSiteSampling():
+ * every n-th Mat then captures a stack trace, which is reported if that Mat leaks.
+ * snapshot() walks all live Mats and is meant for diagnostics, not for every frame.
+ */
+public final class MatStats {
+
+    /**
+     * Receives leaks on the cleaner thread. Keep it short, it delays freeing of other Mats.
+     */
+    public interface LeakListener {
+        void onLeak(Leak leak);
+    }
+
+    public static final class Leak {
+        public final int type;
+        public final int rows;
+        public final int cols;
+        public final long bytes;
+        /** Stack trace of the Mat construction, null unless the allocation was sampled */
+        public final Throwable allocationSite;
+
+        Leak(int type, int rows, int cols, long bytes, Throwable allocationSite) {
+            this.type = type;
+            this.rows = rows;
+            this.cols = cols;
+            this.bytes = bytes;
+            this.allocationSite = allocationSite;
+        }
+
+        @Override
+        public String toString() {
+            return "Leaked Mat " + rows + "x" + cols + " " + CvType.typeToString(type) + " (" + bytes + " bytes)"
+                    + (allocationSite != null ? " allocated at " + describeSite(allocationSite) : "");
+        }
+    }
+
+    /**
+     * Live Mats of one type and size.
+     */
+    public static final class Bucket {
+        public final int type;
+        public final int rows;
+        public final int cols;
+        public int count;
+        /** Sum of the data sizes of the Mats, Mats sharing data are counted once per Mat */
+        public long bytes;
+
+        Bucket(int type, int rows, int cols) {
+            this.type = type;
+            this.rows = rows;
+            this.cols = cols;
+        }
+
+        @Override
+        public String toString() {
+            return rows + "x" + cols + " " + CvType.typeToString(type) + ": " + count + " Mats, " + bytes + " bytes";
+        }
+    }
+
+    public static final class Snapshot {
+        public final long created;
+        public final long closed;
+        public final long collected;
+        public final long leaked;
+        public final long leakedBytes;
+        public final int live;
+        /** Native pixel memory held by live Mats, shared buffers and submatrices counted once */
+        public final long liveBytes;
+        public final List<Bucket> buckets;
+
+        Snapshot(int live, long liveBytes, List<Bucket> buckets) {
+            this.created = sCreated.get();
+            this.closed = sClosed.get();
+            this.collected = sCollected.get();
+            this.leaked = sLeaked.get();
+            this.leakedBytes = sLeakedBytes.get();
+            this.live = live;
+            this.liveBytes = liveBytes;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Mats live=").append(live).append(" (").append(liveBytes).append(" bytes)")
+                    .append(" created=").append(created)
+                    .append(" closed=").append(closed)
+                    .append(" collected=").append(collected)
+                    .append(" leaked=").append(leaked).append(" (").append(leakedBytes).append(" bytes)");
+            for (Bucket b : buckets)
+                sb.append("\n  ").append(b);
+            return sb.toString();
+        }
+    }
+
+    private static final int MAX_LEAK_SITES = 64;
+
+    private static final AtomicLong sCreated = new AtomicLong();
+    private static final AtomicLong sClosed = new AtomicLong();
+    private static final AtomicLong sCollected = new AtomicLong();
+    private static final AtomicLong sLeaked = new AtomicLong();
+    private static final AtomicLong sLeakedBytes = new AtomicLong();
+
+    private static volatile int sSampleEvery = 0;
+    private static volatile LeakListener sLeakListener;
+    // allocation site description -> number of leaks, written on the cleaner thread only
+    private static final Map<String, Long> sLeakSites = new LinkedHashMap<String, Long>();
+
+    private MatStats() {}
+
+    /**
+     * Enables capturing of the allocation stack trace of every n-th Mat.
+     * @param everyNth - sampling period, 1 records every Mat, 0 disables sampling
+     */
+    public static void setAllocationSiteSampling(int everyNth) {
+        if (everyNth < 0)
+            throw new IllegalArgumentException("Sampling period must not be negative: " + everyNth);
+        sSampleEvery = everyNth;
+    }
+
+    public static void setLeakListener(LeakListener listener) {
+        sLeakListener = listener;
+    }
+
+    /** Number of Mat objects whose native object has not been freed yet */
+    public static long getLiveCount() {
+        return sCreated.get() - sClosed.get() - sCollected.get();
+    }
+
+    public static long getCreatedCount() {
+        return sCreated.get();
+    }
+
+    public static long getLeakedCount() {
+        return sLeaked.get();
+    }
+
+    public static long getLeakedBytes() {
+        return sLeakedBytes.get();
+    }
+
+    /**
+     * Allocation sites of sampled leaked Mats with the number of leaks each, most recent sites last.
+     */
+    public static Map<String, Long> getLeakSites() {
+        synchronized (sLeakSites) {
+            return new LinkedHashMap<String, Long>(sLeakSites);
+        }
+    }
+
+    /**
+     * Groups all live Mats by type and size. Blocks freeing of Mats while it runs.
+     */
+    public static Snapshot snapshot() {
+        final Map<Long, Bucket> buckets = new HashMap<Long, Bucket>();
+        final Set<Long> dataAddrs = new HashSet<Long>();
+        final long[] liveBytes = new long[1];
+        int live = NativeCleaner.forEachLive(new NativeCleaner.Visitor() {
+            @Override
+            public void visit(long nativeObj) {
+                int type = Mat.nativeType(nativeObj);
+                int rows = Mat.nativeRows(nativeObj);
+                int cols = Mat.nativeCols(nativeObj);
+                long bytes = Mat.nativeDataBytes(nativeObj);
+                long key = ((long) type << 48) ^ ((long) rows << 24) ^ cols;
+                Bucket b = buckets.get(key);
+                if (b == null) {
+                    b = new Bucket(type, rows, cols);
+                    buckets.put(key, b);
+                }
+                b.count++;
+                b.bytes += bytes;
+                if (bytes > 0 && !Mat.nativeIsSubmatrix(nativeObj) && dataAddrs.add(Mat.nativeDataAddr(nativeObj)))
+                    liveBytes[0] += bytes;
+            }
+        });
+        List<Bucket> list = new ArrayList<Bucket>(buckets.values());
+        Collections.sort(list, new Comparator<Bucket>() {
+            @Override
+            public int compare(Bucket a, Bucket b) {
+                return Long.compare(b.bytes, a.bytes);
+            }
+        });
+        return new Snapshot(live, liveBytes[0], list);
+    }
+
+    /**
+     * Called from every Mat constructor.
+     * @return the allocation site if this allocation is sampled, otherwise null
+     */
+    static Throwable onCreated() {
+        long n = sCreated.incrementAndGet();
+        int every = sSampleEvery;
+        if (every > 0 && n % every == 0)
+            return new Throwable("Mat allocation site");
+        return null;
+    }
+
+    static void onClosed() {
+        sClosed.incrementAndGet();
+    }
+
+    /**
+     * Called on the cleaner thread before a garbage collected Mat is deleted.
+     */
+    static void onCollected(long nativeObj, Throwable allocationSite) {
+        sCollected.incrementAndGet();
+        long bytes = Mat.nativeDataBytes(nativeObj);
+        if (bytes == 0)
+            return; // released, only the header was left to the collector
+        sLeaked.incrementAndGet();
+        sLeakedBytes.addAndGet(bytes);
+        if (allocationSite != null) {
+            String site = describeSite(allocationSite);
+            synchronized (sLeakSites) {
+                Long count = sLeakSites.remove(site);
+                if (count == null && sLeakSites.size() >= MAX_LEAK_SITES)
+                    sLeakSites.remove(sLeakSites.keySet().iterator().next());
+                sLeakSites.put(site, count == null ? 1 : count + 1);
+            }
+        }
+        LeakListener listener = sLeakListener;
+        if (listener != null) {
+            listener.onLeak(new Leak(Mat.nativeType(nativeObj), Mat.nativeRows(nativeObj),
+                    Mat.nativeCols(nativeObj), bytes, allocationSite));
+        }
+    }
+
+    /**
+     * First frame outside of the OpenCV bindings, i.e. the code that asked for the Mat.
+     */
+    static String describeSite(Throwable site) {
+        for (StackTraceElement e : site.getStackTrace()) {
+            if (!e.getClassName().startsWith("org.opencv."))
+                return e.toString();
+        }
+        StackTraceElement[] trace = site.getStackTrace();
+        return trace.length > 0 ? trace[trace.length - 1].toString() : "unknown";
+    }
+}
@@ -0,0 +1,142 @@
+package org.opencv.core;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Frees native objects of unreachable Java wrappers on a single daemon thread.
+ * It plays the role of java.lang.ref.Cleaner (not available before Android API 33) and
+ * replaces finalize(), which keeps the wrapper alive for an extra GC cycle and runs on the
+ * shared finalizer thread.
+ */
+final class NativeCleaner {
+
+    interface Deleter {
+        void delete(long nativeObj);
+
+        /**
+         * Called on the cleaner thread right before delete() when the wrapper was garbage collected
+         * without being cleaned explicitly; the native object is still valid.
+         */
+        void collected(long nativeObj, Object tag);
+    }
+
+    interface Visitor {
+        void visit(long nativeObj);
+    }
+
+    /**
+     * Handle of a registered native object. clean() frees the object at most once,
+     * either when called explicitly or when the wrapper became phantom reachable.
+     */
+    static final class Cleanable extends PhantomReference<Object> {
+        private final long mNativeObj;
+        private final Deleter mDeleter;
+        private final Object mTag;
+        // registered cleanables are kept strongly reachable through this list
+        private Cleanable mPrev;
+        private Cleanable mNext;
+
+        private Cleanable(Object referent, long nativeObj, Deleter deleter, Object tag) {
+            super(referent, sQueue);
+            mNativeObj = nativeObj;
+            mDeleter = deleter;
+            mTag = tag;
+        }
+
+        /**
+         * @return true if this call freed the native object, false if it had been freed before
+         */
+        public boolean clean() {
+            if (!unlink(this))
+                return false;
+            clear();
+            mDeleter.delete(mNativeObj);
+            return true;
+        }
+
+        private void collect() {
+            if (!unlink(this))
+                return;
+            try {
+                mDeleter.collected(mNativeObj, mTag);
+            } finally {
+                mDeleter.delete(mNativeObj);
+            }
+        }
+    }
+
+    private static final ReferenceQueue<Object> sQueue = new ReferenceQueue<Object>();
+    private static final Object sLock = new Object();
+    private static Cleanable sHead;
+    private static Thread sThread;
+
+    private NativeCleaner() {}
+
+    /**
+     * @param tag - opaque value handed back to Deleter.collected(), may be null
+     */
+    static Cleanable register(Object referent, long nativeObj, Deleter deleter, Object tag) {
+        Cleanable c = new Cleanable(referent, nativeObj, deleter, tag);
+        synchronized (sLock) {
+            if (sThread == null)
+                startThread();
+            c.mNext = sHead;
+            if (sHead != null)
+                sHead.mPrev = c;
+            sHead = c;
+        }
+        return c;
+    }
+
+    /**
+     * Visits every registered native object that has not been freed yet. Objects cannot be freed
+     * while the visit is in progress, so the visitor may safely pass them to native code.
+     * @return number of visited objects
+     */
+    static int forEachLive(Visitor visitor) {
+        int n = 0;
+        synchronized (sLock) {
+            for (Cleanable c = sHead; c != null; c = c.mNext) {
+                visitor.visit(c.mNativeObj);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static boolean unlink(Cleanable c) {
+        synchronized (sLock) {
+            if (c.mNext == c)
+                return false; // already cleaned
+            if (c.mPrev != null)
+                c.mPrev.mNext = c.mNext;
+            else
+                sHead = c.mNext;
+            if (c.mNext != null)
+                c.mNext.mPrev = c.mPrev;
+            c.mPrev = c;
+            c.mNext = c;
+            return true;
+        }
+    }
+
+    private static void startThread() {
+        sThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        ((Cleanable) sQueue.remove()).collect();
+                    } catch (InterruptedException e) {
+                        // keep serving, the thread lives as long as the process
+                    } catch (Throwable t) {
+                        // a failing deleter must not stop the thread
+                    }
+                }
+            }
+        }, "OpenCVNativeCleaner");
+        sThread.setDaemon(true);
+        sThread.start();
+    }
+}
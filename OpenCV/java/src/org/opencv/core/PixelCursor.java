@@ -0,0 +1,240 @@
+package org.opencv.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Per-pixel access to a 2D Mat from Java without a JNI call per pixel.
+ * <pre>
+ * PixelCursor c = new PixelCursor();          // reusable, keep it with the stage
+ * c.attach(gray, false);
+ * for (int y = 0; y &lt; c.rows(); y++)
+ *     for (int x = 0; x &lt; c.cols(); x++)
+ *         sum += c.u8(y, x, 0);
+ * c.detach();
+ * </pre>
+ * Mats whose data lives in a direct buffer (Mat.allocateDirect() and its submatrices) are accessed
+ * in place. Other Mats are copied into a buffer owned by the cursor with one native call when
+ * attached and, if attached writable, copied back with one native call by detach(). Non-continuous
+ * ROIs are fine in both cases.
+ *
+ * For the innermost loops, buffer() with rowOffset(), pixelBytes() and the element size gives the
+ * raw byte layout. Typed accessors check the position and the Mat depth.
+ *
+ * The Mat must not be modified by other code while attached. Not thread safe.
+ */
+public final class PixelCursor implements AutoCloseable {
+
+    private Mat mMat;
+    private boolean mWritable;
+    private ByteBuffer mBuf;
+    private int mRows;
+    private int mCols;
+    private int mChannels;
+    private int mDepth;
+    private int mElemSize1;
+    private int mPixelBytes;
+    private int mStepBytes;
+
+    // copy of the Mat data for Mats not backed by a direct buffer, reused between attach() calls
+    private ByteBuffer mShadowBuf;
+    private Mat mShadow;
+    private boolean mCopied;
+
+    /**
+     * Attaches the cursor to a 2D Mat, detaching it from the previous one first.
+     * @param writable - whether setters may be used; a copied Mat is written back on detach()
+     */
+    public PixelCursor attach(Mat m, boolean writable) {
+        detach();
+        if (m.dims() > 2)
+            throw new IllegalArgumentException("PixelCursor supports 2D Mats only, dims=" + m.dims());
+        mRows = m.rows();
+        mCols = m.cols();
+        int type = m.type();
+        mChannels = CvType.channels(type);
+        mDepth = CvType.depth(type);
+        mElemSize1 = CvType.ELEM_SIZE(type) / mChannels;
+        mPixelBytes = CvType.ELEM_SIZE(type);
+
+        ByteBuffer span = m.directDataSpan();
+        if (span != null) {
+            mBuf = span;
+            mStepBytes = (int) (m.step1(0) * mElemSize1);
+            mCopied = false;
+        } else {
+            long bytes = (long) mRows * mCols * mPixelBytes;
+            if (bytes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Mat too large: " + bytes + " bytes");
+            ensureShadow(type, (int) bytes);
+            if (!m.empty())
+                m.copyTo(mShadow);
+            mBuf = mShadowBuf;
+            mStepBytes = mCols * mPixelBytes;
+            mCopied = true;
+        }
+        mMat = m;
+        mWritable = writable;
+        return this;
+    }
+
+    /**
+     * Writes a copied writable Mat back and releases the Mat; a no-op if nothing is attached.
+     */
+    public void detach() {
+        Mat m = mMat;
+        if (m == null)
+            return;
+        mMat = null;
+        mBuf = null;
+        if (mCopied && mWritable && !m.empty())
+            mShadow.copyTo(m);
+    }
+
+    @Override
+    public void close() {
+        detach();
+    }
+
+    /**
+     * Frees the buffer used for copied Mats.
+     */
+    public void release() {
+        detach();
+        if (mShadow != null) {
+            mShadow.close();
+            mShadow = null;
+        }
+        mShadowBuf = null;
+    }
+
+    public int rows() {
+        return mRows;
+    }
+
+    public int cols() {
+        return mCols;
+    }
+
+    public int channels() {
+        return mChannels;
+    }
+
+    public int depth() {
+        return mDepth;
+    }
+
+    /** Bytes per pixel, all channels */
+    public int pixelBytes() {
+        return mPixelBytes;
+    }
+
+    /** Bytes from one row to the next in buffer() */
+    public int stepBytes() {
+        return mStepBytes;
+    }
+
+    /** Byte index of the first pixel of a row in buffer() */
+    public int rowOffset(int row) {
+        if (row < 0 || row >= mRows)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + mRows);
+        return row * mStepBytes;
+    }
+
+    /**
+     * Pixel data in native byte order, pixel (row, col) channel ch at
+     * rowOffset(row) + col * pixelBytes() + ch * element size. Valid until detach().
+     */
+    public ByteBuffer buffer() {
+        checkAttached();
+        return mBuf;
+    }
+
+    public int u8(int row, int col, int ch) {
+        return mBuf.get(index(row, col, ch, CvType.CV_8U)) & 0xff;
+    }
+
+    public void setU8(int row, int col, int ch, int v) {
+        mBuf.put(index(row, col, ch, CvType.CV_8U, true), (byte) v);
+    }
+
+    public byte s8(int row, int col, int ch) {
+        return mBuf.get(index(row, col, ch, CvType.CV_8S));
+    }
+
+    public void setS8(int row, int col, int ch, byte v) {
+        mBuf.put(index(row, col, ch, CvType.CV_8S, true), v);
+    }
+
+    public int u16(int row, int col, int ch) {
+        return mBuf.getShort(index(row, col, ch, CvType.CV_16U)) & 0xffff;
+    }
+
+    public void setU16(int row, int col, int ch, int v) {
+        mBuf.putShort(index(row, col, ch, CvType.CV_16U, true), (short) v);
+    }
+
+    public short s16(int row, int col, int ch) {
+        return mBuf.getShort(index(row, col, ch, CvType.CV_16S));
+    }
+
+    public void setS16(int row, int col, int ch, short v) {
+        mBuf.putShort(index(row, col, ch, CvType.CV_16S, true), v);
+    }
+
+    public int s32(int row, int col, int ch) {
+        return mBuf.getInt(index(row, col, ch, CvType.CV_32S));
+    }
+
+    public void setS32(int row, int col, int ch, int v) {
+        mBuf.putInt(index(row, col, ch, CvType.CV_32S, true), v);
+    }
+
+    public float f32(int row, int col, int ch) {
+        return mBuf.getFloat(index(row, col, ch, CvType.CV_32F));
+    }
+
+    public void setF32(int row, int col, int ch, float v) {
+        mBuf.putFloat(index(row, col, ch, CvType.CV_32F, true), v);
+    }
+
+    public double f64(int row, int col, int ch) {
+        return mBuf.getDouble(index(row, col, ch, CvType.CV_64F));
+    }
+
+    public void setF64(int row, int col, int ch, double v) {
+        mBuf.putDouble(index(row, col, ch, CvType.CV_64F, true), v);
+    }
+
+    private int index(int row, int col, int ch, int depth) {
+        return index(row, col, ch, depth, false);
+    }
+
+    private int index(int row, int col, int ch, int depth, boolean write) {
+        checkAttached();
+        if (depth != mDepth)
+            throw new UnsupportedOperationException("Mat depth " + mDepth + " accessed as " + depth);
+        if (write && !mWritable)
+            throw new IllegalStateException("PixelCursor is attached read-only");
+        if (row < 0 || row >= mRows || col < 0 || col >= mCols || ch < 0 || ch >= mChannels)
+            throw new IndexOutOfBoundsException(
+                    "(" + row + ", " + col + ", " + ch + ") outside " + mRows + "x" + mCols + "x" + mChannels);
+        return row * mStepBytes + col * mPixelBytes + ch * mElemSize1;
+    }
+
+    private void checkAttached() {
+        if (mMat == null)
+            throw new IllegalStateException("PixelCursor is not attached");
+    }
+
+    private void ensureShadow(int type, int bytes) {
+        if (mShadow != null && mShadow.rows() == mRows && mShadow.cols() == mCols && mShadow.type() == type)
+            return;
+        if (mShadow != null)
+            mShadow.close();
+        if (mShadowBuf == null || mShadowBuf.capacity() < bytes)
+            mShadowBuf = ByteBuffer.allocateDirect(Math.max(bytes, 1)).order(ByteOrder.nativeOrder());
+        // the shadow Mat belongs to this cursor, not to an enclosing MatScope
+        mShadow = MatScope.exclude(new Mat(mRows, mCols, type, mShadowBuf));
+    }
+}
@@ -0,0 +1,162 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of integer points stored as interleaved x, y values in one int[].
+ * An alternative to MatOfPoint.toArray()/fromArray() that creates no Point objects:
+ * fromMat()/toMat() copy all points with a single Mat.get()/put() call.
+ * Not thread safe.
+ */
+public class PointBufferI {
+    // same layout as CV_32SC2
+    private static final int _channels = 2;
+
+    private int[] mData;
+    private int mSize;
+
+    public PointBufferI() {
+        this(16);
+    }
+
+    public PointBufferI(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        // Mat.get()/put() need an even length, keep at least room for one point
+        mData = new int[Math.max(capacity, 1) * _channels];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int capacity() {
+        return mData.length / _channels;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Grows the backing array to hold at least n points, keeping its content.
+     */
+    public void ensureCapacity(int n) {
+        if (n * _channels > mData.length)
+            mData = Arrays.copyOf(mData, Math.max(n, capacity() * 2) * _channels);
+    }
+
+    /**
+     * Changes the number of points; new points keep whatever the backing array held.
+     */
+    public void resize(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Negative size: " + n);
+        ensureCapacity(n);
+        mSize = n;
+    }
+
+    public void add(int x, int y) {
+        ensureCapacity(mSize + 1);
+        mData[mSize * _channels] = x;
+        mData[mSize * _channels + 1] = y;
+        mSize++;
+    }
+
+    public void set(int i, int x, int y) {
+        checkIndex(i);
+        mData[i * _channels] = x;
+        mData[i * _channels + 1] = y;
+    }
+
+    public int x(int i) {
+        checkIndex(i);
+        return mData[i * _channels];
+    }
+
+    public int y(int i) {
+        checkIndex(i);
+        return mData[i * _channels + 1];
+    }
+
+    /**
+     * Backing array with x, y of point i at 2 * i and 2 * i + 1; valid until the buffer grows.
+     */
+    public int[] array() {
+        return mData;
+    }
+
+    /**
+     * Replaces the content with the points of a CV_32SC2 vector Mat such as MatOfPoint.
+     */
+    public void fromMat(Mat m) {
+        if (m.empty()) {
+            mSize = 0;
+            return;
+        }
+        int n = m.checkVector(_channels, CvType.CV_32S, true);
+        if (n < 0)
+            throw new IllegalArgumentException("Incompatible Mat: " + m);
+        resize(n);
+        if (n > 0)
+            m.get(0, 0, mData); // copies only the n points the Mat holds
+    }
+
+    /**
+     * Stores the points in m as a size() x 1 CV_32SC2 Mat, reallocating it only if its shape differs.
+     */
+    public void toMat(Mat m) {
+        m.create(mSize, 1, CvType.CV_32SC2);
+        if (mSize > 0)
+            m.put(0, 0, mData);
+    }
+
+    public MatOfPoint toMat() {
+        MatOfPoint m = new MatOfPoint();
+        toMat(m);
+        return m;
+    }
+
+    /**
+     * Polygon area by the shoelace formula, same as Imgproc.contourArea(contour, false).
+     */
+    public double area() {
+        long twice = 0;
+        int[] d = mData;
+        for (int i = 0, j = mSize - 1; i < mSize; j = i++)
+            twice += (long) d[j * 2] * d[i * 2 + 1] - (long) d[i * 2] * d[j * 2 + 1];
+        return Math.abs(twice) / 2.0;
+    }
+
+    /**
+     * Upright bounding rectangle, same as Imgproc.boundingRect(); empty for an empty buffer.
+     * @return r, for chaining
+     */
+    public Rect boundingRect(Rect r) {
+        if (mSize == 0) {
+            r.x = r.y = r.width = r.height = 0;
+            return r;
+        }
+        int[] d = mData;
+        int minX = d[0], maxX = d[0], minY = d[1], maxY = d[1];
+        for (int i = 1; i < mSize; i++) {
+            int x = d[i * 2], y = d[i * 2 + 1];
+            if (x < minX) minX = x; else if (x > maxX) maxX = x;
+            if (y < minY) minY = y; else if (y > maxY) maxY = y;
+        }
+        r.x = minX;
+        r.y = minY;
+        r.width = maxX - minX + 1;
+        r.height = maxY - minY + 1;
+        return r;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mSize)
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mSize);
+    }
+}
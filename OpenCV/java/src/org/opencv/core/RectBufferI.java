@@ -0,0 +1,170 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of integer rectangles stored as x, y, width, height in one int[].
+ * An alternative to MatOfRect.toArray()/fromArray() that creates no Rect objects:
+ * fromMat()/toMat() copy all rectangles with a single Mat.get()/put() call.
+ * Not thread safe.
+ */
+public class RectBufferI {
+    // same layout as CV_32SC4
+    private static final int _channels = 4;
+
+    private int[] mData;
+    private int mSize;
+
+    public RectBufferI() {
+        this(16);
+    }
+
+    public RectBufferI(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        // Mat.get()/put() need a multiple of 4, keep at least room for one rectangle
+        mData = new int[Math.max(capacity, 1) * _channels];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int capacity() {
+        return mData.length / _channels;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Grows the backing array to hold at least n rectangles, keeping its content.
+     */
+    public void ensureCapacity(int n) {
+        if (n * _channels > mData.length)
+            mData = Arrays.copyOf(mData, Math.max(n, capacity() * 2) * _channels);
+    }
+
+    /**
+     * Changes the number of rectangles; new ones keep whatever the backing array held.
+     */
+    public void resize(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Negative size: " + n);
+        ensureCapacity(n);
+        mSize = n;
+    }
+
+    public void add(int x, int y, int width, int height) {
+        ensureCapacity(mSize + 1);
+        int o = mSize * _channels;
+        mData[o] = x;
+        mData[o + 1] = y;
+        mData[o + 2] = width;
+        mData[o + 3] = height;
+        mSize++;
+    }
+
+    public void set(int i, int x, int y, int width, int height) {
+        checkIndex(i);
+        int o = i * _channels;
+        mData[o] = x;
+        mData[o + 1] = y;
+        mData[o + 2] = width;
+        mData[o + 3] = height;
+    }
+
+    public int x(int i) {
+        checkIndex(i);
+        return mData[i * _channels];
+    }
+
+    public int y(int i) {
+        checkIndex(i);
+        return mData[i * _channels + 1];
+    }
+
+    public int width(int i) {
+        checkIndex(i);
+        return mData[i * _channels + 2];
+    }
+
+    public int height(int i) {
+        checkIndex(i);
+        return mData[i * _channels + 3];
+    }
+
+    public long area(int i) {
+        checkIndex(i);
+        return (long) mData[i * _channels + 2] * mData[i * _channels + 3];
+    }
+
+    public boolean contains(int i, int px, int py) {
+        checkIndex(i);
+        int o = i * _channels;
+        return px >= mData[o] && py >= mData[o + 1]
+                && px < mData[o] + mData[o + 2] && py < mData[o + 1] + mData[o + 3];
+    }
+
+    /**
+     * Copies rectangle i into r.
+     * @return r, for chaining
+     */
+    public Rect get(int i, Rect r) {
+        checkIndex(i);
+        int o = i * _channels;
+        r.x = mData[o];
+        r.y = mData[o + 1];
+        r.width = mData[o + 2];
+        r.height = mData[o + 3];
+        return r;
+    }
+
+    /**
+     * Backing array with rectangle i at 4 * i .. 4 * i + 3; valid until the buffer grows.
+     */
+    public int[] array() {
+        return mData;
+    }
+
+    /**
+     * Replaces the content with the rectangles of a CV_32SC4 vector Mat such as MatOfRect.
+     */
+    public void fromMat(Mat m) {
+        if (m.empty()) {
+            mSize = 0;
+            return;
+        }
+        int n = m.checkVector(_channels, CvType.CV_32S, true);
+        if (n < 0)
+            throw new IllegalArgumentException("Incompatible Mat: " + m);
+        resize(n);
+        if (n > 0)
+            m.get(0, 0, mData); // copies only the n rectangles the Mat holds
+    }
+
+    /**
+     * Stores the rectangles in m as a size() x 1 CV_32SC4 Mat, reallocating it only if its shape differs.
+     */
+    public void toMat(Mat m) {
+        m.create(mSize, 1, CvType.CV_32SC4);
+        if (mSize > 0)
+            m.put(0, 0, mData);
+    }
+
+    public MatOfRect toMat() {
+        MatOfRect m = new MatOfRect();
+        toMat(m);
+        return m;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mSize)
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mSize);
+    }
+}
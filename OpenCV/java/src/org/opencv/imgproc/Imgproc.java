@@ -5,6 +5,7 @@ package org.opencv.imgproc;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.opencv.core.Contours;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfFloat;
 import org.opencv.core.MatOfInt;
@@ -7630,6 +7631,37 @@ public class Imgproc {
         contours_mat.release();
     }
 
+    /**
+     * Finds contours in a binary image, like findContours(Mat, List, Mat, int, int, Point), into a
+     * reusable Contours object instead of a new MatOfPoint per contour.
+     *
+     * Contours rejected by the filter of {@code contours} (see Contours.setFilter) are dropped before
+     * any Java data is built. hierarchy still describes all contours found; use
+     * Contours.sourceIndex() to map a kept contour to its hierarchy entry.
+     *
+     * @param image Source, an 8-bit single-channel image, see findContours(Mat, List, Mat, int, int, Point)
+     * @param contours Output, cleared and refilled on every call
+     * @param hierarchy Optional output vector containing information about the image topology
+     * @param mode Contour retrieval mode, see #RetrievalModes
+     * @param method Contour approximation method, see #ContourApproximationModes
+     * @param offset Optional offset by which every contour point is shifted
+     */
+    public static void findContours(Mat image, Contours contours, Mat hierarchy, int mode, int method, Point offset) {
+        Mat contours_mat = contours.vectorMat();
+        findContours_0(image.nativeObj, contours_mat.nativeObj, hierarchy.nativeObj, mode, method, offset.x, offset.y);
+        contours.fromVectorMat(contours_mat);
+    }
+
+    /**
+     * Finds contours in a binary image into a reusable Contours object.
+     * See findContours(Mat, Contours, Mat, int, int, Point).
+     */
+    public static void findContours(Mat image, Contours contours, Mat hierarchy, int mode, int method) {
+        Mat contours_mat = contours.vectorMat();
+        findContours_1(image.nativeObj, contours_mat.nativeObj, hierarchy.nativeObj, mode, method);
+        contours.fromVectorMat(contours_mat);
+    }
+
 
     //
     // C++:  void cv::approxPolyDP(vector_Point2f curve, vector_Point2f& approxCurve, double epsilon, bool closed)
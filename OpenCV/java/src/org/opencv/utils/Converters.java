@@ -1,7 +1,11 @@
 package org.opencv.utils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
@@ -22,6 +26,148 @@ import org.opencv.core.KeyPoint;
 
 public class Converters {
 
+    // Scratch arrays reused by the conversions running on the calling thread. Mat.put()/get()
+    // require the array length to be a multiple of the channel count, so the length is kept a
+    // multiple of SCRATCH_GRANULE which every channel count used here divides. The native side
+    // copies only as many elements as the Mat holds, a longer array is fine.
+    private static final int SCRATCH_GRANULE = 420; // lcm(1, 2, 3, 4, 5, 7)
+    private static final int SCRATCH_MAX_RETAINED = 1 << 18; // elements kept per array and thread
+
+    private static final class Scratch {
+        int[] ints = new int[0];
+        float[] floats = new float[0];
+        double[] doubles = new double[0];
+    }
+
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private static int scratchLength(int count) {
+        return (count + SCRATCH_GRANULE - 1) / SCRATCH_GRANULE * SCRATCH_GRANULE;
+    }
+
+    private static int[] scratchInts(int count) {
+        Scratch s = sScratch.get();
+        if (s.ints.length >= count && s.ints.length > 0)
+            return s.ints;
+        int[] a = new int[scratchLength(Math.max(count, 1))];
+        if (a.length <= SCRATCH_MAX_RETAINED)
+            s.ints = a;
+        return a;
+    }
+
+    private static float[] scratchFloats(int count) {
+        Scratch s = sScratch.get();
+        if (s.floats.length >= count && s.floats.length > 0)
+            return s.floats;
+        float[] a = new float[scratchLength(Math.max(count, 1))];
+        if (a.length <= SCRATCH_MAX_RETAINED)
+            s.floats = a;
+        return a;
+    }
+
+    private static double[] scratchDoubles(int count) {
+        Scratch s = sScratch.get();
+        if (s.doubles.length >= count && s.doubles.length > 0)
+            return s.doubles;
+        double[] a = new double[scratchLength(Math.max(count, 1))];
+        if (a.length <= SCRATCH_MAX_RETAINED)
+            s.doubles = a;
+        return a;
+    }
+
+    // Rect, KeyPoint and DMatch vectors of at least this many elements are converted on all cores
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 32768;
+    // smallest range handed to one fork/join task
+    private static final int PARALLEL_GRAIN = 4096;
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private static volatile int sParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private static volatile ForkJoinPool sPool;
+
+    /**
+     * Sets the vector length from which the Rect, KeyPoint and DMatch conversions split their
+     * loops across cores. Results are identical either way. Integer.MAX_VALUE disables it.
+     */
+    public static void setParallelThreshold(int minElements) {
+        if (minElements < 1)
+            throw new IllegalArgumentException("Threshold must be positive: " + minElements);
+        sParallelThreshold = minElements;
+    }
+
+    public static int getParallelThreshold() {
+        return sParallelThreshold;
+    }
+
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeBody mBody;
+        private final int mFrom;
+        private final int mTo;
+        private final int mGrain;
+
+        RangeTask(RangeBody body, int from, int to, int grain) {
+            mBody = body;
+            mFrom = from;
+            mTo = to;
+            mGrain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= mGrain) {
+                mBody.run(mFrom, mTo);
+                return;
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            invokeAll(new RangeTask(mBody, mFrom, mid, mGrain), new RangeTask(mBody, mid, mTo, mGrain));
+        }
+    }
+
+    // lists are read from several threads by index, so only random access lists qualify
+    private static boolean isParallel(int count, List<?> src) {
+        return count >= sParallelThreshold && CPUS > 1 && (src == null || src instanceof RandomAccess);
+    }
+
+    private static void forRange(int count, RangeBody body) {
+        ForkJoinPool pool = sPool;
+        if (pool == null) {
+            synchronized (Converters.class) {
+                pool = sPool;
+                if (pool == null)
+                    sPool = pool = new ForkJoinPool(CPUS); // commonPool() needs API 24
+            }
+        }
+        int grain = Math.max(PARALLEL_GRAIN, count / (CPUS * 4));
+        pool.invoke(new RangeTask(body, 0, count, grain));
+    }
+
+    private static void checkOutput(Mat dst) {
+        if (dst == null)
+            throw new IllegalArgumentException("Output Mat can't be null");
+    }
+
+    // arrays may be longer than needed, so the primitive overloads copy exactly count * elemChannels values
+    private static int checkCapacity(Mat m, int type, int elemChannels, int arrayLength) {
+        if (type != m.type() || (m.cols() != 1 && m.rows() > 0))
+            throw new IllegalArgumentException(
+                    "Input Mat should be of " + CvType.typeToString(type) + " type with one column\n" + m);
+        int count = m.rows();
+        if (arrayLength < count * elemChannels)
+            throw new IllegalArgumentException(
+                    "Output array is too small: " + arrayLength + " < " + count * elemChannels);
+        return count;
+    }
+
     public static Mat vector_Point_to_Mat(List<Point> pts) {
         return vector_Point_to_Mat(pts, CvType.CV_32S);
     }
@@ -35,53 +181,106 @@ public class Converters {
     }
 
     public static Mat vector_Point_to_Mat(List<Point> pts, int typeDepth) {
-        Mat res;
+        Mat res = new Mat();
         int count = (pts != null) ? pts.size() : 0;
         if (count > 0) {
-            switch (typeDepth) {
-            case CvType.CV_32S: {
-                res = new Mat(count, 1, CvType.CV_32SC2);
-                int[] buff = new int[count * 2];
-                for (int i = 0; i < count; i++) {
-                    Point p = pts.get(i);
-                    buff[i * 2] = (int) p.x;
-                    buff[i * 2 + 1] = (int) p.y;
-                }
-                res.put(0, 0, buff);
-            }
-                break;
+            vector_Point_to_Mat(pts, typeDepth, res);
+        }
+        return res;
+    }
 
-            case CvType.CV_32F: {
-                res = new Mat(count, 1, CvType.CV_32FC2);
-                float[] buff = new float[count * 2];
-                for (int i = 0; i < count; i++) {
-                    Point p = pts.get(i);
-                    buff[i * 2] = (float) p.x;
-                    buff[i * 2 + 1] = (float) p.y;
-                }
-                res.put(0, 0, buff);
+    /**
+     * Writes the points into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_Point_to_Mat(List<Point> pts, int typeDepth, Mat dst) {
+        checkOutput(dst);
+        int count = (pts != null) ? pts.size() : 0;
+        switch (typeDepth) {
+        case CvType.CV_32S: {
+            dst.create(count, 1, CvType.CV_32SC2);
+            if (count == 0)
+                return;
+            int[] buff = scratchInts(count * 2);
+            for (int i = 0; i < count; i++) {
+                Point p = pts.get(i);
+                buff[i * 2] = (int) p.x;
+                buff[i * 2 + 1] = (int) p.y;
             }
-                break;
+            dst.put(0, 0, buff);
+        }
+            break;
 
-            case CvType.CV_64F: {
-                res = new Mat(count, 1, CvType.CV_64FC2);
-                double[] buff = new double[count * 2];
-                for (int i = 0; i < count; i++) {
-                    Point p = pts.get(i);
-                    buff[i * 2] = p.x;
-                    buff[i * 2 + 1] = p.y;
-                }
-                res.put(0, 0, buff);
+        case CvType.CV_32F: {
+            dst.create(count, 1, CvType.CV_32FC2);
+            if (count == 0)
+                return;
+            float[] buff = scratchFloats(count * 2);
+            for (int i = 0; i < count; i++) {
+                Point p = pts.get(i);
+                buff[i * 2] = (float) p.x;
+                buff[i * 2 + 1] = (float) p.y;
             }
-                break;
+            dst.put(0, 0, buff);
+        }
+            break;
 
-            default:
-                throw new IllegalArgumentException("'typeDepth' can be CV_32S, CV_32F or CV_64F");
+        case CvType.CV_64F: {
+            dst.create(count, 1, CvType.CV_64FC2);
+            if (count == 0)
+                return;
+            double[] buff = scratchDoubles(count * 2);
+            for (int i = 0; i < count; i++) {
+                Point p = pts.get(i);
+                buff[i * 2] = p.x;
+                buff[i * 2 + 1] = p.y;
             }
+            dst.put(0, 0, buff);
+        }
+            break;
+
+        default:
+            throw new IllegalArgumentException("'typeDepth' can be CV_32S, CV_32F or CV_64F");
+        }
+    }
+
+    /**
+     * Writes count points given as interleaved x, y values into dst without any per-point objects.
+     * dst is reallocated only if its size or type does not match.
+     */
+    public static void vector_Point_to_Mat(int[] xy, int count, Mat dst) {
+        checkOutput(dst);
+        if (xy == null || xy.length < count * 2)
+            throw new IllegalArgumentException("Input array holds less than " + count + " points");
+        dst.create(count, 1, CvType.CV_32SC2);
+        if (count == 0)
+            return;
+        if (xy.length % 2 == 0) {
+            dst.put(0, 0, xy); // copies only count points
         } else {
-            res = new Mat();
+            int[] buff = scratchInts(count * 2);
+            System.arraycopy(xy, 0, buff, 0, count * 2);
+            dst.put(0, 0, buff);
+        }
+    }
+
+    /**
+     * Float variant of {@link #vector_Point_to_Mat(int[], int, Mat)} producing a CV_32FC2 Mat.
+     */
+    public static void vector_Point_to_Mat(float[] xy, int count, Mat dst) {
+        checkOutput(dst);
+        if (xy == null || xy.length < count * 2)
+            throw new IllegalArgumentException("Input array holds less than " + count + " points");
+        dst.create(count, 1, CvType.CV_32FC2);
+        if (count == 0)
+            return;
+        if (xy.length % 2 == 0) {
+            dst.put(0, 0, xy); // copies only count points
+        } else {
+            float[] buff = scratchFloats(count * 2);
+            System.arraycopy(xy, 0, buff, 0, count * 2);
+            dst.put(0, 0, buff);
         }
-        return res;
     }
 
     public static Mat vector_Point3i_to_Mat(List<Point3> pts) {
@@ -167,20 +366,23 @@ public class Converters {
 
         pts.clear();
         if (type == CvType.CV_32SC2) {
-            int[] buff = new int[2 * count];
-            m.get(0, 0, buff);
+            int[] buff = scratchInts(2 * count);
+            if (count > 0)
+                m.get(0, 0, buff);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
         } else if (type == CvType.CV_32FC2) {
-            float[] buff = new float[2 * count];
-            m.get(0, 0, buff);
+            float[] buff = scratchFloats(2 * count);
+            if (count > 0)
+                m.get(0, 0, buff);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
         } else if (type == CvType.CV_64FC2) {
-            double[] buff = new double[2 * count];
-            m.get(0, 0, buff);
+            double[] buff = scratchDoubles(2 * count);
+            if (count > 0)
+                m.get(0, 0, buff);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
@@ -190,6 +392,42 @@ public class Converters {
         }
     }
 
+    /**
+     * Reads a CV_32SC2 point vector as interleaved x, y values, without creating Point objects.
+     * @param xy - output array, at least 2 * m.rows() long
+     * @return number of points
+     */
+    public static int Mat_to_vector_Point(Mat m, int[] xy) {
+        int count = checkCapacity(m, CvType.CV_32SC2, 2, xy.length);
+        if (count > 0)
+            m.get(0, 0, xy, 0, 2 * count);
+        return count;
+    }
+
+    /**
+     * Reads a CV_32FC2 point vector as interleaved x, y values, without creating Point objects.
+     * @param xy - output array, at least 2 * m.rows() long
+     * @return number of points
+     */
+    public static int Mat_to_vector_Point(Mat m, float[] xy) {
+        int count = checkCapacity(m, CvType.CV_32FC2, 2, xy.length);
+        if (count > 0)
+            m.get(0, 0, xy, 0, 2 * count);
+        return count;
+    }
+
+    /**
+     * Reads a CV_64FC2 point vector as interleaved x, y values, without creating Point objects.
+     * @param xy - output array, at least 2 * m.rows() long
+     * @return number of points
+     */
+    public static int Mat_to_vector_Point(Mat m, double[] xy) {
+        int count = checkCapacity(m, CvType.CV_64FC2, 2, xy.length);
+        if (count > 0)
+            m.get(0, 0, xy, 0, 2 * count);
+        return count;
+    }
+
     public static void Mat_to_vector_Point3i(Mat m, List<Point3> pts) {
         Mat_to_vector_Point3(m, pts);
     }
@@ -271,20 +509,30 @@ public class Converters {
     }
 
     public static Mat vector_float_to_Mat(List<Float> fs) {
-        Mat res;
+        Mat res = new Mat();
         int count = (fs != null) ? fs.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_32FC1);
-            float[] buff = new float[count];
+            vector_float_to_Mat(fs, res);
+        }
+        return res;
+    }
+
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_float_to_Mat(List<Float> fs, Mat dst) {
+        checkOutput(dst);
+        int count = (fs != null) ? fs.size() : 0;
+        dst.create(count, 1, CvType.CV_32FC1);
+        if (count > 0) {
+            float[] buff = scratchFloats(count);
             for (int i = 0; i < count; i++) {
                 float f = fs.get(i);
                 buff[i] = f;
             }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            dst.put(0, 0, buff);
         }
-        return res;
     }
 
     public static void Mat_to_vector_float(Mat m, List<Float> fs) {
@@ -296,13 +544,26 @@ public class Converters {
                     "CvType.CV_32FC1 != m.type() ||  m.cols()!=1\n" + m);
 
         fs.clear();
-        float[] buff = new float[count];
-        m.get(0, 0, buff);
+        float[] buff = scratchFloats(count);
+        if (count > 0)
+            m.get(0, 0, buff);
         for (int i = 0; i < count; i++) {
             fs.add(buff[i]);
         }
     }
 
+    /**
+     * Reads the values into a primitive array, without creating objects.
+     * @param dst - output array, at least m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_float(Mat m, float[] dst) {
+        int count = checkCapacity(m, CvType.CV_32FC1, 1, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst);
+        return count;
+    }
+
     public static Mat vector_uchar_to_Mat(List<Byte> bs) {
         Mat res;
         int count = (bs != null) ? bs.size() : 0;
@@ -354,20 +615,30 @@ public class Converters {
     }
 
     public static Mat vector_int_to_Mat(List<Integer> is) {
-        Mat res;
+        Mat res = new Mat();
         int count = (is != null) ? is.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_32SC1);
-            int[] buff = new int[count];
+            vector_int_to_Mat(is, res);
+        }
+        return res;
+    }
+
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_int_to_Mat(List<Integer> is, Mat dst) {
+        checkOutput(dst);
+        int count = (is != null) ? is.size() : 0;
+        dst.create(count, 1, CvType.CV_32SC1);
+        if (count > 0) {
+            int[] buff = scratchInts(count);
             for (int i = 0; i < count; i++) {
                 int v = is.get(i);
                 buff[i] = v;
             }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            dst.put(0, 0, buff);
         }
-        return res;
     }
 
     public static void Mat_to_vector_int(Mat m, List<Integer> is) {
@@ -379,13 +650,26 @@ public class Converters {
                     "CvType.CV_32SC1 != m.type() ||  m.cols()!=1\n" + m);
 
         is.clear();
-        int[] buff = new int[count];
-        m.get(0, 0, buff);
+        int[] buff = scratchInts(count);
+        if (count > 0)
+            m.get(0, 0, buff);
         for (int i = 0; i < count; i++) {
             is.add(buff[i]);
         }
     }
 
+    /**
+     * Reads the values into a primitive array, without creating objects.
+     * @param dst - output array, at least m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_int(Mat m, int[] dst) {
+        int count = checkCapacity(m, CvType.CV_32SC1, 1, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst);
+        return count;
+    }
+
     public static void Mat_to_vector_char(Mat m, List<Byte> bs) {
         if (bs == null)
             throw new IllegalArgumentException("Output List can't be null");
@@ -403,25 +687,49 @@ public class Converters {
     }
 
     public static Mat vector_Rect_to_Mat(List<Rect> rs) {
-        Mat res;
+        Mat res = new Mat();
         int count = (rs != null) ? rs.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_32SC4);
-            int[] buff = new int[4 * count];
-            for (int i = 0; i < count; i++) {
-                Rect r = rs.get(i);
-                buff[4 * i] = r.x;
-                buff[4 * i + 1] = r.y;
-                buff[4 * i + 2] = r.width;
-                buff[4 * i + 3] = r.height;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            vector_Rect_to_Mat(rs, res);
         }
         return res;
     }
 
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_Rect_to_Mat(List<Rect> rs, Mat dst) {
+        checkOutput(dst);
+        int count = (rs != null) ? rs.size() : 0;
+        dst.create(count, 1, CvType.CV_32SC4);
+        if (count > 0) {
+            final int[] buff = scratchInts(4 * count);
+            if (isParallel(count, rs)) {
+                final List<Rect> src = rs;
+                forRange(count, new RangeBody() {
+                    @Override
+                    public void run(int from, int to) {
+                        putRects(src, buff, from, to);
+                    }
+                });
+            } else {
+                putRects(rs, buff, 0, count);
+            }
+            dst.put(0, 0, buff);
+        }
+    }
+
+    private static void putRects(List<Rect> rs, int[] buff, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Rect r = rs.get(i);
+            buff[4 * i] = r.x;
+            buff[4 * i + 1] = r.y;
+            buff[4 * i + 2] = r.width;
+            buff[4 * i + 3] = r.height;
+        }
+    }
+
     public static void Mat_to_vector_Rect(Mat m, List<Rect> rs) {
         if (rs == null)
             throw new IllegalArgumentException("rs == null");
@@ -431,13 +739,42 @@ public class Converters {
                     "CvType.CV_32SC4 != m.type() ||  m.rows()!=1\n" + m);
 
         rs.clear();
-        int[] buff = new int[4 * count];
-        m.get(0, 0, buff);
-        for (int i = 0; i < count; i++) {
-            rs.add(new Rect(buff[4 * i], buff[4 * i + 1], buff[4 * i + 2], buff[4 * i + 3]));
+        final int[] buff = scratchInts(4 * count);
+        if (count > 0)
+            m.get(0, 0, buff);
+        if (isParallel(count, null)) {
+            final Rect[] out = new Rect[count];
+            forRange(count, new RangeBody() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++)
+                        out[i] = newRect(buff, i);
+                }
+            });
+            Collections.addAll(rs, out);
+        } else {
+            for (int i = 0; i < count; i++) {
+                rs.add(newRect(buff, i));
+            }
         }
     }
 
+    private static Rect newRect(int[] buff, int i) {
+        return new Rect(buff[4 * i], buff[4 * i + 1], buff[4 * i + 2], buff[4 * i + 3]);
+    }
+
+    /**
+     * Reads the rectangles as x, y, width, height into a primitive array, without creating objects.
+     * @param dst - output array, at least 4 * m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_Rect(Mat m, int[] dst) {
+        int count = checkCapacity(m, CvType.CV_32SC4, 4, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst, 0, 4 * count);
+        return count;
+    }
+
     public static Mat vector_Rect2d_to_Mat(List<Rect2d> rs) {
         Mat res;
         int count = (rs != null) ? rs.size() : 0;
@@ -475,28 +812,52 @@ public class Converters {
     }
 
     public static Mat vector_KeyPoint_to_Mat(List<KeyPoint> kps) {
-        Mat res;
+        Mat res = new Mat();
         int count = (kps != null) ? kps.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_64FC(7));
-            double[] buff = new double[count * 7];
-            for (int i = 0; i < count; i++) {
-                KeyPoint kp = kps.get(i);
-                buff[7 * i] = kp.pt.x;
-                buff[7 * i + 1] = kp.pt.y;
-                buff[7 * i + 2] = kp.size;
-                buff[7 * i + 3] = kp.angle;
-                buff[7 * i + 4] = kp.response;
-                buff[7 * i + 5] = kp.octave;
-                buff[7 * i + 6] = kp.class_id;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            vector_KeyPoint_to_Mat(kps, res);
         }
         return res;
     }
 
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_KeyPoint_to_Mat(List<KeyPoint> kps, Mat dst) {
+        checkOutput(dst);
+        int count = (kps != null) ? kps.size() : 0;
+        dst.create(count, 1, CvType.CV_64FC(7));
+        if (count > 0) {
+            final double[] buff = scratchDoubles(7 * count);
+            if (isParallel(count, kps)) {
+                final List<KeyPoint> src = kps;
+                forRange(count, new RangeBody() {
+                    @Override
+                    public void run(int from, int to) {
+                        putKeyPoints(src, buff, from, to);
+                    }
+                });
+            } else {
+                putKeyPoints(kps, buff, 0, count);
+            }
+            dst.put(0, 0, buff);
+        }
+    }
+
+    private static void putKeyPoints(List<KeyPoint> kps, double[] buff, int from, int to) {
+        for (int i = from; i < to; i++) {
+            KeyPoint kp = kps.get(i);
+            buff[7 * i] = kp.pt.x;
+            buff[7 * i + 1] = kp.pt.y;
+            buff[7 * i + 2] = kp.size;
+            buff[7 * i + 3] = kp.angle;
+            buff[7 * i + 4] = kp.response;
+            buff[7 * i + 5] = kp.octave;
+            buff[7 * i + 6] = kp.class_id;
+        }
+    }
+
     public static void Mat_to_vector_KeyPoint(Mat m, List<KeyPoint> kps) {
         if (kps == null)
             throw new IllegalArgumentException("Output List can't be null");
@@ -506,14 +867,43 @@ public class Converters {
                     "CvType.CV_64FC(7) != m.type() ||  m.cols()!=1\n" + m);
 
         kps.clear();
-        double[] buff = new double[7 * count];
-        m.get(0, 0, buff);
-        for (int i = 0; i < count; i++) {
-            kps.add(new KeyPoint((float) buff[7 * i], (float) buff[7 * i + 1], (float) buff[7 * i + 2], (float) buff[7 * i + 3],
-                    (float) buff[7 * i + 4], (int) buff[7 * i + 5], (int) buff[7 * i + 6]));
+        final double[] buff = scratchDoubles(7 * count);
+        if (count > 0)
+            m.get(0, 0, buff);
+        if (isParallel(count, null)) {
+            final KeyPoint[] out = new KeyPoint[count];
+            forRange(count, new RangeBody() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++)
+                        out[i] = newKeyPoint(buff, i);
+                }
+            });
+            Collections.addAll(kps, out);
+        } else {
+            for (int i = 0; i < count; i++) {
+                kps.add(newKeyPoint(buff, i));
+            }
         }
     }
 
+    private static KeyPoint newKeyPoint(double[] buff, int i) {
+        return new KeyPoint((float) buff[7 * i], (float) buff[7 * i + 1], (float) buff[7 * i + 2], (float) buff[7 * i + 3],
+                (float) buff[7 * i + 4], (int) buff[7 * i + 5], (int) buff[7 * i + 6]);
+    }
+
+    /**
+     * Reads the key points as x, y, size, angle, response, octave, class_id into a primitive array, without creating objects.
+     * @param dst - output array, at least 7 * m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_KeyPoint(Mat m, double[] dst) {
+        int count = checkCapacity(m, CvType.CV_64FC(7), 7, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst, 0, 7 * count);
+        return count;
+    }
+
     // vector_vector_Point
     public static Mat vector_vector_Point_to_Mat(List<MatOfPoint> pts, List<Mat> mats) {
         Mat res;
@@ -637,20 +1027,30 @@ public class Converters {
     }
 
     public static Mat vector_double_to_Mat(List<Double> ds) {
-        Mat res;
+        Mat res = new Mat();
         int count = (ds != null) ? ds.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_64FC1);
-            double[] buff = new double[count];
+            vector_double_to_Mat(ds, res);
+        }
+        return res;
+    }
+
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_double_to_Mat(List<Double> ds, Mat dst) {
+        checkOutput(dst);
+        int count = (ds != null) ? ds.size() : 0;
+        dst.create(count, 1, CvType.CV_64FC1);
+        if (count > 0) {
+            double[] buff = scratchDoubles(count);
             for (int i = 0; i < count; i++) {
                 double v = ds.get(i);
                 buff[i] = v;
             }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            dst.put(0, 0, buff);
         }
-        return res;
     }
 
     public static void Mat_to_vector_double(Mat m, List<Double> ds) {
@@ -662,33 +1062,70 @@ public class Converters {
                     "CvType.CV_64FC1 != m.type() ||  m.cols()!=1\n" + m);
 
         ds.clear();
-        double[] buff = new double[count];
-        m.get(0, 0, buff);
+        double[] buff = scratchDoubles(count);
+        if (count > 0)
+            m.get(0, 0, buff);
         for (int i = 0; i < count; i++) {
             ds.add(buff[i]);
         }
     }
 
+    /**
+     * Reads the values into a primitive array, without creating objects.
+     * @param dst - output array, at least m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_double(Mat m, double[] dst) {
+        int count = checkCapacity(m, CvType.CV_64FC1, 1, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst);
+        return count;
+    }
+
     public static Mat vector_DMatch_to_Mat(List<DMatch> matches) {
-        Mat res;
+        Mat res = new Mat();
         int count = (matches != null) ? matches.size() : 0;
         if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_64FC4);
-            double[] buff = new double[count * 4];
-            for (int i = 0; i < count; i++) {
-                DMatch m = matches.get(i);
-                buff[4 * i] = m.queryIdx;
-                buff[4 * i + 1] = m.trainIdx;
-                buff[4 * i + 2] = m.imgIdx;
-                buff[4 * i + 3] = m.distance;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+            vector_DMatch_to_Mat(matches, res);
         }
         return res;
     }
 
+    /**
+     * Writes the elements into dst, which is reallocated only if its size or type does not match.
+     * The temporary array comes from a per-thread scratch buffer.
+     */
+    public static void vector_DMatch_to_Mat(List<DMatch> matches, Mat dst) {
+        checkOutput(dst);
+        int count = (matches != null) ? matches.size() : 0;
+        dst.create(count, 1, CvType.CV_64FC4);
+        if (count > 0) {
+            final double[] buff = scratchDoubles(4 * count);
+            if (isParallel(count, matches)) {
+                final List<DMatch> src = matches;
+                forRange(count, new RangeBody() {
+                    @Override
+                    public void run(int from, int to) {
+                        putDMatches(src, buff, from, to);
+                    }
+                });
+            } else {
+                putDMatches(matches, buff, 0, count);
+            }
+            dst.put(0, 0, buff);
+        }
+    }
+
+    private static void putDMatches(List<DMatch> matches, double[] buff, int from, int to) {
+        for (int i = from; i < to; i++) {
+            DMatch m = matches.get(i);
+            buff[4 * i] = m.queryIdx;
+            buff[4 * i + 1] = m.trainIdx;
+            buff[4 * i + 2] = m.imgIdx;
+            buff[4 * i + 3] = m.distance;
+        }
+    }
+
     public static void Mat_to_vector_DMatch(Mat m, List<DMatch> matches) {
         if (matches == null)
             throw new IllegalArgumentException("Output List can't be null");
@@ -698,13 +1135,42 @@ public class Converters {
                     "CvType.CV_64FC4 != m.type() ||  m.cols()!=1\n" + m);
 
         matches.clear();
-        double[] buff = new double[4 * count];
-        m.get(0, 0, buff);
-        for (int i = 0; i < count; i++) {
-            matches.add(new DMatch((int) buff[4 * i], (int) buff[4 * i + 1], (int) buff[4 * i + 2], (float) buff[4 * i + 3]));
+        final double[] buff = scratchDoubles(4 * count);
+        if (count > 0)
+            m.get(0, 0, buff);
+        if (isParallel(count, null)) {
+            final DMatch[] out = new DMatch[count];
+            forRange(count, new RangeBody() {
+                @Override
+                public void run(int from, int to) {
+                    for (int i = from; i < to; i++)
+                        out[i] = newDMatch(buff, i);
+                }
+            });
+            Collections.addAll(matches, out);
+        } else {
+            for (int i = 0; i < count; i++) {
+                matches.add(newDMatch(buff, i));
+            }
         }
     }
 
+    private static DMatch newDMatch(double[] buff, int i) {
+        return new DMatch((int) buff[4 * i], (int) buff[4 * i + 1], (int) buff[4 * i + 2], (float) buff[4 * i + 3]);
+    }
+
+    /**
+     * Reads the matches as queryIdx, trainIdx, imgIdx, distance into a primitive array, without creating objects.
+     * @param dst - output array, at least 4 * m.rows() long
+     * @return number of elements
+     */
+    public static int Mat_to_vector_DMatch(Mat m, double[] dst) {
+        int count = checkCapacity(m, CvType.CV_64FC4, 4, dst.length);
+        if (count > 0)
+            m.get(0, 0, dst, 0, 4 * count);
+        return count;
+    }
+
     // vector_vector_DMatch
     public static Mat vector_vector_DMatch_to_Mat(List<MatOfDMatch> lvdm, List<Mat> mats) {
         Mat res;
@@ -0,0 +1,102 @@
+package com.example.idtag;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.utils.Converters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The primitive array overloads of Converters with arrays longer than the vector, including
+ * lengths that are not a multiple of the channel count. Needs the OpenCV native library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConvertersTest {
+
+    @BeforeClass
+    public static void loadOpenCv() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void pointsIntoOddLengthArrays() {
+        Point[] points = {new Point(1, 2), new Point(3, 4), new Point(5, 6)};
+        try (MatOfPoint m = new MatOfPoint(points); MatOfPoint2f mf = new MatOfPoint2f(points)) {
+            int[] xy = new int[7];
+            assertEquals(3, Converters.Mat_to_vector_Point(m, xy));
+            assertArrayStart(new double[] {1, 2, 3, 4, 5, 6}, toDoubles(xy));
+            assertEquals(0, xy[6]);
+
+            float[] xyf = new float[9];
+            assertEquals(3, Converters.Mat_to_vector_Point(mf, xyf));
+            assertArrayStart(new double[] {1, 2, 3, 4, 5, 6}, toDoubles(xyf));
+        }
+    }
+
+    @Test
+    public void rectsIntoOddLengthArray() {
+        try (MatOfRect m = new MatOfRect(new Rect(1, 2, 3, 4), new Rect(5, 6, 7, 8))) {
+            int[] dst = new int[10];
+            assertEquals(2, Converters.Mat_to_vector_Rect(m, dst));
+            assertArrayStart(new double[] {1, 2, 3, 4, 5, 6, 7, 8}, toDoubles(dst));
+        }
+    }
+
+    @Test
+    public void keyPointsIntoRoundLengthArray() {
+        List<KeyPoint> kps = new ArrayList<>();
+        for (int i = 0; i < 14; i++)
+            kps.add(new KeyPoint(i, 2 * i, 3, 45, 0.5f, 1, i));
+        try (Mat m = Converters.vector_KeyPoint_to_Mat(kps)) {
+            double[] dst = new double[100]; // 14 * 7 = 98
+            assertEquals(14, Converters.Mat_to_vector_KeyPoint(m, dst));
+            for (int i = 0; i < kps.size(); i++) {
+                assertEquals(i, dst[7 * i], 0);
+                assertEquals(2 * i, dst[7 * i + 1], 0);
+                assertEquals(i, dst[7 * i + 6], 0);
+            }
+            assertEquals(0, dst[98], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arrayTooSmall() {
+        try (MatOfPoint m = new MatOfPoint(new Point(1, 2), new Point(3, 4))) {
+            Converters.Mat_to_vector_Point(m, new int[3]);
+        }
+    }
+
+    private static void assertArrayStart(double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("at " + i, expected[i], actual[i], 0);
+    }
+
+    private static double[] toDoubles(int[] a) {
+        double[] d = new double[a.length];
+        for (int i = 0; i < a.length; i++)
+            d[i] = a[i];
+        return d;
+    }
+
+    private static double[] toDoubles(float[] a) {
+        double[] d = new double[a.length];
+        for (int i = 0; i < a.length; i++)
+            d[i] = a[i];
+        return d;
+    }
+}
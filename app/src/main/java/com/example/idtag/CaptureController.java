@@ -0,0 +1,329 @@
+package com.example.idtag;
+
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+
+/**
+ * Owns the camera device and the preview session of an activity.
+ *
+ * pause() only stops the repeating request, so resume() restarts streaming without reopening the
+ * camera or rebuilding the session. The request builder is kept as well, so exposure and torch
+ * settings survive a pause. A new preview surface only rebuilds the session, not the device.
+ * When the device is disconnected or reports an error it is reopened with exponential backoff.
+ *
+ * All methods must be called on the main thread; camera callbacks are delivered there too.
+ */
+final class CaptureController {
+
+    interface Listener {
+        /** The camera device is open, called again after every successful reopen. */
+        void onCameraOpened();
+
+        /** The repeating request was (re)started. */
+        void onPreviewStarted();
+
+        /** The camera cannot be used, for example there is no flash unit or reopening gave up. */
+        void onCameraUnavailable(String reason);
+    }
+
+    private static final String TAG = "CaptureController";
+    private static final long REOPEN_INITIAL_DELAY_MS = 100;
+    private static final long REOPEN_MAX_DELAY_MS = 3200;
+    private static final int REOPEN_MAX_ATTEMPTS = 8;
+
+    private final CameraManager cameraManager;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private String cameraId;
+    private CameraDevice cameraDevice;
+    private CameraCaptureSession captureSession;
+    private CaptureRequest.Builder captureRequestBuilder;
+    private SurfaceTexture previewTexture;
+    private Surface previewSurface;
+
+    private boolean opening = false;
+    private boolean resumed = false;
+    private boolean closed = false;
+    private boolean torchOn = false;
+    private int reopenAttempts = 0;
+
+    private long resumeStartMs = -1;
+    private volatile long lastResumeToFirstFrameMs = -1;
+
+    private final Runnable reopenRunnable = this::open;
+
+    CaptureController(Context context, Listener listener) {
+        this.cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        this.listener = listener;
+    }
+
+    /**
+     * Opens the camera if it is not open yet. Requires the camera permission.
+     */
+    void open() {
+        if (closed || opening || cameraDevice != null) {
+            return;
+        }
+        try {
+            if (cameraId == null) {
+                String id = cameraManager.getCameraIdList()[0];
+                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+
+                // Check if the camera has a flash unit
+                Boolean hasFlash = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+                if (hasFlash == null || !hasFlash) {
+                    listener.onCameraUnavailable("No flash available");
+                    return;
+                }
+                cameraId = id;
+            }
+            opening = true;
+            cameraManager.openCamera(cameraId, stateCallback, handler);
+        } catch (CameraAccessException | SecurityException e) {
+            opening = false;
+            Log.e(TAG, "Camera access error", e);
+            scheduleReopen();
+        }
+    }
+
+    /**
+     * Sets the surface the preview is rendered to. A different texture than before rebuilds the session.
+     */
+    void setPreviewTexture(SurfaceTexture texture) {
+        if (texture == previewTexture) {
+            return;
+        }
+        closeSession();
+        if (previewSurface != null) {
+            previewSurface.release();
+        }
+        previewTexture = texture;
+        previewSurface = texture != null ? new Surface(texture) : null;
+        startSession();
+    }
+
+    /**
+     * Restarts streaming after pause(). Reopens the camera if it was lost in the meantime.
+     */
+    void resume() {
+        if (resumed) {
+            return;
+        }
+        resumed = true;
+        resumeStartMs = SystemClock.elapsedRealtime();
+        if (cameraDevice == null) {
+            reopenAttempts = 0;
+            open();
+        } else if (captureSession == null) {
+            startSession();
+        } else {
+            startRepeating();
+        }
+    }
+
+    /**
+     * Stops streaming but keeps the device, the session and the request settings.
+     */
+    void pause() {
+        if (!resumed) {
+            return;
+        }
+        resumed = false;
+        resumeStartMs = -1;
+        handler.removeCallbacks(reopenRunnable);
+        if (captureSession != null) {
+            try {
+                captureSession.stopRepeating();
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w(TAG, "Failed to stop the repeating request", e);
+            }
+        }
+    }
+
+    /**
+     * Releases the camera for good.
+     */
+    void close() {
+        closed = true;
+        resumed = false;
+        handler.removeCallbacks(reopenRunnable);
+        closeSession();
+        if (cameraDevice != null) {
+            cameraDevice.close();
+            cameraDevice = null;
+        }
+        if (previewSurface != null) {
+            previewSurface.release();
+            previewSurface = null;
+        }
+        previewTexture = null;
+    }
+
+    boolean isStreaming() {
+        return resumed && captureSession != null;
+    }
+
+    void setTorch(boolean on) {
+        torchOn = on;
+        if (captureRequestBuilder != null) {
+            captureRequestBuilder.set(CaptureRequest.FLASH_MODE,
+                    on ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
+            if (resumed) {
+                startRepeating();
+            }
+        }
+    }
+
+    boolean isTorchOn() {
+        return torchOn;
+    }
+
+    /**
+     * Called by the frame consumer after a frame was processed; completes the resume latency measurement.
+     */
+    void onFrameProcessed() {
+        if (resumeStartMs < 0) {
+            return;
+        }
+        lastResumeToFirstFrameMs = SystemClock.elapsedRealtime() - resumeStartMs;
+        resumeStartMs = -1;
+        Log.i(TAG, "resume to first frame: " + lastResumeToFirstFrameMs + " ms");
+    }
+
+    /**
+     * Time from the last resume() to the first processed frame, or -1 if not measured yet.
+     */
+    long getLastResumeToFirstFrameMs() {
+        return lastResumeToFirstFrameMs;
+    }
+
+    private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(@NonNull CameraDevice camera) {
+            opening = false;
+            if (closed) {
+                camera.close();
+                return;
+            }
+            cameraDevice = camera;
+            reopenAttempts = 0;
+            listener.onCameraOpened();
+            startSession();
+        }
+
+        @Override
+        public void onDisconnected(@NonNull CameraDevice camera) {
+            Log.e(TAG, "Camera disconnected");
+            onCameraLost(camera);
+        }
+
+        @Override
+        public void onError(@NonNull CameraDevice camera, int error) {
+            Log.e(TAG, "Camera error: " + error);
+            onCameraLost(camera);
+        }
+    };
+
+    private void onCameraLost(CameraDevice camera) {
+        opening = false;
+        camera.close();
+        if (camera == cameraDevice) {
+            cameraDevice = null;
+            captureSession = null;
+            // requests are bound to their device, the reopened one gets a new builder
+            captureRequestBuilder = null;
+        }
+        scheduleReopen();
+    }
+
+    private void scheduleReopen() {
+        if (closed || !resumed) {
+            return; // resume() reopens
+        }
+        if (reopenAttempts >= REOPEN_MAX_ATTEMPTS) {
+            listener.onCameraUnavailable("Camera is not available");
+            return;
+        }
+        long delay = Math.min(REOPEN_INITIAL_DELAY_MS << reopenAttempts, REOPEN_MAX_DELAY_MS);
+        reopenAttempts++;
+        Log.i(TAG, "Reopening camera in " + delay + " ms (attempt " + reopenAttempts + ")");
+        handler.removeCallbacks(reopenRunnable);
+        handler.postDelayed(reopenRunnable, delay);
+    }
+
+    private void startSession() {
+        if (cameraDevice == null || previewSurface == null || captureSession != null) {
+            return;
+        }
+        try {
+            if (captureRequestBuilder == null) {
+                captureRequestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                captureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_OFF);
+                captureRequestBuilder.set(CaptureRequest.FLASH_MODE,
+                        torchOn ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
+            }
+            captureRequestBuilder.addTarget(previewSurface);
+            final CameraDevice device = cameraDevice;
+            final Surface surface = previewSurface;
+            cameraDevice.createCaptureSession(Collections.singletonList(surface),
+                    new CameraCaptureSession.StateCallback() {
+                        @Override
+                        public void onConfigured(@NonNull CameraCaptureSession session) {
+                            if (device != cameraDevice || surface != previewSurface) {
+                                session.close(); // camera or surface changed meanwhile
+                                return;
+                            }
+                            captureSession = session;
+                            if (resumed) {
+                                startRepeating();
+                            }
+                        }
+
+                        @Override
+                        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                            Log.e(TAG, "Failed to configure camera");
+                        }
+                    }, handler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Camera access error during preview start", e);
+        }
+    }
+
+    private void startRepeating() {
+        if (captureSession == null) {
+            return;
+        }
+        try {
+            captureSession.setRepeatingRequest(captureRequestBuilder.build(), null, handler);
+            listener.onPreviewStarted();
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Failed to start camera preview", e);
+        }
+    }
+
+    private void closeSession() {
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+        if (captureRequestBuilder != null && previewSurface != null) {
+            captureRequestBuilder.removeTarget(previewSurface);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.idtag;
+
+import android.graphics.Bitmap;
+
+import com.example.idtag.capture.FrameInfo;
+import com.example.idtag.capture.FrameRecorder;
+import com.example.idtag.detect.TagPipeline;
+import com.example.idtag.perf.PipelineStats;
+
+import org.opencv.android.FrameTrace;
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatPool;
+import org.opencv.core.MatScope;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Highlights high light intensity areas of a camera frame.
+ *
+ * Per-frame Mats come from the shared MatPool, so frames of a recurring size reuse native buffers
+ * and a preview size change only costs new buffers for the new size. The output Bitmap is kept
+ * between frames and survives pause/resume. Stage durations go to a PipelineStats whose stages
+ * are named by STAGE_NAMES, and each stage is a FrameTrace section when tracing is on.
+ *
+ * setQuality() picks a level of the QUALITY_NAMES ladder, each cheaper than the one before:
+ * without morphology, at half resolution, and finally only within the region of interest around
+ * the bright areas of the previous frame, with a full frame scan every few frames to find new
+ * ones. Levels are cumulative. Not thread safe.
+ */
+final class FrameProcessor {
+
+    // stages of PipelineStats; capture and display are timed by the caller
+    static final int STAGE_CAPTURE = 0;
+    static final int STAGE_TO_MAT = 1;
+    static final int STAGE_RECORD = 2; // only while a recorder is set
+    static final int STAGE_COLOR = 3;
+    static final int STAGE_THRESHOLD = 4;
+    static final int STAGE_MORPHOLOGY = 5;
+    static final int STAGE_OVERLAY = 6;
+    static final int STAGE_TO_BITMAP = 7;
+    static final int STAGE_DISPLAY = 8;
+    static final String[] STAGE_NAMES = {
+            "capture", "toMat", "record", "color", "threshold", "morphology", "overlay", "toBitmap", "display"
+    };
+
+    // quality ladder for FrameBudgetGovernor, best first
+    static final int QUALITY_FULL = 0;
+    static final int QUALITY_NO_MORPHOLOGY = 1;
+    static final int QUALITY_HALF_RESOLUTION = 2;
+    static final int QUALITY_ROI = 3;
+    static final int QUALITY_ROI_SPARSE = 4;
+    static final String[] QUALITY_NAMES = {
+            "full", "noMorphology", "halfResolution", "roi", "roiSparse"
+    };
+    // frames between full frame scans at QUALITY_ROI and QUALITY_ROI_SPARSE
+    private static final int ROI_FULL_SCAN_INTERVAL = 4;
+    private static final int ROI_SPARSE_FULL_SCAN_INTERVAL = 16;
+    // the region of interest extends this far beyond the bright areas, in 1/ths of the frame side
+    private static final int ROI_MARGIN_DIVISOR = 16;
+
+    private static final Scalar HIGHLIGHT_COLOR = new Scalar(0, 255, 0);
+
+    private final MatPool pool;
+    private final PipelineStats stats;
+    private Mat kernel;
+    private Bitmap outputBitmap;
+    private FrameRecorder recorder;
+    private int quality = QUALITY_FULL;
+    private final Rect roi = new Rect(); // empty: nothing bright in the previous frame
+    private int framesSinceFullScan;
+    private boolean fullScanDue = true;
+
+    FrameProcessor(PipelineStats stats) {
+        this(MatPool.getDefault(), stats);
+    }
+
+    FrameProcessor(MatPool pool, PipelineStats stats) {
+        this.pool = pool;
+        this.stats = stats;
+    }
+
+    /**
+     * Sets where the luma of the input frames is recorded, null to stop recording. Frames of
+     * another size than the recorder's are not recorded.
+     */
+    void setRecorder(FrameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets the quality level for the next frames, one of the QUALITY_* constants.
+     */
+    void setQuality(int quality) {
+        if (quality < QUALITY_FULL || quality >= QUALITY_NAMES.length) {
+            throw new IllegalArgumentException("Bad quality level " + quality);
+        }
+        if (quality >= QUALITY_ROI && this.quality < QUALITY_ROI) {
+            fullScanDue = true; // the ROI is from the last time at these levels
+        }
+        this.quality = quality;
+    }
+
+    int quality() {
+        return quality;
+    }
+
+    /**
+     * Processes one frame, recording the stages from STAGE_TO_MAT to STAGE_TO_BITMAP.
+     * @param input RGBA frame, e.g. from TextureView.getBitmap()
+     * @param info metadata stored with the frame if a recorder is set, may be null otherwise
+     * @return the processed frame; the same Bitmap instance is reused while the frame size is unchanged
+     */
+    Bitmap process(Bitmap input, FrameInfo info) {
+        if (kernel == null) {
+            // created lazily, the OpenCV library may not be loaded when this object is created
+            kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT,
+                    new Size(TagPipeline.CLOSE_KERNEL_SIZE, TagPipeline.CLOSE_KERNEL_SIZE));
+        }
+
+        Mat frame = Utils.bitmapToMat(input, pool, false);
+        stats.endStage(STAGE_TO_MAT);
+        int rows = frame.rows(), cols = frame.cols();
+        boolean half = quality >= QUALITY_HALF_RESOLUTION;
+        boolean morphology = quality < QUALITY_NO_MORPHOLOGY;
+        // the work buffers are allocated for the whole frame, ROIs use their top left corner
+        int workRows = half ? (rows + 1) / 2 : rows, workCols = half ? (cols + 1) / 2 : cols;
+        Mat small = half ? pool.acquire(workRows, workCols, CvType.CV_8UC4) : null;
+        Mat rgb = pool.acquire(workRows, workCols, CvType.CV_8UC3);
+        Mat hsv = pool.acquire(workRows, workCols, CvType.CV_8UC3);
+        Mat valueChannel = pool.acquire(workRows, workCols, CvType.CV_8UC1);
+        Mat highIntensityAreas = pool.acquire(workRows, workCols, CvType.CV_8UC1);
+        Mat fullMask = half ? pool.acquire(rows, cols, CvType.CV_8UC1) : null;
+
+        // Mat headers returned by the wrappers (e.g. setTo) and submatrices are freed on close
+        MatScope scope = MatScope.open();
+        try {
+            Rect region;
+            Mat src = frame;
+            Mat value = null, mask = null;
+            boolean traced;
+            if (recorder != null) {
+                traced = FrameTrace.begin(STAGE_NAMES[STAGE_RECORD]);
+                try {
+                    record(frame, info);
+                } finally {
+                    FrameTrace.end(traced);
+                }
+                stats.endStage(STAGE_RECORD);
+            }
+
+            traced = FrameTrace.begin(STAGE_NAMES[STAGE_COLOR]);
+            try {
+                region = nextRegion(rows, cols);
+                int regionRows = half ? (region.height + 1) / 2 : region.height;
+                int regionCols = half ? (region.width + 1) / 2 : region.width;
+                if (!region.empty()) {
+                    if (region.width != cols || region.height != rows) {
+                        src = frame.submat(region);
+                    }
+                    Mat scaled = src;
+                    if (half) {
+                        scaled = small.submat(0, regionRows, 0, regionCols);
+                        Imgproc.resize(src, scaled, scaled.size(), 0, 0, Imgproc.INTER_AREA);
+                    }
+                    Mat rgbRegion = rgb.submat(0, regionRows, 0, regionCols);
+                    Mat hsvRegion = hsv.submat(0, regionRows, 0, regionCols);
+                    value = valueChannel.submat(0, regionRows, 0, regionCols);
+                    mask = highIntensityAreas.submat(0, regionRows, 0, regionCols);
+
+                    // Convert RGBA image to RGB
+                    Imgproc.cvtColor(scaled, rgbRegion, Imgproc.COLOR_RGBA2RGB);
+
+                    // Convert the RGB image to HSV
+                    Imgproc.cvtColor(rgbRegion, hsvRegion, Imgproc.COLOR_RGB2HSV);
+
+                    // Extract the Value channel
+                    Core.extractChannel(hsvRegion, value, 2);
+                }
+                stats.endStage(STAGE_COLOR);
+            } finally {
+                FrameTrace.end(traced);
+            }
+
+            traced = FrameTrace.begin(STAGE_NAMES[STAGE_THRESHOLD]);
+            try {
+                // Threshold the Value channel for high light intensity
+                if (value != null) {
+                    Imgproc.threshold(value, mask, TagPipeline.HIGH_INTENSITY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+                }
+                stats.endStage(STAGE_THRESHOLD);
+            } finally {
+                FrameTrace.end(traced);
+            }
+
+            // Adaptive threshold
+//            Imgproc.adaptiveThreshold(valueChannel, highIntensityAreas, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 1001, 5);
+
+            // Use morphological operations to close gaps and remove noise
+            if (mask != null && morphology) {
+                traced = FrameTrace.begin(STAGE_NAMES[STAGE_MORPHOLOGY]);
+                try {
+//                    Imgproc.morphologyEx(highIntensityAreas, highIntensityAreas, Imgproc.MORPH_OPEN, kernel);
+                    Imgproc.morphologyEx(mask, mask, Imgproc.MORPH_CLOSE, kernel);
+                } finally {
+                    FrameTrace.end(traced);
+                }
+            }
+            stats.endStage(STAGE_MORPHOLOGY);
+
+            // Overlay these high-intensity areas on the original frame using a color to highlight
+            traced = FrameTrace.begin(STAGE_NAMES[STAGE_OVERLAY]);
+            try {
+                if (mask != null) {
+                    Mat overlay = mask;
+                    if (half) {
+                        overlay = fullMask.submat(0, region.height, 0, region.width);
+                        Imgproc.resize(mask, overlay, overlay.size(), 0, 0, Imgproc.INTER_NEAREST);
+                    }
+                    src.setTo(HIGHLIGHT_COLOR, overlay);
+                    if (quality >= QUALITY_ROI) {
+                        updateRoi(mask, region, half ? 2 : 1, rows, cols);
+                    }
+                } else {
+                    roi.width = roi.height = 0;
+                }
+                stats.endStage(STAGE_OVERLAY);
+            } finally {
+                FrameTrace.end(traced);
+            }
+
+            // Convert the processed frame back to Bitmap
+            if (outputBitmap == null || outputBitmap.getWidth() != cols || outputBitmap.getHeight() != rows) {
+                outputBitmap = Bitmap.createBitmap(cols, rows, Bitmap.Config.ARGB_8888);
+            }
+            Utils.matToBitmap(frame, outputBitmap);
+            stats.endStage(STAGE_TO_BITMAP);
+        } finally {
+            scope.close();
+            if (fullMask != null) {
+                pool.release(fullMask);
+            }
+            pool.release(highIntensityAreas);
+            pool.release(valueChannel);
+            pool.release(hsv);
+            pool.release(rgb);
+            if (small != null) {
+                pool.release(small);
+            }
+            pool.release(frame);
+        }
+        return outputBitmap;
+    }
+
+    /**
+     * The part of the frame to process: all of it, except at the ROI levels between full scans.
+     */
+    private Rect nextRegion(int rows, int cols) {
+        int interval = quality == QUALITY_ROI_SPARSE ? ROI_SPARSE_FULL_SCAN_INTERVAL : ROI_FULL_SCAN_INTERVAL;
+        if (quality < QUALITY_ROI || fullScanDue || framesSinceFullScan >= interval - 1
+                || roi.x + roi.width > cols || roi.y + roi.height > rows) {
+            framesSinceFullScan = 0;
+            fullScanDue = false;
+            return new Rect(0, 0, cols, rows);
+        }
+        framesSinceFullScan++;
+        return roi.clone();
+    }
+
+    /**
+     * Sets the ROI for the next frame to the bounding box of the bright areas plus a margin.
+     * @param mask threshold result for region, downscaled by scale
+     */
+    private void updateRoi(Mat mask, Rect region, int scale, int rows, int cols) {
+        Rect box = Imgproc.boundingRect(mask);
+        if (box.empty()) {
+            roi.width = roi.height = 0;
+            return;
+        }
+        int margin = Math.max(rows, cols) / ROI_MARGIN_DIVISOR;
+        int x0 = Math.max(0, region.x + box.x * scale - margin);
+        int y0 = Math.max(0, region.y + box.y * scale - margin);
+        int x1 = Math.min(cols, region.x + (box.x + box.width) * scale + margin);
+        int y1 = Math.min(rows, region.y + (box.y + box.height) * scale + margin);
+        roi.set(new double[] {x0, y0, x1 - x0, y1 - y0});
+    }
+
+    private void record(Mat rgba, FrameInfo info) {
+        if (rgba.cols() != recorder.width() || rgba.rows() != recorder.height()) {
+            return;
+        }
+        byte[] buffer = recorder.claim();
+        if (buffer == null) {
+            return; // the writer is behind, the frame is counted as dropped
+        }
+        boolean copied = false;
+        Mat gray = pool.acquire(rgba.rows(), rgba.cols(), CvType.CV_8UC1);
+        try {
+            Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_RGBA2GRAY);
+            gray.get(0, 0, buffer);
+            copied = true;
+        } finally {
+            pool.release(gray);
+            if (!copied) {
+                recorder.abandon(buffer); // a partly copied frame would corrupt the capture
+            }
+        }
+        recorder.commit(buffer, info);
+    }
+
+    /**
+     * Frees the kernel and the output Bitmap; pooled Mats stay with the pool.
+     */
+    void release() {
+        if (kernel != null) {
+            kernel.close();
+            kernel = null;
+        }
+        outputBitmap = null;
+    }
+}
@@ -1,19 +1,11 @@
 package com.example.idtag;
 
 import android.Manifest;
-import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
-import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraDevice;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CaptureRequest;
 import android.os.Bundle;
 import android.util.Log;
-import android.view.Surface;
 import android.view.TextureView;
 import android.view.View;
 import android.widget.Button;
@@ -25,72 +17,124 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import org.opencv.android.OpenCVLoader;
-import org.opencv.android.Utils;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
+import com.example.idtag.capture.FrameInfo;
+import com.example.idtag.capture.FrameRecorder;
+import com.example.idtag.perf.FrameBudgetGovernor;
+import com.example.idtag.perf.PipelineStats;
+
+import org.opencv.android.FrameTrace;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
-import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatPool;
+import org.opencv.core.MatStats;
 import org.opencv.core.Rect;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
-import org.opencv.core.Point;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 public class MainActivity extends AppCompatActivity {
 
     private TextureView textureView;
-    private CameraDevice cameraDevice;
-    private CameraCaptureSession captureSession;
-    private CaptureRequest.Builder captureRequestBuilder;
+    private CaptureController captureController;
+    private final PipelineStats pipelineStats = new PipelineStats(FrameProcessor.STAGE_NAMES);
+    private final FrameProcessor frameProcessor = new FrameProcessor(pipelineStats);
+    private Bitmap textureBitmap;
+
+    // the preview runs at up to 30 fps
+    private static final long FRAME_BUDGET_NS = 1_000_000_000L / 30;
+    private final FrameBudgetGovernor governor =
+            new FrameBudgetGovernor(FRAME_BUDGET_NS, FrameProcessor.QUALITY_NAMES);
+    private ThermalMonitor thermalMonitor;
 
     private static final String TAG = "MainActivity"; // For logging
 
-    private ImageView processImageView;
+    /**
+     * Boolean intent extra that turns the trace sections on, also in release builds:
+     * adb shell am start -n com.example.idtag/.MainActivity --ez trace true
+     */
+    static final String EXTRA_TRACE = "trace";
+    private static final String TRACE_FRAME = "Frame";
+    private long frameNumber;
+
+    /**
+     * Boolean intent extra that records the luma of every processed frame to a capture file in the
+     * external files directory, one file per resume, for replay with ReplaySource.
+     */
+    static final String EXTRA_RECORD = "record";
+    private static final int RECORDER_BUFFERS = 8;
+    private boolean recording;
+    private FrameRecorder recorder;
+    private final FrameInfo frameInfo = new FrameInfo();
 
-    private boolean isFlashOn = false;
+    private ImageView processImageView;
 
     private Mat objectToTrack; // Store the object to track
     private Rect objectRect;   // Store the object's position
 
-
-    static {
-        if (!OpenCVLoader.initDebug()) {
-            Log.e("MainActivity", "OpenCV not loaded");
-        } else {
-            Log.i("MainActivity", "OpenCV loaded successfully");
-        }
-    }
+    private final StartupMetrics startupMetrics = new StartupMetrics();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
+        startupMetrics.markCreate();
 
-        textureView = findViewById(R.id.textureView);
-        processImageView = findViewById(R.id.processImageView);
+        if (BuildConfig.DEBUG) {
+            // Report Mats left to the garbage collector, with the allocation site of every 64th Mat
+            MatStats.setAllocationSiteSampling(64);
+            MatStats.setLeakListener(leak -> Log.w(TAG, leak.toString()));
+        }
+        FrameTrace.setEnabled(getIntent().getBooleanExtra(EXTRA_TRACE, BuildConfig.DEBUG));
+        recording = getIntent().getBooleanExtra(EXTRA_RECORD, false);
+
+        thermalMonitor = new ThermalMonitor(this);
+        governor.excludeStages(FrameProcessor.STAGE_RECORD); // the same cost at every level
+        governor.setListener((from, to, reason) -> Log.i(TAG, "Quality " + FrameProcessor.QUALITY_NAMES[from]
+                + " -> " + FrameProcessor.QUALITY_NAMES[to] + ": " + reason
+                + " (" + governor.downshifts() + " down, " + governor.upshifts() + " up)"));
+
+        // Load OpenCV in the background while the camera opens and the layout inflates
+        OpenCvInitializer.startAsync(() -> {
+            startupMetrics.markOpenCvReady();
+            if (!OpenCvInitializer.isLoaded()) {
+                runOnUiThread(() -> showToast("OpenCV not loaded"));
+            }
+        });
+
+        captureController = new CaptureController(this, new CaptureController.Listener() {
+            @Override
+            public void onCameraOpened() {
+                startupMetrics.markCameraOpened();
+            }
+
+            @Override
+            public void onPreviewStarted() {
+                startupMetrics.markPreviewStarted();
+            }
 
-        if (!OpenCVLoader.initDebug()) {
-            Toast.makeText(this, "OpenCV not loaded", Toast.LENGTH_SHORT).show();
+            @Override
+            public void onCameraUnavailable(String reason) {
+                showToast(reason);
+            }
+        });
+
+        // Opening the camera takes a few hundred ms in the camera service, start it before inflating
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                == PackageManager.PERMISSION_GRANTED) {
+            captureController.open();
         } else {
-            Toast.makeText(this, "OpenCV loaded successfully", Toast.LENGTH_SHORT).show();
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, 200);
         }
 
+        setContentView(R.layout.activity_main);
+
+        textureView = findViewById(R.id.textureView);
+        processImageView = findViewById(R.id.processImageView);
+
         textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
             @Override
             public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
-                if (ContextCompat.checkSelfPermission(MainActivity.this, Manifest.permission.CAMERA)
-                        == PackageManager.PERMISSION_GRANTED) {
-                    setupCamera();
-                } else {
-                    ActivityCompat.requestPermissions(MainActivity.this,
-                            new String[]{Manifest.permission.CAMERA}, 200);
-                }
+                captureController.setPreviewTexture(surface);
             }
 
             @Override
@@ -98,60 +142,57 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+                captureController.setPreviewTexture(null);
                 return true;
             }
 
             @Override
             public void onSurfaceTextureUpdated(SurfaceTexture surface) {
-                Bitmap textureBitmap = textureView.getBitmap();
+                if (!OpenCvInitializer.isLoaded() || !captureController.isStreaming()) {
+                    pipelineStats.frameSkipped();
+                    return; // still loading or paused
+                }
+                pipelineStats.beginFrame();
+                long frame = frameNumber++;
+                boolean tracedFrame = FrameTrace.beginAsync(TRACE_FRAME, frame);
+                boolean traced = FrameTrace.begin(FrameProcessor.STAGE_NAMES[FrameProcessor.STAGE_CAPTURE]);
+                if (textureBitmap == null || textureBitmap.getWidth() != textureView.getWidth()
+                        || textureBitmap.getHeight() != textureView.getHeight()) {
+                    textureBitmap = textureView.getBitmap();
+                } else {
+                    textureBitmap = textureView.getBitmap(textureBitmap);
+                }
+                FrameTrace.end(traced);
                 if (textureBitmap == null) {
                     Log.e(TAG, "Bitmap from TextureView is null!");
+                    pipelineStats.frameDropped();
+                    FrameTrace.endAsync(tracedFrame, TRACE_FRAME, frame);
                     return;
                 }
+                pipelineStats.endStage(FrameProcessor.STAGE_CAPTURE);
 
-                Mat frame = new Mat(textureBitmap.getHeight(), textureBitmap.getWidth(), CvType.CV_8UC4);
-                Utils.bitmapToMat(textureBitmap, frame);
-
-                // Convert RGBA image to RGB
-                Mat rgb = new Mat();
-                Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_RGBA2RGB);
-
-                // Convert the RGB image to HSV
-                Mat hsv = new Mat();
-                Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
-
-                // Extract the Value channel
-                List<Mat> hsvChannels = new ArrayList<>();
-                Core.split(hsv, hsvChannels);
-                Mat valueChannel = hsvChannels.get(2);
-
-                // Threshold the Value channel for high light intensity
-                double highIntensityThreshold = 50; // Adjust based on the intensity of the reflection
-                Mat highIntensityAreas = new Mat();
-                Imgproc.threshold(valueChannel, highIntensityAreas, highIntensityThreshold, 255, Imgproc.THRESH_BINARY);
-
-                // Adaptive threshold
-//                Imgproc.adaptiveThreshold(valueChannel, highIntensityAreas, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 1001, 5);
-
-                // Use morphological operations to close gaps and remove noise
-                Mat kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(15, 15));  // Adjust the size for desired dilation/erosion
-//                Imgproc.morphologyEx(highIntensityAreas, highIntensityAreas, Imgproc.MORPH_OPEN, kernel);
-                Imgproc.morphologyEx(highIntensityAreas, highIntensityAreas, Imgproc.MORPH_CLOSE, kernel);
-
-
-                // Overlay these high-intensity areas on the original frame using a color to highlight
-                frame.setTo(new Scalar(0, 255, 0), highIntensityAreas);
-
-                // Convert the processed frame back to Bitmap and update ImageView
-                Bitmap processedBitmap = Bitmap.createBitmap(frame.cols(), frame.rows(), Bitmap.Config.ARGB_8888);
-                Utils.matToBitmap(frame, processedBitmap);
-                runOnUiThread(() -> processImageView.setImageBitmap(processedBitmap));
-
-                // Release memory
-                rgb.release();
-                hsv.release();
-                valueChannel.release();
-                highIntensityAreas.release();
+                if (recording && recorder == null) {
+                    startRecording(textureBitmap.getWidth(), textureBitmap.getHeight());
+                }
+                frameInfo.frameNumber = frame;
+                frameInfo.timestampNs = surface.getTimestamp();
+                frameInfo.torchOn = captureController.isTorchOn();
+                Bitmap processedBitmap = frameProcessor.process(textureBitmap, frameInfo);
+                traced = FrameTrace.begin(FrameProcessor.STAGE_NAMES[FrameProcessor.STAGE_DISPLAY]);
+                processImageView.setImageBitmap(processedBitmap);
+                FrameTrace.end(traced);
+                pipelineStats.endStage(FrameProcessor.STAGE_DISPLAY);
+                pipelineStats.endFrame();
+                FrameTrace.endAsync(tracedFrame, TRACE_FRAME, frame);
+
+                // stay within the frame budget as the device heats up
+                governor.setThermalStatus(thermalMonitor.status());
+                frameProcessor.setQuality(governor.onFrame(pipelineStats));
+
+                captureController.onFrameProcessed();
+                if (startupMetrics.markFirstProcessedFrame()) {
+                    showToast("OpenCV loaded successfully");
+                }
             }
 
 
@@ -163,49 +204,68 @@ public class MainActivity extends AppCompatActivity {
         flashlightButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (isFlashOn) {
-                    turnOffFlash();
-                } else {
-                    turnOnFlash();
-                }
-                isFlashOn = !isFlashOn;
+                captureController.setTorch(!captureController.isTorchOn());
             }
         });
     }
 
-    private void setupCamera() {
-        CameraManager cameraManager = (CameraManager) getSystemService(Context.CAMERA_SERVICE);
+    @Override
+    protected void onResume() {
+        super.onResume();
+        captureController.resume();
+        thermalMonitor.start();
+    }
+
+    @Override
+    protected void onPause() {
+        captureController.pause();
+        thermalMonitor.stop();
+        stopRecording();
+        Log.i(TAG, "Frame budget: " + governor);
+        if (BuildConfig.DEBUG && OpenCvInitializer.isLoaded()) {
+            Log.i(TAG, MatStats.snapshot().toString());
+            Log.i(TAG, MatPool.getDefault().toString());
+            Log.i(TAG, "Pipeline latency:\n" + pipelineStats);
+            dumpPipelineStats(new File(getExternalFilesDir(null), "pipeline_stats.txt"));
+        }
+        super.onPause();
+    }
+
+    private void startRecording(int width, int height) {
+        File file = new File(getExternalFilesDir(null), "capture_" + System.currentTimeMillis() + ".idcap");
         try {
-            String cameraId = cameraManager.getCameraIdList()[0];
-            CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(cameraId);
-
-            // Check if the camera has a flash unit
-            Boolean hasFlash = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
-            if (hasFlash == null || !hasFlash) {
-                showToast("No flash available");
-                return;
-            }
-            cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
-                @Override
-                public void onOpened(@NonNull CameraDevice camera) {
-                    cameraDevice = camera;
-                    startCameraPreview();
-                }
+            recorder = new FrameRecorder(file, width, height, FrameInfo.FORMAT_Y8, RECORDER_BUFFERS);
+            frameProcessor.setRecorder(recorder);
+            Log.i(TAG, "Recording to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not record to " + file, e);
+            recording = false;
+        }
+    }
 
-                @Override
-                public void onDisconnected(@NonNull CameraDevice camera) {
-                    Log.e(TAG, "Camera disconnected");
-                    cameraDevice.close();
-                }
+    private void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        frameProcessor.setRecorder(null);
+        try {
+            recorder.close();
+            Log.i(TAG, "Recorded " + recorder.recordedFrames() + " frames, dropped " + recorder.droppedFrames());
+        } catch (IOException e) {
+            Log.e(TAG, "Recording failed", e);
+        }
+        recorder = null;
+    }
 
-                @Override
-                public void onError(@NonNull CameraDevice camera, int error) {
-                    Log.e(TAG, "Camera error: " + error);
-                    cameraDevice.close();
-                }
-            }, null);
-        } catch (CameraAccessException | SecurityException e) {
-            Log.e(TAG, "Camera access error", e);
+    /**
+     * Writes the per-stage latency percentiles and the quality transitions, e.g. for adb pull after a field test.
+     */
+    private void dumpPipelineStats(File file) {
+        try (Writer out = new FileWriter(file)) {
+            pipelineStats.dump(out);
+            out.append("quality: ").append(governor.toString()).append('\n');
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + file, e);
         }
     }
 
@@ -214,80 +274,23 @@ public class MainActivity extends AppCompatActivity {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == 200) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                setupCamera();
+                captureController.open();
             } else {
                 showToast("Camera permission is required");
             }
         }
     }
 
-    private void startCameraPreview() {
-        try {
-            SurfaceTexture surfaceTexture = textureView.getSurfaceTexture();
-            Surface previewSurface = new Surface(surfaceTexture);
-            captureRequestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-
-            captureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_OFF);
-
-            captureRequestBuilder.addTarget(previewSurface);
-            cameraDevice.createCaptureSession(Collections.singletonList(previewSurface),
-                    new CameraCaptureSession.StateCallback() {
-                        @Override
-                        public void onConfigured(@NonNull CameraCaptureSession session) {
-                            if (cameraDevice == null) return;
-                            captureSession = session;
-                            try {
-                                captureSession.setRepeatingRequest(captureRequestBuilder.build(), null, null);
-                            } catch (CameraAccessException e) {
-                                Log.e(TAG, "Failed to start camera preview", e);
-                            }
-                        }
-
-                        @Override
-                        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
-                            Log.e(TAG, "Failed to configure camera");
-                        }
-                    }, null);
-        } catch (CameraAccessException e) {
-            Log.e(TAG, "Camera access error during preview start", e);
-        }
-    }
-
     private void showToast(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
-    private void turnOnFlash() {
-        if (captureRequestBuilder != null) {
-            captureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_TORCH);
-            try {
-                captureSession.setRepeatingRequest(captureRequestBuilder.build(), null, null);
-            } catch (CameraAccessException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private void turnOffFlash() {
-        if (captureRequestBuilder != null) {
-            captureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_OFF);
-            try {
-                captureSession.setRepeatingRequest(captureRequestBuilder.build(), null, null);
-            } catch (CameraAccessException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
     @Override
     protected void onDestroy() {
-        if (captureSession != null) {
-            captureSession.close();
-            captureSession = null;
-        }
-        if (cameraDevice != null) {
-            cameraDevice.close();
-            cameraDevice = null;
+        captureController.close();
+        frameProcessor.release();
+        if (OpenCvInitializer.isLoaded()) {
+            MatPool.getDefault().clear();
         }
         super.onDestroy();
     }
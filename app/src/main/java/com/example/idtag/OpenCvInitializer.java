@@ -0,0 +1,71 @@
+package com.example.idtag;
+
+import android.util.Log;
+
+import org.opencv.android.OpenCVLoader;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the OpenCV native library once per process on a background thread, so that the
+ * camera can be opened and the layout inflated while the library is being loaded.
+ */
+final class OpenCvInitializer {
+
+    private static final String TAG = "OpenCvInitializer";
+
+    private static final AtomicBoolean sStarted = new AtomicBoolean();
+    private static final CountDownLatch sDone = new CountDownLatch(1);
+    private static volatile boolean sLoaded;
+
+    private OpenCvInitializer() {}
+
+    /**
+     * Starts loading the library unless it is already loading or loaded.
+     * @param onDone - runs on the loader thread once loading finished, may be null
+     */
+    static void startAsync(final Runnable onDone) {
+        if (!sStarted.compareAndSet(false, true)) {
+            if (onDone != null) {
+                new Thread(() -> {
+                    awaitUninterruptibly();
+                    onDone.run();
+                }, "OpenCvInitWaiter").start();
+            }
+            return;
+        }
+        new Thread(() -> {
+            sLoaded = OpenCVLoader.initDebug();
+            if (sLoaded) {
+                Log.i(TAG, "OpenCV loaded successfully");
+            } else {
+                Log.e(TAG, "OpenCV not loaded");
+            }
+            sDone.countDown();
+            if (onDone != null) {
+                onDone.run();
+            }
+        }, "OpenCvInit").start();
+    }
+
+    /** True if the library was loaded; never blocks. */
+    static boolean isLoaded() {
+        return sLoaded;
+    }
+
+    private static void awaitUninterruptibly() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                sDone.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.idtag;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Cold start milestones in milliseconds since the process was started, on the elapsedRealtime clock.
+ * A milestone that has not been reached yet reads as -1.
+ */
+final class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    private final long mProcessStartMs = Process.getStartElapsedRealtime();
+
+    private volatile long mCreateMs = -1;
+    private volatile long mOpenCvReadyMs = -1;
+    private volatile long mCameraOpenedMs = -1;
+    private volatile long mPreviewStartedMs = -1;
+    private volatile long mFirstProcessedFrameMs = -1;
+
+    void markCreate() {
+        mCreateMs = sinceStart();
+    }
+
+    void markOpenCvReady() {
+        mOpenCvReadyMs = sinceStart();
+    }
+
+    void markCameraOpened() {
+        mCameraOpenedMs = sinceStart();
+    }
+
+    void markPreviewStarted() {
+        mPreviewStartedMs = sinceStart();
+    }
+
+    /**
+     * Records the first processed frame and logs the startup breakdown; later calls are ignored.
+     * @return true on the first call
+     */
+    boolean markFirstProcessedFrame() {
+        if (mFirstProcessedFrameMs >= 0) {
+            return false;
+        }
+        mFirstProcessedFrameMs = sinceStart();
+        Log.i(TAG, "time to first processed frame: " + mFirstProcessedFrameMs + " ms"
+                + " (onCreate " + mCreateMs
+                + ", OpenCV " + mOpenCvReadyMs
+                + ", camera " + mCameraOpenedMs
+                + ", preview " + mPreviewStartedMs + ")");
+        return true;
+    }
+
+    long getTimeToFirstProcessedFrameMs() {
+        return mFirstProcessedFrameMs;
+    }
+
+    long getOpenCvReadyMs() {
+        return mOpenCvReadyMs;
+    }
+
+    long getCameraOpenedMs() {
+        return mCameraOpenedMs;
+    }
+
+    private long sinceStart() {
+        return SystemClock.elapsedRealtime() - mProcessStartMs;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.idtag;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Device thermal status, PowerManager.THERMAL_STATUS_* values. Below API 29 the status is always
+ * THERMAL_STATUS_NONE.
+ *
+ * start() and stop() must be called on the main thread; status() can be read on any thread.
+ */
+final class ThermalMonitor {
+
+    static final int THERMAL_STATUS_NONE = 0; // PowerManager.THERMAL_STATUS_NONE, API 29
+
+    private final PowerManager powerManager;
+    private volatile int status = THERMAL_STATUS_NONE;
+    private Object listener; // PowerManager.OnThermalStatusChangedListener, a class from API 29
+
+    ThermalMonitor(Context context) {
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    /**
+     * Starts following status changes; they are delivered on the main thread.
+     */
+    void start() {
+        if (listener != null || powerManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        listener = Api29.addListener(powerManager, this);
+    }
+
+    void stop() {
+        if (listener == null) {
+            return;
+        }
+        Api29.removeListener(powerManager, listener);
+        listener = null;
+    }
+
+    int status() {
+        return status;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static final class Api29 {
+        static Object addListener(PowerManager powerManager, ThermalMonitor monitor) {
+            monitor.status = powerManager.getCurrentThermalStatus();
+            PowerManager.OnThermalStatusChangedListener listener = s -> monitor.status = s;
+            // without an executor the listener runs on the main thread
+            powerManager.addThermalStatusListener(listener);
+            return listener;
+        }
+
+        static void removeListener(PowerManager powerManager, Object listener) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) listener);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.idtag.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the frames of a capture file written by CaptureWriter, in order.
+ * <pre>
+ * FrameInfo info = new FrameInfo();
+ * while (reader.next(info))
+ *     reader.readPayload(buffer, 0);
+ * </pre>
+ * The file is mapped read-only in windows of 64 MiB by default, so files larger than 2 GiB work and
+ * reading a frame is a memory copy. A file cut short by a crash ends at its last complete record.
+ * Not thread safe.
+ */
+public final class CaptureReader implements Closeable {
+
+    private static final long DEFAULT_WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final long mLength;
+    private final long mWindowBytes;
+    private MappedByteBuffer mWindow;
+    private long mWindowStart;
+
+    private long mNext = CaptureWriter.FILE_HEADER_BYTES; // file position of the next record
+    private long mPayloadStart = -1;
+    private int mPayloadBytes;
+
+    public CaptureReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * @param windowBytes - how much of the file is mapped at a time, at least one record is
+     */
+    public CaptureReader(File file, long windowBytes) throws IOException {
+        if (windowBytes < CaptureWriter.RECORD_HEADER_BYTES)
+            throw new IllegalArgumentException("Window too small: " + windowBytes);
+        mWindowBytes = windowBytes;
+        mFile = new RandomAccessFile(file, "r");
+        try {
+            mChannel = mFile.getChannel();
+            mLength = mChannel.size();
+            if (mLength < CaptureWriter.FILE_HEADER_BYTES || !map(0, CaptureWriter.FILE_HEADER_BYTES))
+                throw new IOException("Not a capture file: " + file);
+            if (mWindow.getLong(0) != CaptureWriter.MAGIC)
+                throw new IOException("Not a capture file: " + file);
+            int version = mWindow.getInt(8);
+            if (version != CaptureWriter.VERSION)
+                throw new IOException("Unsupported capture file version " + version + ": " + file);
+        } catch (IOException | RuntimeException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next frame and reads its metadata into info.
+     * @return false at the end of the recording
+     */
+    public boolean next(FrameInfo info) throws IOException {
+        mPayloadStart = -1;
+        if (!map(mNext, CaptureWriter.RECORD_HEADER_BYTES))
+            return false;
+        int at = (int) (mNext - mWindowStart);
+        ByteBuffer b = mWindow;
+        if (b.getInt(at) != CaptureWriter.RECORD_MAGIC)
+            return false;
+        int payload = b.getInt(at + 4);
+        info.frameNumber = b.getLong(at + 8);
+        info.timestampNs = b.getLong(at + 16);
+        info.exposureNs = b.getLong(at + 24);
+        info.width = b.getInt(at + 32);
+        info.height = b.getInt(at + 36);
+        info.format = b.getInt(at + 40);
+        info.torchOn = (b.getInt(at + 44) & CaptureWriter.FLAG_TORCH) != 0;
+        if (payload < 0 || payload != info.payloadBytes())
+            throw new IOException("Corrupt record at " + mNext + ": " + info + ", payload " + payload);
+        long end = mNext + CaptureWriter.RECORD_HEADER_BYTES + ((payload + 7) & ~7L);
+        if (end > mLength)
+            return false; // cut short
+        mPayloadStart = mNext + CaptureWriter.RECORD_HEADER_BYTES;
+        mPayloadBytes = payload;
+        mNext = end;
+        return true;
+    }
+
+    /** Payload size of the current frame */
+    public int payloadBytes() {
+        checkCurrent();
+        return mPayloadBytes;
+    }
+
+    /**
+     * Copies the pixel data of the current frame into dst at offset.
+     */
+    public void readPayload(byte[] dst, int offset) throws IOException {
+        checkCurrent();
+        if (offset < 0 || offset + mPayloadBytes > dst.length)
+            throw new IllegalArgumentException("Frame of " + mPayloadBytes + " bytes at " + offset + " exceeds " + dst.length);
+        map(mPayloadStart, mPayloadBytes);
+        ByteBuffer b = mWindow.duplicate();
+        b.position((int) (mPayloadStart - mWindowStart));
+        b.get(dst, offset, mPayloadBytes);
+    }
+
+    /**
+     * Starts over at the first frame.
+     */
+    public void rewind() {
+        mNext = CaptureWriter.FILE_HEADER_BYTES;
+        mPayloadStart = -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mFile.close();
+    }
+
+    private void checkCurrent() {
+        if (mPayloadStart < 0)
+            throw new IllegalStateException("No current frame, call next() first");
+    }
+
+    // makes [position, position + n) readable in mWindow; false if the file is shorter
+    private boolean map(long position, int n) throws IOException {
+        if (position + n > mLength)
+            return false;
+        if (mWindow != null && position >= mWindowStart && position + n <= mWindowStart + mWindow.capacity())
+            return true;
+        long size = Math.min(Math.max(mWindowBytes, n), mLength - position);
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        mWindow.order(ByteOrder.LITTLE_ENDIAN);
+        mWindowStart = position;
+        return true;
+    }
+}
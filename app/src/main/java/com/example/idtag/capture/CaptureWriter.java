@@ -0,0 +1,128 @@
+package com.example.idtag.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends frames to a capture file through memory mapped chunks.
+ *
+ * Layout, little endian: a 16 byte file header (MAGIC, VERSION, 0), then one record per frame:
+ * RECORD_MAGIC, payload length, frame number, timestamp, exposure, width, height, format, flags,
+ * the payload, padding to a multiple of 8 bytes. The file grows one chunk at a time and is
+ * truncated to its content by close(); after a crash, readers stop at the zeroes past the last
+ * complete record. Not thread safe, see FrameRecorder for writing from the camera thread.
+ */
+public final class CaptureWriter implements Closeable {
+
+    static final long MAGIC = 0x3150414347415444L; // "DTAGCAP1"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int RECORD_MAGIC = 0x314D5246; // "FRM1"
+    static final int RECORD_HEADER_BYTES = 48;
+    static final int FLAG_TORCH = 1;
+
+    private static final long DEFAULT_CHUNK_BYTES = 64L * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final long mChunkBytes;
+    private MappedByteBuffer mChunk;
+    private long mPosition;
+    private long mFrames;
+
+    public CaptureWriter(File file) throws IOException {
+        this(file, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Creates or overwrites file.
+     * @param chunkBytes - how far the file is extended and mapped at a time
+     */
+    public CaptureWriter(File file, long chunkBytes) throws IOException {
+        if (chunkBytes < RECORD_HEADER_BYTES)
+            throw new IllegalArgumentException("Chunk too small: " + chunkBytes);
+        mChunkBytes = chunkBytes;
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        ensure(FILE_HEADER_BYTES);
+        mChunk.putLong(MAGIC);
+        mChunk.putInt(VERSION);
+        mChunk.putInt(0);
+        mPosition = FILE_HEADER_BYTES;
+    }
+
+    /**
+     * Appends one frame.
+     * @param data - info.payloadBytes() bytes of pixel data starting at offset
+     */
+    public void write(FrameInfo info, byte[] data, int offset) throws IOException {
+        int payload = info.payloadBytes();
+        if (offset < 0 || offset + payload > data.length)
+            throw new IllegalArgumentException("Frame of " + payload + " bytes at " + offset + " exceeds " + data.length);
+        int padded = (payload + 7) & ~7;
+        ensure(RECORD_HEADER_BYTES + padded);
+        MappedByteBuffer b = mChunk;
+        int start = b.position();
+        // payload first, so that a crash never leaves a valid header in front of a partial payload
+        b.position(start + RECORD_HEADER_BYTES);
+        b.put(data, offset, payload);
+        b.position(start + 4);
+        b.putInt(payload);
+        b.putLong(info.frameNumber);
+        b.putLong(info.timestampNs);
+        b.putLong(info.exposureNs);
+        b.putInt(info.width);
+        b.putInt(info.height);
+        b.putInt(info.format);
+        b.putInt(info.torchOn ? FLAG_TORCH : 0);
+        b.putInt(start, RECORD_MAGIC);
+        b.position(start + RECORD_HEADER_BYTES + padded);
+        mPosition += RECORD_HEADER_BYTES + padded;
+        mFrames++;
+    }
+
+    public long frames() {
+        return mFrames;
+    }
+
+    /** Bytes of content, file header included */
+    public long length() {
+        return mPosition;
+    }
+
+    /**
+     * Writes the mapped content to the storage device.
+     */
+    public void flush() {
+        if (mChunk != null)
+            mChunk.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            mChunk = null;
+            mChannel.truncate(mPosition);
+        } finally {
+            mFile.close();
+        }
+    }
+
+    // makes room for n more bytes at mPosition, mapping a new chunk if needed
+    private void ensure(int n) throws IOException {
+        if (mChunk != null && mChunk.remaining() >= n)
+            return;
+        if (mChunk != null)
+            mChunk.force();
+        long size = Math.max(mChunkBytes, n);
+        mChunk = mChannel.map(FileChannel.MapMode.READ_WRITE, mPosition, size);
+        mChunk.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.idtag.capture;
+
+/**
+ * Metadata of one recorded frame. Unknown values are -1.
+ */
+public final class FrameInfo {
+
+    /** Luma plane only, width * height bytes */
+    public static final int FORMAT_Y8 = 1;
+    /** Planar YUV 4:2:0: Y, then U and V at half resolution, width * height * 3 / 2 bytes */
+    public static final int FORMAT_I420 = 2;
+
+    public long frameNumber = -1;
+    /** Sensor timestamp, CLOCK_BOOTTIME or CLOCK_MONOTONIC depending on the camera */
+    public long timestampNs = -1;
+    public long exposureNs = -1;
+    public boolean torchOn;
+    public int width;
+    public int height;
+    public int format = FORMAT_Y8;
+
+    public void set(FrameInfo other) {
+        frameNumber = other.frameNumber;
+        timestampNs = other.timestampNs;
+        exposureNs = other.exposureNs;
+        torchOn = other.torchOn;
+        width = other.width;
+        height = other.height;
+        format = other.format;
+    }
+
+    /** Payload size of a frame of this size and format */
+    public int payloadBytes() {
+        return payloadBytes(width, height, format);
+    }
+
+    public static int payloadBytes(int width, int height, int format) {
+        switch (format) {
+            case FORMAT_Y8:
+                return width * height;
+            case FORMAT_I420:
+                return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Frame " + frameNumber + " " + width + "x" + height + (format == FORMAT_I420 ? " I420" : " Y8")
+                + " t=" + timestampNs + " exposure=" + exposureNs + (torchOn ? " torch" : "");
+    }
+}
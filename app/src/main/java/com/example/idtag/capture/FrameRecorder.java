@@ -0,0 +1,272 @@
+package com.example.idtag.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records frames of one size and format to a capture file on a background thread.
+ * <pre>
+ * byte[] buffer = recorder.claim();          // on the camera thread
+ * if (buffer != null) {
+ *     boolean copied = false;
+ *     try {
+ *         copy the pixels into buffer
+ *         copied = true;
+ *     } finally {
+ *         if (!copied)
+ *             recorder.abandon(buffer);  // never write a partly filled frame
+ *     }
+ *     recorder.commit(buffer, info);
+ * }
+ * </pre>
+ * A fixed number of frame buffers circulate between the caller and the writer thread. When the
+ * writer falls behind and no buffer is free, claim() returns null and the frame is counted as
+ * dropped, so recording never blocks capture and never allocates after construction.
+ * claim(), commit() and abandon() must be called from one thread; close() from any.
+ */
+public final class FrameRecorder {
+
+    private static final String TAG = "FrameRecorder";
+
+    private final CaptureWriter mWriter;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFormat;
+    private final int mFrameBytes;
+
+    private final ArrayBlockingQueue<Slot> mFree;
+    private final ArrayBlockingQueue<Slot> mFilled;
+    private final Slot mEndOfStream = new Slot(0);
+    private final Thread mThread;
+    private Slot mClaimed;
+
+    private final AtomicLong mRecorded = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private volatile IOException mError;
+    private volatile boolean mClosed;
+
+    private static final class Slot {
+        final byte[] data;
+        final FrameInfo info = new FrameInfo();
+
+        Slot(int bytes) {
+            data = new byte[bytes];
+        }
+    }
+
+    /**
+     * Creates the file and starts the writer thread.
+     * @param buffers - frames that can wait for the writer, e.g. 8 for a quarter second at 30 fps
+     */
+    public FrameRecorder(File file, int width, int height, int format, int buffers) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Bad frame size " + width + "x" + height);
+        if (buffers < 1)
+            throw new IllegalArgumentException("Need at least one buffer: " + buffers);
+        mWidth = width;
+        mHeight = height;
+        mFormat = format;
+        mFrameBytes = FrameInfo.payloadBytes(width, height, format);
+        mFree = new ArrayBlockingQueue<Slot>(buffers);
+        mFilled = new ArrayBlockingQueue<Slot>(buffers + 1);
+        for (int i = 0; i < buffers; i++)
+            mFree.add(new Slot(mFrameBytes));
+        mWriter = new CaptureWriter(file);
+        mThread = new Thread(this::drain, TAG);
+        mThread.start();
+    }
+
+    public int width() {
+        return mWidth;
+    }
+
+    public int height() {
+        return mHeight;
+    }
+
+    public int format() {
+        return mFormat;
+    }
+
+    /**
+     * Returns a buffer of FrameInfo.payloadBytes(width, height, format) bytes to fill, or null if
+     * the frame has to be dropped. Pass it to commit(), or to abandon() if it could not be filled.
+     */
+    public byte[] claim() {
+        if (mClaimed != null)
+            throw new IllegalStateException("Previous buffer not committed or abandoned");
+        Slot s = mClosed || mError != null ? null : mFree.poll();
+        if (s == null) {
+            mDropped.incrementAndGet();
+            return null;
+        }
+        mClaimed = s;
+        return s.data;
+    }
+
+    /**
+     * Queues the buffer returned by the last claim() for writing; size and format come from this recorder.
+     */
+    public void commit(byte[] buffer, FrameInfo info) {
+        Slot s = takeClaimed(buffer);
+        s.info.set(info);
+        s.info.width = mWidth;
+        s.info.height = mHeight;
+        s.info.format = mFormat;
+        mFilled.add(s); // never full: there are fewer slots than its capacity
+    }
+
+    /**
+     * Returns the buffer of the last claim() unwritten, e.g. when copying the pixels failed; the
+     * frame is counted as dropped.
+     */
+    public void abandon(byte[] buffer) {
+        mFree.add(takeClaimed(buffer)); // never full: the slot came from it
+        mDropped.incrementAndGet();
+    }
+
+    private Slot takeClaimed(byte[] buffer) {
+        Slot s = mClaimed;
+        if (s == null || s.data != buffer)
+            throw new IllegalStateException("Buffer was not returned by the last claim()");
+        mClaimed = null;
+        return s;
+    }
+
+    /**
+     * Records the luma plane of a camera image, e.g. Image.getPlanes()[0], as a FORMAT_Y8 frame.
+     * @return false if the frame was dropped
+     */
+    public boolean offerY(ByteBuffer plane, int rowStride, FrameInfo info) {
+        if (mFormat != FrameInfo.FORMAT_Y8)
+            throw new IllegalStateException("Recorder format is not Y8");
+        byte[] b = claim();
+        if (b == null)
+            return false;
+        boolean copied = false;
+        try {
+            ByteBuffer src = plane.duplicate();
+            int base = src.position();
+            for (int y = 0; y < mHeight; y++) {
+                src.position(base + y * rowStride);
+                src.get(b, y * mWidth, mWidth);
+            }
+            copied = true;
+        } finally {
+            if (!copied)
+                abandon(b);
+        }
+        commit(b, info);
+        return true;
+    }
+
+    /**
+     * Records the three planes of a YUV_420_888 camera image as a FORMAT_I420 frame.
+     * @return false if the frame was dropped
+     */
+    public boolean offerYuv(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvRowStride,
+                            int uvPixelStride, FrameInfo info) {
+        if (mFormat != FrameInfo.FORMAT_I420)
+            throw new IllegalStateException("Recorder format is not I420");
+        byte[] b = claim();
+        if (b == null)
+            return false;
+        boolean copied = false;
+        try {
+            ByteBuffer src = y.duplicate();
+            int base = src.position();
+            for (int row = 0; row < mHeight; row++) {
+                src.position(base + row * yRowStride);
+                src.get(b, row * mWidth, mWidth);
+            }
+            int cw = (mWidth + 1) / 2, ch = (mHeight + 1) / 2;
+            copyChroma(u, uvRowStride, uvPixelStride, b, mWidth * mHeight, cw, ch);
+            copyChroma(v, uvRowStride, uvPixelStride, b, mWidth * mHeight + cw * ch, cw, ch);
+            copied = true;
+        } finally {
+            if (!copied)
+                abandon(b);
+        }
+        commit(b, info);
+        return true;
+    }
+
+    public long recordedFrames() {
+        return mRecorded.get();
+    }
+
+    public long droppedFrames() {
+        return mDropped.get();
+    }
+
+    /**
+     * Writes the queued frames, closes the file and stops the thread.
+     * @throws IOException if writing failed at any point
+     */
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+        mClosed = true;
+        mFilled.add(mEndOfStream);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (mError != null)
+            throw mError;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Slot s = mFilled.take();
+                if (s == mEndOfStream)
+                    break;
+                try {
+                    if (mError == null) {
+                        mWriter.write(s.info, s.data, 0);
+                        mRecorded.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    mError = e;
+                }
+                mFree.add(s);
+            }
+        } catch (InterruptedException e) {
+            // not expected, close() uses the end of stream marker
+        } finally {
+            try {
+                mWriter.close();
+            } catch (IOException e) {
+                if (mError == null)
+                    mError = e;
+            }
+        }
+    }
+
+    private static void copyChroma(ByteBuffer plane, int rowStride, int pixelStride, byte[] dst, int offset,
+                                   int cw, int ch) {
+        ByteBuffer src = plane.duplicate();
+        int base = src.position();
+        for (int row = 0; row < ch; row++) {
+            int o = offset + row * cw;
+            if (pixelStride == 1) {
+                src.position(base + row * rowStride);
+                src.get(dst, o, cw);
+            } else {
+                for (int x = 0; x < cw; x++)
+                    dst[o + x] = src.get(base + row * rowStride + x * pixelStride);
+            }
+        }
+    }
+}
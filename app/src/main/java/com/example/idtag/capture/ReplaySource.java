@@ -0,0 +1,70 @@
+package com.example.idtag.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds the frames of a capture file to a FrameSink, at the recorded pace or as fast as possible.
+ * Pure Java, so recorded field sessions can be replayed through the processing stages on a desktop
+ * JVM. The data buffer passed to the sink is reused for every frame.
+ */
+public final class ReplaySource {
+
+    public interface FrameSink {
+        /**
+         * @param data - info.payloadBytes() bytes of pixel data, valid during the call only
+         * @return false to stop the replay
+         */
+        boolean onFrame(FrameInfo info, byte[] data);
+    }
+
+    /** Speed for replay() that ignores the timestamps */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+    /** Speed for replay() that reproduces the recorded frame intervals */
+    public static final double RECORDED_PACE = 1;
+
+    private final File mFile;
+
+    public ReplaySource(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Replays the whole file once.
+     * @param speed - RECORDED_PACE, a multiple of it, or AS_FAST_AS_POSSIBLE
+     * @return the number of frames delivered
+     */
+    public long replay(FrameSink sink, double speed) throws IOException, InterruptedException {
+        if (speed < 0)
+            throw new IllegalArgumentException("Negative speed: " + speed);
+        FrameInfo info = new FrameInfo();
+        byte[] data = new byte[0];
+        long frames = 0;
+        long firstTimestamp = -1, startNs = 0;
+        try (CaptureReader reader = new CaptureReader(mFile)) {
+            while (reader.next(info)) {
+                if (data.length < reader.payloadBytes())
+                    data = new byte[reader.payloadBytes()];
+                reader.readPayload(data, 0);
+
+                if (speed > 0 && info.timestampNs >= 0) {
+                    if (firstTimestamp < 0) {
+                        firstTimestamp = info.timestampNs;
+                        startNs = System.nanoTime();
+                    }
+                    long due = startNs + (long) ((info.timestampNs - firstTimestamp) / speed);
+                    for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.interrupted())
+                            throw new InterruptedException();
+                    }
+                }
+                frames++;
+                if (!sink.onFrame(info, data))
+                    break;
+            }
+        }
+        return frames;
+    }
+}
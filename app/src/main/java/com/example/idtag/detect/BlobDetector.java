@@ -0,0 +1,129 @@
+package com.example.idtag.detect;
+
+import java.util.Arrays;
+
+/**
+ * Finds 4-connected regions of a luma plane at or above a threshold. The plane is run-length
+ * encoded into a RunMask and the runs are labeled with union-find, so after the threshold pass
+ * the cost grows with the number of runs rather than the number of pixels. All buffers are kept
+ * for the next frame. Not thread safe.
+ */
+public final class BlobDetector {
+
+    private final RunMask mMask = new RunMask();
+    private int[] mParent = new int[256];
+    // per run statistics, valid at root runs
+    private int[] mArea = new int[256];
+    private long[] mSumX = new long[256];
+    private long[] mSumY = new long[256];
+    private int[] mBox = new int[1024];
+    private int[] mPeak = new int[256];
+
+    /**
+     * Replaces the content of out with the regions of y (width x height, row-major, no padding)
+     * whose pixels are >= threshold and whose area is within [minArea, maxArea].
+     */
+    public void detect(byte[] y, int width, int height, int threshold, int minArea, int maxArea, Blobs out) {
+        mMask.threshold(y, width, height, threshold);
+        label(mMask, y, minArea, maxArea, out);
+    }
+
+    /** The mask of the last detect() */
+    public RunMask mask() {
+        return mMask;
+    }
+
+    /**
+     * Replaces the content of out with the 4-connected regions of mask whose area is within
+     * [minArea, maxArea], in raster order of their first pixel.
+     * @param y luma plane of the mask's size for the peak values, or null to report a peak of 0
+     */
+    public void label(RunMask mask, byte[] y, int minArea, int maxArea, Blobs out) {
+        int runs = mask.runCount(), width = mask.width(), height = mask.height();
+        if (y != null && y.length < width * height)
+            throw new IllegalArgumentException("Buffer too small: " + y.length + " < " + width * height);
+        if (mParent.length < runs)
+            grow(runs);
+        int[] parent = mParent;
+        for (int i = 0; i < runs; i++)
+            parent[i] = i;
+
+        // join the runs of each row with the overlapping runs of the row above
+        for (int r = 1; r < height; r++) {
+            int i = mask.rowStart(r), iEnd = mask.rowStart(r + 1);
+            int j = mask.rowStart(r - 1), jEnd = i;
+            while (i < iEnd && j < jEnd) {
+                int s = mask.runStart(i), e = mask.runEnd(i), ps = mask.runStart(j), pe = mask.runEnd(j);
+                if (s < pe && ps < e) {
+                    int a = find(i), b = find(j);
+                    if (a != b) {
+                        if (a < b) parent[b] = a; else parent[a] = b;
+                    }
+                }
+                if (e < pe)
+                    i++;
+                else
+                    j++;
+            }
+        }
+
+        // statistics per root
+        for (int r = 0; r < height; r++) {
+            for (int run = mask.rowStart(r), end = mask.rowStart(r + 1); run < end; run++) {
+                int s = mask.runStart(run), e = mask.runEnd(run), len = e - s;
+                int l = find(run);
+                if (l == run) {
+                    mArea[l] = 0;
+                    mSumX[l] = 0;
+                    mSumY[l] = 0;
+                    mPeak[l] = 0;
+                    mBox[l * 4] = s;
+                    mBox[l * 4 + 1] = r;
+                    mBox[l * 4 + 2] = e - 1;
+                    mBox[l * 4 + 3] = r;
+                }
+                mArea[l] += len;
+                mSumX[l] += (long) (s + e - 1) * len / 2;
+                mSumY[l] += (long) r * len;
+                int b = l * 4;
+                if (s < mBox[b]) mBox[b] = s;
+                if (e - 1 > mBox[b + 2]) mBox[b + 2] = e - 1;
+                mBox[b + 3] = r;
+                if (y != null) {
+                    int peak = mPeak[l];
+                    for (int i = r * width + s, iEnd = r * width + e; i < iEnd; i++)
+                        peak = Math.max(peak, y[i] & 0xff);
+                    mPeak[l] = peak;
+                }
+            }
+        }
+
+        out.clear();
+        for (int l = 0; l < runs; l++) {
+            int a = mArea[l];
+            if (parent[l] != l || a < minArea || a > maxArea)
+                continue;
+            out.add(a, (float) mSumX[l] / a, (float) mSumY[l] / a,
+                    mBox[l * 4], mBox[l * 4 + 1], mBox[l * 4 + 2], mBox[l * 4 + 3], mPeak[l]);
+        }
+    }
+
+    private int find(int l) {
+        int[] p = mParent;
+        while (p[l] != l) {
+            p[l] = p[p[l]];
+            l = p[l];
+        }
+        return l;
+    }
+
+    private void grow(int runs) {
+        int cap = Math.max(runs, mParent.length * 2);
+        mParent = Arrays.copyOf(mParent, cap);
+        mArea = Arrays.copyOf(mArea, cap);
+        mSumX = Arrays.copyOf(mSumX, cap);
+        mSumY = Arrays.copyOf(mSumY, cap);
+        mBox = Arrays.copyOf(mBox, cap * 4);
+        mPeak = Arrays.copyOf(mPeak, cap);
+    }
+}
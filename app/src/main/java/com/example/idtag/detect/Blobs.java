@@ -0,0 +1,98 @@
+package com.example.idtag.detect;
+
+import java.util.Arrays;
+
+/**
+ * Connected bright regions of one frame, stored as parallel arrays that are reused between frames.
+ * Not thread safe.
+ */
+public final class Blobs {
+
+    private int mCount;
+    private int[] mArea = new int[16];
+    private float[] mCx = new float[16];
+    private float[] mCy = new float[16];
+    private int[] mBox = new int[64]; // minX, minY, maxX, maxY
+    private int[] mPeak = new int[16];
+
+    public int size() {
+        return mCount;
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    /** Number of pixels */
+    public int area(int i) {
+        checkIndex(i);
+        return mArea[i];
+    }
+
+    /** Centroid x, unweighted */
+    public float cx(int i) {
+        checkIndex(i);
+        return mCx[i];
+    }
+
+    public float cy(int i) {
+        checkIndex(i);
+        return mCy[i];
+    }
+
+    public int minX(int i) {
+        checkIndex(i);
+        return mBox[i * 4];
+    }
+
+    public int minY(int i) {
+        checkIndex(i);
+        return mBox[i * 4 + 1];
+    }
+
+    public int maxX(int i) {
+        checkIndex(i);
+        return mBox[i * 4 + 2];
+    }
+
+    public int maxY(int i) {
+        checkIndex(i);
+        return mBox[i * 4 + 3];
+    }
+
+    /** Brightest pixel value, 0 if the detector does not see intensities */
+    public int peak(int i) {
+        checkIndex(i);
+        return mPeak[i];
+    }
+
+    /**
+     * Appends a blob.
+     * @return its index
+     */
+    public int add(int area, float cx, float cy, int minX, int minY, int maxX, int maxY, int peak) {
+        if (mCount == mArea.length) {
+            int cap = mCount * 2;
+            mArea = Arrays.copyOf(mArea, cap);
+            mCx = Arrays.copyOf(mCx, cap);
+            mCy = Arrays.copyOf(mCy, cap);
+            mBox = Arrays.copyOf(mBox, cap * 4);
+            mPeak = Arrays.copyOf(mPeak, cap);
+        }
+        int i = mCount++;
+        mArea[i] = area;
+        mCx[i] = cx;
+        mCy[i] = cy;
+        mBox[i * 4] = minX;
+        mBox[i * 4 + 1] = minY;
+        mBox[i * 4 + 2] = maxX;
+        mBox[i * 4 + 3] = maxY;
+        mPeak[i] = peak;
+        return i;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mCount)
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + mCount);
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.idtag.detect;
+
+import com.example.idtag.kernel.SwarKernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Binary mask stored as runs of set pixels per row, for masks that are almost all zeros such as
+ * thresholded tag reflections. Memory and the cost of morphology, labeling and statistics grow
+ * with the number of runs, not with the frame size.
+ * <pre>
+ * mask.threshold(y, width, height, 50);
+ * mask.close(15, 15);
+ * detector.label(mask, y, minArea, maxArea, blobs);
+ * mask.rasterize(maskBuffer, 0, width, true);   // for display
+ * </pre>
+ * Runs are half-open column ranges [start, end), sorted and separated by at least one unset pixel
+ * within a row. Rectangular morphology follows Imgproc.dilate()/erode() with the default anchor at
+ * the kernel center and the default border: outside the frame counts as unset for dilation and as
+ * set for erosion. All buffers are reused. Not thread safe.
+ */
+public final class RunMask {
+
+    private int mWidth;
+    private int mHeight;
+    private int[] mRowStart = new int[1]; // run index of the first run of each row, height + 1 entries
+    private int[] mRuns = new int[64];    // start, end pairs
+    private int mRunCount;
+
+    // scratch for morphology
+    private long[] mMerge = new long[64];
+    private int[] mTmpA = new int[64];
+    private int[] mTmpB = new int[64];
+    private RunMask mScratch;
+    private ByteBuffer mWrapped; // the last array passed to threshold()
+
+    public int width() {
+        return mWidth;
+    }
+
+    public int height() {
+        return mHeight;
+    }
+
+    /** Number of runs in all rows */
+    public int runCount() {
+        return mRunCount;
+    }
+
+    /** Index of the first run of row, runs of the row end at rowStart(row + 1) */
+    public int rowStart(int row) {
+        if (row < 0 || row > mHeight)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + mHeight);
+        return mRowStart[row];
+    }
+
+    public int runStart(int run) {
+        checkRun(run);
+        return mRuns[run * 2];
+    }
+
+    /** Column after the last pixel of the run */
+    public int runEnd(int run) {
+        checkRun(run);
+        return mRuns[run * 2 + 1];
+    }
+
+    /** Number of set pixels */
+    public long area() {
+        long area = 0;
+        for (int r = 0; r < mRunCount; r++)
+            area += mRuns[r * 2 + 1] - mRuns[r * 2];
+        return area;
+    }
+
+    /**
+     * Empties the mask and sets its size.
+     */
+    public void reset(int width, int height) {
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Bad mask size " + width + "x" + height);
+        mWidth = width;
+        mHeight = height;
+        if (mRowStart.length < height + 1)
+            mRowStart = new int[height + 1];
+        Arrays.fill(mRowStart, 0, height + 1, 0);
+        mRunCount = 0;
+    }
+
+    public void copyTo(RunMask dst) {
+        dst.reset(mWidth, mHeight);
+        System.arraycopy(mRowStart, 0, dst.mRowStart, 0, mHeight + 1);
+        dst.ensureRuns(mRunCount);
+        System.arraycopy(mRuns, 0, dst.mRuns, 0, mRunCount * 2);
+        dst.mRunCount = mRunCount;
+    }
+
+    /**
+     * Sets the mask to the pixels of y (width x height, row-major, no padding) at or above threshold.
+     */
+    public void threshold(byte[] y, int width, int height, int threshold) {
+        if (y.length < width * height)
+            throw new IllegalArgumentException("Buffer too small: " + y.length + " < " + width * height);
+        if (mWrapped == null || mWrapped.array() != y)
+            mWrapped = ByteBuffer.wrap(y).order(ByteOrder.LITTLE_ENDIAN);
+        threshold(mWrapped, 0, width, width, height, threshold);
+    }
+
+    /**
+     * Sets the mask to the pixels at or above threshold of an 8-bit plane in a ByteBuffer, e.g.
+     * PixelCursor.buffer() with stride PixelCursor.stepBytes(). Dark stretches are skipped 8 pixels
+     * at a time.
+     */
+    public void threshold(ByteBuffer buf, int offset, int stride, int width, int height, int threshold) {
+        if (stride < width || offset < 0 || (height > 0 && offset + (long) (height - 1) * stride + width > buf.limit()))
+            throw new IndexOutOfBoundsException("Plane " + width + "x" + height + " with stride " + stride
+                    + " at " + offset + " outside buffer of " + buf.limit() + " bytes");
+        reset(width, height);
+        if (threshold <= 0) {
+            for (int r = 0; r < height; r++) {
+                if (width > 0)
+                    addRun(0, width);
+                mRowStart[r + 1] = mRunCount;
+            }
+            return;
+        }
+        if (threshold > 255) {
+            return; // nothing is that bright
+        }
+        long limit = SwarKernels.broadcast(threshold);
+        for (int r = 0; r < height; r++) {
+            int row = offset + r * stride;
+            int c = 0, start = -1;
+            while (c < width) {
+                if (start < 0 && c + 8 <= width && SwarKernels.geMask(buf.getLong(row + c), limit) == 0) {
+                    c += 8;
+                    continue;
+                }
+                boolean set = (buf.get(row + c) & 0xff) >= threshold;
+                if (set && start < 0) {
+                    start = c;
+                } else if (!set && start >= 0) {
+                    addRun(start, c);
+                    start = -1;
+                }
+                c++;
+            }
+            if (start >= 0)
+                addRun(start, width);
+            mRowStart[r + 1] = mRunCount;
+        }
+    }
+
+    /**
+     * Writes the mask as 255 (set) and 0 (unset) bytes into an 8-bit plane, e.g. a PixelCursor
+     * buffer of a CV_8UC1 Mat for Mat.setTo(color, mask).
+     * @param clear whether to zero the unset pixels too; false only writes the runs, for a plane that
+     *              is known to be zero
+     */
+    public void rasterize(ByteBuffer dst, int offset, int stride, boolean clear) {
+        if (stride < mWidth || offset < 0 || (mHeight > 0 && offset + (long) (mHeight - 1) * stride + mWidth > dst.limit()))
+            throw new IndexOutOfBoundsException("Mask " + mWidth + "x" + mHeight + " with stride " + stride
+                    + " at " + offset + " outside buffer of " + dst.limit() + " bytes");
+        for (int r = 0; r < mHeight; r++) {
+            int row = offset + r * stride;
+            int c = 0;
+            for (int run = mRowStart[r]; run < mRowStart[r + 1]; run++) {
+                int start = mRuns[run * 2], end = mRuns[run * 2 + 1];
+                if (clear)
+                    fill(dst, row + c, row + start, (byte) 0);
+                fill(dst, row + start, row + end, (byte) 255);
+                c = end;
+            }
+            if (clear)
+                fill(dst, row + c, row + mWidth, (byte) 0);
+        }
+    }
+
+    /**
+     * Writes the mask into a byte array without padding, 255 set and 0 unset.
+     */
+    public void rasterize(byte[] dst) {
+        if (dst.length < mWidth * mHeight)
+            throw new IllegalArgumentException("Buffer too small: " + dst.length + " < " + mWidth * mHeight);
+        Arrays.fill(dst, 0, mWidth * mHeight, (byte) 0);
+        for (int r = 0; r < mHeight; r++)
+            for (int run = mRowStart[r]; run < mRowStart[r + 1]; run++)
+                Arrays.fill(dst, r * mWidth + mRuns[run * 2], r * mWidth + mRuns[run * 2 + 1], (byte) 255);
+    }
+
+    /**
+     * Dilates with a kernelWidth x kernelHeight rectangle into dst, which may not be this mask.
+     */
+    public void dilate(int kernelWidth, int kernelHeight, RunMask dst) {
+        checkKernel(kernelWidth, kernelHeight, dst);
+        int ax = kernelWidth / 2, ay = kernelHeight / 2;
+        int left = kernelWidth - 1 - ax, right = ax;
+        int up = ay, down = kernelHeight - 1 - ay; // source rows r - up .. r + down feed row r
+        dst.reset(mWidth, mHeight);
+        for (int r = 0; r < mHeight; r++) {
+            int from = mRowStart[Math.max(0, r - up)], to = mRowStart[Math.min(mHeight, r + down + 1)];
+            int n = to - from;
+            if (n > 0) {
+                if (mMerge.length < n)
+                    mMerge = new long[Math.max(n, mMerge.length * 2)];
+                for (int i = 0; i < n; i++) {
+                    int run = from + i;
+                    long start = Math.max(0, mRuns[run * 2] - left), end = Math.min(mWidth, mRuns[run * 2 + 1] + right);
+                    mMerge[i] = start << 32 | end;
+                }
+                // runs of several rows: sort by start and merge what touches
+                if (kernelHeight > 1)
+                    Arrays.sort(mMerge, 0, n);
+                int start = (int) (mMerge[0] >>> 32), end = (int) mMerge[0];
+                for (int i = 1; i < n; i++) {
+                    int s = (int) (mMerge[i] >>> 32), e = (int) mMerge[i];
+                    if (s <= end) {
+                        end = Math.max(end, e);
+                    } else {
+                        dst.addRun(start, end);
+                        start = s;
+                        end = e;
+                    }
+                }
+                dst.addRun(start, end);
+            }
+            dst.mRowStart[r + 1] = dst.mRunCount;
+        }
+    }
+
+    /**
+     * Erodes with a kernelWidth x kernelHeight rectangle into dst, which may not be this mask.
+     */
+    public void erode(int kernelWidth, int kernelHeight, RunMask dst) {
+        checkKernel(kernelWidth, kernelHeight, dst);
+        int ax = kernelWidth / 2, ay = kernelHeight / 2;
+        int left = ax, right = kernelWidth - 1 - ax; // a pixel needs left set pixels before it
+        int up = ay, down = kernelHeight - 1 - ay;
+        dst.reset(mWidth, mHeight);
+        for (int r = 0; r < mHeight; r++) {
+            // intersection of the rows r - up .. r + down that are inside the frame
+            int first = Math.max(0, r - up), last = Math.min(mHeight - 1, r + down);
+            int n = copyRow(first);
+            for (int row = first + 1; row <= last && n > 0; row++)
+                n = intersect(n, row);
+            for (int i = 0; i < n; i++) {
+                int s = mTmpA[i * 2], e = mTmpA[i * 2 + 1];
+                // the frame border counts as set
+                int start = s == 0 ? 0 : s + left, end = e == mWidth ? mWidth : e - right;
+                if (start < end)
+                    dst.addRun(start, end);
+            }
+            dst.mRowStart[r + 1] = dst.mRunCount;
+        }
+    }
+
+    /**
+     * Closes (dilates, then erodes) in place with a kernelWidth x kernelHeight rectangle, like
+     * Imgproc.morphologyEx(MORPH_CLOSE).
+     */
+    public void close(int kernelWidth, int kernelHeight) {
+        if (mScratch == null)
+            mScratch = new RunMask();
+        dilate(kernelWidth, kernelHeight, mScratch);
+        mScratch.erode(kernelWidth, kernelHeight, this);
+    }
+
+    /**
+     * Opens (erodes, then dilates) in place, like Imgproc.morphologyEx(MORPH_OPEN).
+     */
+    public void open(int kernelWidth, int kernelHeight) {
+        if (mScratch == null)
+            mScratch = new RunMask();
+        erode(kernelWidth, kernelHeight, mScratch);
+        mScratch.dilate(kernelWidth, kernelHeight, this);
+    }
+
+    // copies the runs of row into mTmpA, returns their number
+    private int copyRow(int row) {
+        int from = mRowStart[row], n = mRowStart[row + 1] - from;
+        if (mTmpA.length < n * 2)
+            mTmpA = new int[Math.max(n * 2, mTmpA.length * 2)];
+        System.arraycopy(mRuns, from * 2, mTmpA, 0, n * 2);
+        return n;
+    }
+
+    // intersects the n runs in mTmpA with the runs of row, result in mTmpA
+    private int intersect(int n, int row) {
+        int from = mRowStart[row], to = mRowStart[row + 1];
+        int max = n + (to - from);
+        if (mTmpB.length < max * 2)
+            mTmpB = new int[Math.max(max * 2, mTmpB.length * 2)];
+        int[] a = mTmpA, out = mTmpB;
+        int i = 0, j = from, count = 0;
+        while (i < n && j < to) {
+            int s = Math.max(a[i * 2], mRuns[j * 2]), e = Math.min(a[i * 2 + 1], mRuns[j * 2 + 1]);
+            if (s < e) {
+                out[count * 2] = s;
+                out[count * 2 + 1] = e;
+                count++;
+            }
+            if (a[i * 2 + 1] < mRuns[j * 2 + 1])
+                i++;
+            else
+                j++;
+        }
+        mTmpB = a;
+        mTmpA = out;
+        return count;
+    }
+
+    void addRun(int start, int end) {
+        ensureRuns(mRunCount + 1);
+        mRuns[mRunCount * 2] = start;
+        mRuns[mRunCount * 2 + 1] = end;
+        mRunCount++;
+    }
+
+    private void ensureRuns(int count) {
+        if (mRuns.length < count * 2)
+            mRuns = Arrays.copyOf(mRuns, Math.max(count * 2, mRuns.length * 2));
+    }
+
+    private void checkKernel(int kernelWidth, int kernelHeight, RunMask dst) {
+        if (kernelWidth < 1 || kernelHeight < 1)
+            throw new IllegalArgumentException("Bad kernel size " + kernelWidth + "x" + kernelHeight);
+        if (dst == this)
+            throw new IllegalArgumentException("dst must not be the source mask");
+    }
+
+    private void checkRun(int run) {
+        if (run < 0 || run >= mRunCount)
+            throw new IndexOutOfBoundsException("Run " + run + " of " + mRunCount);
+    }
+
+    private static void fill(ByteBuffer dst, int from, int to, byte v) {
+        for (int i = from; i < to; i++)
+            dst.put(i, v);
+    }
+
+    @Override
+    public String toString() {
+        return "RunMask " + mWidth + "x" + mHeight + ", " + mRunCount + " runs, " + area() + " pixels";
+    }
+}
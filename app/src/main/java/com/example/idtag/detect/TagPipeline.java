@@ -0,0 +1,70 @@
+package com.example.idtag.detect;
+
+import java.util.List;
+
+/**
+ * Detection, tracking and decoding of shutter-coded tags in luma frames, in pure Java so that it
+ * runs on recorded and synthetic sequences on a desktop JVM as well as on the device.
+ * <pre>
+ * TagPipeline pipeline = new TagPipeline(new TagPipeline.Config());
+ * for each frame:
+ *     pipeline.process(frameNumber, y, width, height);
+ *     for (TagTracker.Track t : pipeline.tracks()) ...
+ * </pre>
+ * The threshold and the closing kernel are the app's, HIGH_INTENSITY_THRESHOLD and CLOSE_KERNEL_SIZE,
+ * which FrameProcessor reads too, so tuning them changes what PipelineRegressionTest measures.
+ * Not thread safe.
+ */
+public final class TagPipeline {
+
+    /** Pixels brighter than this are highlights; FrameProcessor's Imgproc.threshold() value */
+    public static final int HIGH_INTENSITY_THRESHOLD = 50; // Adjust based on the intensity of the reflection
+    /** Side of the square kernel that closes gaps in the thresholded mask */
+    public static final int CLOSE_KERNEL_SIZE = 15;
+
+    public static final class Config {
+        /** Luma at and above which a pixel belongs to a blob; THRESH_BINARY keeps values above its threshold */
+        public int threshold = HIGH_INTENSITY_THRESHOLD + 1;
+        /** Side of the square kernel that closes the mask before labeling, 1 for no closing */
+        public int closeKernel = CLOSE_KERNEL_SIZE;
+        public int minArea = 4;
+        public int maxArea = 5000;
+        public final TagTracker.Config tracker = new TagTracker.Config();
+    }
+
+    private final Config mConfig;
+    private final BlobDetector mDetector = new BlobDetector();
+    private final RunMask mMask = new RunMask();
+    private final Blobs mBlobs = new Blobs();
+    private final TagTracker mTracker;
+
+    public TagPipeline(Config config) {
+        mConfig = config;
+        mTracker = new TagTracker(config.tracker);
+    }
+
+    public Config config() {
+        return mConfig;
+    }
+
+    public void process(long frame, byte[] y, int width, int height) {
+        mMask.threshold(y, width, height, mConfig.threshold);
+        if (mConfig.closeKernel > 1)
+            mMask.close(mConfig.closeKernel, mConfig.closeKernel);
+        mDetector.label(mMask, y, mConfig.minArea, mConfig.maxArea, mBlobs);
+        mTracker.update(frame, mBlobs, y, width, height);
+    }
+
+    /** Blobs of the last frame */
+    public Blobs blobs() {
+        return mBlobs;
+    }
+
+    public List<TagTracker.Track> tracks() {
+        return mTracker.tracks();
+    }
+
+    public void reset() {
+        mTracker.reset();
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.idtag.detect;
+
+import com.example.idtag.sim.ShutterCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows blobs from frame to frame and decodes the shutter code of each track.
+ *
+ * Blobs are assigned to the nearest predicted track position within the gate, oldest tracks
+ * first; unassigned blobs start new tracks and tracks unseen for more than maxMissed frames are
+ * dropped. Every frame the brightest pixel around each track is sampled, so a track keeps its
+ * history while its shutter is closed. A track whose samples span at least minContrast is
+ * modulated; its samples are split at the middle of their range into shutter symbols, one every
+ * framesPerSymbol frames, and decoded with the ShutterCode. An ID is accepted once two
+ * consecutive frames decode to it. Not thread safe.
+ */
+public final class TagTracker {
+
+    public static final class Config {
+        /** Largest distance in pixels between a predicted track position and its next blob */
+        public float gate = 12;
+        public int maxMissed = 6;
+        public int minContrast = 80;
+        public int idBits = 8;
+        public int framesPerSymbol = 2;
+    }
+
+    public static final class Track {
+        private final int mId;
+        private final long mFirstFrame;
+        private float mX, mY, mVx, mVy, mRadius;
+        private int mHits;
+        private int mMissed;
+        private final int[] mLevels; // ring of sampled peak values, one per frame
+        private int mSamples;
+        private int mMin, mMax;
+        private boolean mModulated;
+        private int mCandidateId = -1;
+        private int mDecodedId = -1;
+        private long mDecodedFrame = -1;
+
+        Track(int id, long frame, float x, float y, float radius, int history) {
+            mId = id;
+            mFirstFrame = frame;
+            mX = x;
+            mY = y;
+            mRadius = radius;
+            mHits = 1;
+            mLevels = new int[history];
+        }
+
+        /** Track number, unique per tracker */
+        public int id() {
+            return mId;
+        }
+
+        public float x() {
+            return mX;
+        }
+
+        public float y() {
+            return mY;
+        }
+
+        public float radius() {
+            return mRadius;
+        }
+
+        public int hits() {
+            return mHits;
+        }
+
+        /** Consecutive frames without a blob */
+        public int missed() {
+            return mMissed;
+        }
+
+        public long firstFrame() {
+            return mFirstFrame;
+        }
+
+        /** Whether the sampled brightness changes enough to be a shutter */
+        public boolean isModulated() {
+            return mModulated;
+        }
+
+        /** Decoded tag ID, or -1 */
+        public int decodedId() {
+            return mDecodedId;
+        }
+
+        /** Frame in which the ID was accepted, or -1 */
+        public long decodedFrame() {
+            return mDecodedFrame;
+        }
+    }
+
+    private final Config mConfig;
+    private final ShutterCode mCode;
+    private final int mHistory;
+    private final ArrayList<Track> mTracks = new ArrayList<Track>();
+    private final ArrayList<Track> mRemoved = new ArrayList<Track>();
+    private boolean[] mAssigned = new boolean[16];
+    private final boolean[] mSymbols;
+    private int mNextId;
+
+    public TagTracker(Config config) {
+        mConfig = config;
+        mCode = new ShutterCode(config.idBits);
+        // two code lengths always hold a complete code, whatever the phase
+        mHistory = 2 * mCode.length() * config.framesPerSymbol + config.framesPerSymbol;
+        mSymbols = new boolean[mHistory];
+    }
+
+    /** Live tracks, oldest first; valid until the next update() */
+    public List<Track> tracks() {
+        return mTracks;
+    }
+
+    /** Tracks dropped by the last update() */
+    public List<Track> removed() {
+        return mRemoved;
+    }
+
+    public void reset() {
+        mTracks.clear();
+        mRemoved.clear();
+        mNextId = 0;
+    }
+
+    /**
+     * Advances all tracks to frame, using the blobs detected in it and its luma plane y.
+     */
+    public void update(long frame, Blobs blobs, byte[] y, int width, int height) {
+        int n = blobs.size();
+        if (mAssigned.length < n)
+            mAssigned = new boolean[Math.max(n, mAssigned.length * 2)];
+        for (int b = 0; b < n; b++)
+            mAssigned[b] = false;
+        mRemoved.clear();
+
+        for (int t = 0; t < mTracks.size(); t++) {
+            Track tr = mTracks.get(t);
+            float px = tr.mX + tr.mVx, py = tr.mY + tr.mVy;
+            float gate = mConfig.gate + tr.mRadius;
+            int best = -1;
+            float bestD2 = gate * gate;
+            for (int b = 0; b < n; b++) {
+                if (mAssigned[b])
+                    continue;
+                float dx = blobs.cx(b) - px, dy = blobs.cy(b) - py;
+                float d2 = dx * dx + dy * dy;
+                if (d2 <= bestD2) {
+                    bestD2 = d2;
+                    best = b;
+                }
+            }
+            if (best >= 0) {
+                mAssigned[best] = true;
+                float cx = blobs.cx(best), cy = blobs.cy(best);
+                tr.mVx = 0.5f * tr.mVx + 0.5f * (cx - tr.mX);
+                tr.mVy = 0.5f * tr.mVy + 0.5f * (cy - tr.mY);
+                tr.mX = cx;
+                tr.mY = cy;
+                tr.mRadius = 0.7f * tr.mRadius + 0.3f * radius(blobs.area(best));
+                tr.mHits++;
+                tr.mMissed = 0;
+            } else {
+                tr.mX = px;
+                tr.mY = py;
+                tr.mMissed++;
+            }
+        }
+        for (int t = mTracks.size() - 1; t >= 0; t--) {
+            if (mTracks.get(t).mMissed > mConfig.maxMissed)
+                mRemoved.add(mTracks.remove(t));
+        }
+        for (int b = 0; b < n; b++) {
+            if (!mAssigned[b])
+                mTracks.add(new Track(mNextId++, frame, blobs.cx(b), blobs.cy(b), radius(blobs.area(b)), mHistory));
+        }
+
+        for (int t = 0; t < mTracks.size(); t++) {
+            Track tr = mTracks.get(t);
+            sample(tr, y, width, height);
+            decode(tr, frame);
+        }
+    }
+
+    private void sample(Track tr, byte[] y, int width, int height) {
+        int r = Math.max(1, Math.round(tr.mRadius * 0.5f));
+        int x0 = Math.max(0, Math.round(tr.mX) - r), x1 = Math.min(width - 1, Math.round(tr.mX) + r);
+        int y0 = Math.max(0, Math.round(tr.mY) - r), y1 = Math.min(height - 1, Math.round(tr.mY) + r);
+        int peak = 0;
+        for (int yy = y0; yy <= y1; yy++)
+            for (int xx = x0; xx <= x1; xx++)
+                peak = Math.max(peak, y[yy * width + xx] & 0xff);
+        tr.mLevels[tr.mSamples % mHistory] = peak;
+        tr.mSamples++;
+
+        int count = Math.min(tr.mSamples, mHistory);
+        int min = 255, max = 0;
+        for (int i = 0; i < count; i++) {
+            int v = tr.mLevels[i];
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        tr.mMin = min;
+        tr.mMax = max;
+        tr.mModulated = max - min >= mConfig.minContrast;
+    }
+
+    private void decode(Track tr, long frame) {
+        if (tr.mDecodedId >= 0 || !tr.mModulated)
+            return;
+        int fps = mConfig.framesPerSymbol;
+        int count = Math.min(tr.mSamples, mHistory);
+        if (count < mCode.length() * fps)
+            return;
+        int mid = (tr.mMin + tr.mMax) / 2;
+        int oldest = tr.mSamples - count;
+        int found = -1;
+        for (int phase = 0; phase < fps && found < 0; phase++) {
+            int k = 0;
+            for (int s = oldest + phase; s < tr.mSamples; s += fps)
+                mSymbols[k++] = tr.mLevels[s % mHistory] > mid;
+            found = mCode.decode(mSymbols, 0, k);
+        }
+        if (found >= 0 && found == tr.mCandidateId) {
+            tr.mDecodedId = found;
+            tr.mDecodedFrame = frame;
+        }
+        tr.mCandidateId = found;
+    }
+
+    private static float radius(int area) {
+        return (float) Math.sqrt(area / Math.PI);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.idtag.kernel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 8-bit per-pixel kernels that work on 8 pixels per long (SIMD within a register), for planes in
+ * ByteBuffers such as PixelCursor.buffer() or the planes of a camera Image.
+ * <pre>
+ * ByteBuffer buf = cursor.attach(gray, false).buffer();
+ * SwarKernels.threshold(buf, 0, maskBuf, 0, rows * cols, 200);
+ * </pre>
+ * Every byte is an unsigned value in its own lane of the long: a lane's high bit is never carried
+ * into or borrowed from its neighbour, so one long subtraction does 8 byte comparisons. Offsets and
+ * counts are in pixels (bytes) from the start of the buffer; positions and limits are not changed.
+ * The remainder of a count that is not a multiple of 8 is done per byte. Direct buffers read a
+ * long with one memory access; heap buffers work too, but assemble it from bytes. Longs are read
+ * and written through little-endian views, so buffers of any byte order can be mixed: a direct
+ * buffer or an Image plane is big-endian by default, PixelCursor.buffer() is native.
+ *
+ * Results are exact, equal to Imgproc.threshold(THRESH_BINARY), the V channel of
+ * Imgproc.cvtColor(COLOR_RGB2HSV), Core.absdiff() and Core.subtract() on CV_8U data. Thread safe.
+ */
+public final class SwarKernels {
+
+    private static final long HIGH = 0x8080808080808080L;
+    private static final long LOW = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ONES = 0x0101010101010101L;
+
+    private SwarKernels() {}
+
+    /**
+     * dst = src &gt; threshold ? 255 : 0, like THRESH_BINARY with a maximum of 255.
+     */
+    public static void threshold(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int count,
+                                 int threshold) {
+        check(src, srcOffset, count);
+        check(dst, dstOffset, count);
+        if (threshold < 0 || threshold >= 255) {
+            fill(dst, dstOffset, count, threshold < 0 ? (byte) 255 : 0);
+            return;
+        }
+        long limit = broadcast(threshold + 1); // a > t is a >= t + 1
+        ByteBuffer s = lanes(src), d = lanes(dst);
+        int i = 0;
+        for (; i <= count - 8; i += 8)
+            d.putLong(dstOffset + i, geMask(s.getLong(srcOffset + i), limit));
+        for (; i < count; i++)
+            dst.put(dstOffset + i, (src.get(srcOffset + i) & 0xff) > threshold ? (byte) 255 : 0);
+    }
+
+    /**
+     * dst = max(a, b, c) of three planes, e.g. the V channel of HSV from the R, G and B planes.
+     */
+    public static void max3(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset, ByteBuffer c, int cOffset,
+                            ByteBuffer dst, int dstOffset, int count) {
+        check(a, aOffset, count);
+        check(b, bOffset, count);
+        check(c, cOffset, count);
+        check(dst, dstOffset, count);
+        ByteBuffer la = lanes(a), lb = lanes(b), lc = lanes(c), d = lanes(dst);
+        int i = 0;
+        for (; i <= count - 8; i += 8)
+            d.putLong(dstOffset + i,
+                    max(max(la.getLong(aOffset + i), lb.getLong(bOffset + i)), lc.getLong(cOffset + i)));
+        for (; i < count; i++) {
+            int v = Math.max(Math.max(a.get(aOffset + i) & 0xff, b.get(bOffset + i) & 0xff), c.get(cOffset + i) & 0xff);
+            dst.put(dstOffset + i, (byte) v);
+        }
+    }
+
+    /**
+     * dst = max(R, G, B) of interleaved 4-byte pixels (RGBA, BGRA, ...; the 4th byte is ignored),
+     * i.e. the V channel of HSV straight from a camera frame. src holds 4 * count bytes.
+     */
+    public static void maxRgba(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int count) {
+        check(src, srcOffset, 4L * count);
+        check(dst, dstOffset, count);
+        ByteBuffer ls = lanes(src), d = lanes(dst);
+        int i = 0;
+        for (; i <= count - 8; i += 8) {
+            int s = srcOffset + 4 * i;
+            // each long holds 2 pixels, the maximum ends up in the lowest byte of each pixel
+            long out = pixelPair(ls.getLong(s))
+                    | pixelPair(ls.getLong(s + 8)) << 16
+                    | pixelPair(ls.getLong(s + 16)) << 32
+                    | pixelPair(ls.getLong(s + 24)) << 48;
+            d.putLong(dstOffset + i, out);
+        }
+        for (; i < count; i++) {
+            int s = srcOffset + 4 * i;
+            int v = Math.max(Math.max(src.get(s) & 0xff, src.get(s + 1) & 0xff), src.get(s + 2) & 0xff);
+            dst.put(dstOffset + i, (byte) v);
+        }
+    }
+
+    /**
+     * dst = |a - b|, e.g. the change between two frames.
+     */
+    public static void absDiff(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset, ByteBuffer dst, int dstOffset,
+                               int count) {
+        check(a, aOffset, count);
+        check(b, bOffset, count);
+        check(dst, dstOffset, count);
+        ByteBuffer la = lanes(a), lb = lanes(b), d = lanes(dst);
+        int i = 0;
+        for (; i <= count - 8; i += 8) {
+            long x = la.getLong(aOffset + i), y = lb.getLong(bOffset + i);
+            long hi = max(x, y);
+            // hi >= lo in every lane, so the subtraction does not borrow across lanes
+            d.putLong(dstOffset + i, hi - (x ^ y ^ hi));
+        }
+        for (; i < count; i++)
+            dst.put(dstOffset + i, (byte) Math.abs((a.get(aOffset + i) & 0xff) - (b.get(bOffset + i) & 0xff)));
+    }
+
+    /**
+     * dst = max(a - b, 0), e.g. a frame minus the background.
+     */
+    public static void subtractSaturate(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset, ByteBuffer dst,
+                                        int dstOffset, int count) {
+        check(a, aOffset, count);
+        check(b, bOffset, count);
+        check(dst, dstOffset, count);
+        ByteBuffer la = lanes(a), lb = lanes(b), d = lanes(dst);
+        int i = 0;
+        for (; i <= count - 8; i += 8) {
+            long x = la.getLong(aOffset + i), y = lb.getLong(bOffset + i);
+            d.putLong(dstOffset + i, max(x, y) - y);
+        }
+        for (; i < count; i++)
+            dst.put(dstOffset + i, (byte) Math.max((a.get(aOffset + i) & 0xff) - (b.get(bOffset + i) & 0xff), 0));
+    }
+
+    /** v in all 8 lanes */
+    public static long broadcast(int v) {
+        return (v & 0xffL) * ONES;
+    }
+
+    /**
+     * 0xFF in the lanes where x &gt;= y, unsigned, 0 elsewhere; with y = broadcast(t), 0 means
+     * that none of the 8 pixels of x reaches t.
+     */
+    public static long geMask(long x, long y) {
+        // low 7 bits: (x | 0x80) - (y & 0x7F) keeps its high bit iff x7 >= y7, and never borrows
+        long low = (x | HIGH) - (y & LOW);
+        // with the high bits: x has it and y not, or they agree and the low bits decide
+        long ge = ((x & ~y) | (~(x ^ y) & low)) & HIGH;
+        return (ge >>> 7) * 0xFF;
+    }
+
+    /** Unsigned maximum per lane */
+    public static long max(long x, long y) {
+        return y ^ ((x ^ y) & geMask(x, y));
+    }
+
+    // max of bytes 0..2 of both 4-byte pixels of a little-endian long, in bits 0-7 and 8-15
+    private static long pixelPair(long x) {
+        long m = max(max(x, x >>> 8), x >>> 16);
+        return (m & 0xFF) | ((m >>> 24) & 0xFF00);
+    }
+
+    // lane i of a long is byte i of the buffer whatever the order of buf; views share the content
+    private static ByteBuffer lanes(ByteBuffer buf) {
+        return buf.order() == ByteOrder.LITTLE_ENDIAN ? buf : buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void fill(ByteBuffer dst, int offset, int count, byte v) {
+        for (int i = 0; i < count; i++)
+            dst.put(offset + i, v);
+    }
+
+    private static void check(ByteBuffer buf, int offset, long count) {
+        if (offset < 0 || count < 0 || offset + count > buf.limit())
+            throw new IndexOutOfBoundsException(
+                    "[" + offset + ", " + (offset + count) + ") outside buffer of " + buf.limit() + " bytes");
+    }
+}
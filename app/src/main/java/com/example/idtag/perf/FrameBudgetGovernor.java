@@ -0,0 +1,275 @@
+package com.example.idtag.perf;
+
+import java.util.Arrays;
+
+/**
+ * Picks a level on a quality ladder so that frames stay within a time budget.
+ * <pre>
+ * FrameBudgetGovernor governor = new FrameBudgetGovernor(33_000_000L, "full", "half", "roi");
+ * per frame, after stats.endFrame():
+ *     int level = governor.onFrame(stats);   // level for the next frame, 0 = best quality
+ * </pre>
+ * Level 0 is the best quality and every higher level must be cheaper than the one before. Every
+ * EVALUATE_FRAMES frames the 90th percentile of the last WINDOW frame durations is compared with
+ * the budget: over budget on DOWN_AFTER evaluations in a row moves one level down the ladder,
+ * under UP_RATIO of the budget on the up dwell (UP_AFTER evaluations) moves one level back up.
+ * The gap between the two thresholds and the longer dwell upwards are the hysteresis. An upshift
+ * that is followed by a downshift within UP_AFTER evaluations doubles the dwell, up to
+ * MAX_UP_AFTER, so a level that cannot hold the budget is not retried every few seconds.
+ *
+ * The thermal status (the values of PowerManager.getCurrentThermalStatus()) sets the lowest level
+ * allowed: LIGHT level 1, MODERATE level 2 and so on, capped at the last level. A hotter status
+ * moves down at once, a cooler one only lowers the floor.
+ *
+ * Stages passed to excludeStages() are taken out of the frame time and never named the slowest,
+ * for work that does not get cheaper at lower levels, such as recording frames.
+ *
+ * Transitions are counted and reported to the Listener with the reason and the slowest stage.
+ * Not thread safe; call it on the thread that records the PipelineStats.
+ */
+public final class FrameBudgetGovernor {
+
+    public interface Listener {
+        void onTransition(int from, int to, String reason);
+    }
+
+    // PowerManager.THERMAL_STATUS_*
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+    public static final int THERMAL_EMERGENCY = 5;
+    public static final int THERMAL_SHUTDOWN = 6;
+    private static final String[] THERMAL_NAMES = {
+            "none", "light", "moderate", "severe", "critical", "emergency", "shutdown"
+    };
+
+    static final int WINDOW = 30;
+    static final int EVALUATE_FRAMES = 15;
+    static final int DOWN_AFTER = 2;
+    static final int UP_AFTER = 8;
+    static final int MAX_UP_AFTER = 64;
+    static final double UP_RATIO = 0.6;
+
+    private final long mBudgetNs;
+    private final String[] mLevelNames;
+    private final long[] mEntries;
+    private Listener mListener;
+
+    private final long[] mWindow = new long[WINDOW];
+    private final long[] mSorted = new long[WINDOW];
+    private int mWindowCount;
+    private int mNext;
+    private int mSinceEvaluation;
+    private long[] mStageSums = new long[0];
+    private int[] mExcludedStages = new int[0];
+
+    private int mLevel;
+    private int mThermalStatus;
+    private int mOver;
+    private int mUnder;
+    private int mUpAfter = UP_AFTER;
+    private int mSinceUpshift = Integer.MAX_VALUE; // evaluations
+    private long mDownshifts;
+    private long mUpshifts;
+
+    /**
+     * @param budgetNs   time available per frame, usually the camera frame period
+     * @param levelNames one per level, best quality first
+     */
+    public FrameBudgetGovernor(long budgetNs, String... levelNames) {
+        if (budgetNs <= 0)
+            throw new IllegalArgumentException("Bad budget " + budgetNs);
+        if (levelNames.length == 0)
+            throw new IllegalArgumentException("No levels");
+        mBudgetNs = budgetNs;
+        mLevelNames = levelNames.clone();
+        mEntries = new long[levelNames.length];
+        mEntries[0] = 1;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets the PipelineStats stages whose time is not held against the budget.
+     */
+    public void excludeStages(int... stages) {
+        mExcludedStages = stages.clone();
+    }
+
+    /** Current level, 0 is the best quality */
+    public int level() {
+        return mLevel;
+    }
+
+    public int levelCount() {
+        return mLevelNames.length;
+    }
+
+    public String levelName(int level) {
+        return mLevelNames[level];
+    }
+
+    public long budgetNs() {
+        return mBudgetNs;
+    }
+
+    /** Times a level was entered, including the start at level 0 */
+    public long entries(int level) {
+        return mEntries[level];
+    }
+
+    public long downshifts() {
+        return mDownshifts;
+    }
+
+    public long upshifts() {
+        return mUpshifts;
+    }
+
+    public int thermalStatus() {
+        return mThermalStatus;
+    }
+
+    /** The level the thermal status allows at best */
+    public int thermalFloor() {
+        return Math.min(Math.max(mThermalStatus, 0), mLevelNames.length - 1);
+    }
+
+    /**
+     * Sets the device thermal status, a PowerManager.THERMAL_STATUS_* value.
+     * @return the level for the next frame
+     */
+    public int setThermalStatus(int status) {
+        if (status == mThermalStatus)
+            return mLevel;
+        boolean hotter = status > mThermalStatus;
+        mThermalStatus = status;
+        if (hotter && mLevel < thermalFloor()) {
+            transition(thermalFloor(), "thermal " + thermalName(status));
+        } else if (!hotter) {
+            mUpAfter = UP_AFTER; // cooler silicon, the levels above are worth another try
+        }
+        return mLevel;
+    }
+
+    /**
+     * Takes the last frame and stage durations of stats, call it after stats.endFrame().
+     * @return the level for the next frame
+     */
+    public int onFrame(PipelineStats stats) {
+        int stages = stats.stageCount();
+        if (mStageSums.length != stages)
+            mStageSums = new long[stages];
+        for (int i = 0; i < stages; i++)
+            mStageSums[i] += stats.lastStageNs(i);
+        long frameNs = stats.lastFrameNs();
+        for (int stage : mExcludedStages) {
+            frameNs -= stats.lastStageNs(stage);
+            mStageSums[stage] = 0;
+        }
+        return onFrame(frameNs, stats);
+    }
+
+    /**
+     * Takes the duration of a frame measured by the caller.
+     * @return the level for the next frame
+     */
+    public int onFrame(long frameNs) {
+        return onFrame(frameNs, null);
+    }
+
+    private int onFrame(long frameNs, PipelineStats stats) {
+        mWindow[mNext] = frameNs;
+        mNext = (mNext + 1) % WINDOW;
+        if (mWindowCount < WINDOW)
+            mWindowCount++;
+        if (++mSinceEvaluation < EVALUATE_FRAMES || mWindowCount < WINDOW)
+            return mLevel;
+        evaluate(stats);
+        return mLevel;
+    }
+
+    private void evaluate(PipelineStats stats) {
+        System.arraycopy(mWindow, 0, mSorted, 0, WINDOW);
+        Arrays.sort(mSorted);
+        long p90 = mSorted[(int) Math.ceil(WINDOW * 0.9) - 1];
+        int frames = mSinceEvaluation;
+        mSinceEvaluation = 0;
+        if (mSinceUpshift < Integer.MAX_VALUE)
+            mSinceUpshift++;
+
+        if (p90 > mBudgetNs) {
+            mUnder = 0;
+            if (++mOver >= DOWN_AFTER && mLevel < mLevelNames.length - 1) {
+                if (mSinceUpshift <= UP_AFTER)
+                    mUpAfter = Math.min(mUpAfter * 2, MAX_UP_AFTER);
+                transition(mLevel + 1, "p90 " + ms(p90) + " ms > budget " + ms(mBudgetNs) + " ms"
+                        + slowestStage(stats, frames));
+            }
+        } else if (p90 < mBudgetNs * UP_RATIO) {
+            mOver = 0;
+            if (++mUnder >= mUpAfter && mLevel > thermalFloor()) {
+                transition(mLevel - 1, "p90 " + ms(p90) + " ms < " + ms((long) (mBudgetNs * UP_RATIO)) + " ms");
+                mSinceUpshift = 0;
+            }
+        } else {
+            mOver = 0;
+            mUnder = 0;
+        }
+        Arrays.fill(mStageSums, 0);
+    }
+
+    private void transition(int to, String reason) {
+        int from = mLevel;
+        mLevel = to;
+        mEntries[to]++;
+        if (to > from)
+            mDownshifts++;
+        else
+            mUpshifts++;
+        // measure the new level from scratch
+        mOver = 0;
+        mUnder = 0;
+        mWindowCount = 0;
+        mSinceEvaluation = 0;
+        Arrays.fill(mStageSums, 0);
+        if (mListener != null)
+            mListener.onTransition(from, to, reason);
+    }
+
+    private String slowestStage(PipelineStats stats, int frames) {
+        if (stats == null || frames == 0)
+            return "";
+        int slowest = 0;
+        for (int i = 1; i < mStageSums.length; i++)
+            if (mStageSums[i] > mStageSums[slowest])
+                slowest = i;
+        return ", slowest stage " + stats.stageName(slowest) + " " + ms(mStageSums[slowest] / frames) + " ms";
+    }
+
+    private static String thermalName(int status) {
+        return status >= 0 && status < THERMAL_NAMES.length ? THERMAL_NAMES[status] : Integer.toString(status);
+    }
+
+    private static String ms(long ns) {
+        long tenths = (ns + 50_000) / 100_000;
+        return tenths / 10 + "." + tenths % 10;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("level ").append(mLevelNames[mLevel])
+                .append(" thermal ").append(thermalName(mThermalStatus))
+                .append(" downshifts=").append(mDownshifts)
+                .append(" upshifts=").append(mUpshifts)
+                .append(" entries");
+        for (int i = 0; i < mLevelNames.length; i++)
+            sb.append(' ').append(mLevelNames[i]).append('=').append(mEntries[i]);
+        return sb.toString();
+    }
+}
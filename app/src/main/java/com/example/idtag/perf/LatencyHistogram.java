@@ -0,0 +1,126 @@
+package com.example.idtag.perf;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram of durations in nanoseconds.
+ *
+ * Every power of two is split into 16 linear buckets, so a recorded value is reported with at most
+ * 1/16 (6.25%) relative error, from 1 ns up to MAX_VALUE_NS; larger values land in the last bucket.
+ * record() is a few shifts and an array increment: no allocation, no locks.
+ *
+ * One thread records. Other threads may read at any time with copyTo() or the percentile methods
+ * and see a state at most a few samples behind; the totals are published through a volatile.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+
+    /** Largest value resolved by the buckets, about 68 s */
+    public static final long MAX_VALUE_NS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mMax;
+    private long mSum;
+    private volatile long mCount;
+
+    public void record(long ns) {
+        if (ns < 0)
+            ns = 0;
+        mCounts[bucket(ns)]++;
+        if (ns > mMax)
+            mMax = ns;
+        mSum += ns;
+        mCount = mCount + 1; // single writer; the volatile write publishes the bucket update
+    }
+
+    public long count() {
+        return mCount;
+    }
+
+    public long max() {
+        return mCount == 0 ? 0 : mMax;
+    }
+
+    public double mean() {
+        long n = mCount;
+        return n == 0 ? 0 : (double) mSum / n;
+    }
+
+    /**
+     * Smallest bucket bound that at least the fraction q of the recorded values do not exceed;
+     * 0 if nothing was recorded. p(0.99) is the 99th percentile.
+     */
+    public long p(double q) {
+        if (q < 0 || q > 1)
+            throw new IllegalArgumentException("Quantile out of [0, 1]: " + q);
+        long n = mCount;
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), mMax);
+        }
+        return mMax;
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mMax = 0;
+        mSum = 0;
+        mCount = 0;
+    }
+
+    /**
+     * Copies the state into dst, for reading on another thread or for diffing two points in time.
+     */
+    public void copyTo(LatencyHistogram dst) {
+        long n = mCount; // read first, buckets are at least this complete
+        System.arraycopy(mCounts, 0, dst.mCounts, 0, BUCKETS);
+        dst.mMax = mMax;
+        dst.mSum = mSum;
+        dst.mCount = n;
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + count() + " p50=" + format(p(0.50)) + " p95=" + format(p(0.95)) + " p99=" + format(p(0.99))
+                + " max=" + format(max());
+    }
+
+    static String format(long ns) {
+        // fixed point milliseconds without String.format, which is slow on Android
+        long us = (ns + 500) / 1000;
+        StringBuilder sb = new StringBuilder();
+        sb.append(us / 1000).append('.');
+        long frac = us % 1000;
+        if (frac < 100) sb.append('0');
+        if (frac < 10) sb.append('0');
+        return sb.append(frac).append("ms").toString();
+    }
+
+    static int bucket(long v) {
+        if (v < SUB_BUCKETS)
+            return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        if (exp > MAX_EXPONENT)
+            return BUCKETS - 1;
+        int shift = exp - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long sub = (bucket & (SUB_BUCKETS - 1)) | SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
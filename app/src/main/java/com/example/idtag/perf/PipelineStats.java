@@ -0,0 +1,172 @@
+package com.example.idtag.perf;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Per-stage and per-frame latency of a frame pipeline, plus dropped and skipped frame counters.
+ * <pre>
+ * stats.beginFrame();
+ * convert(...);   stats.endStage(STAGE_CONVERT);
+ * threshold(...); stats.endStage(STAGE_THRESHOLD);
+ * stats.endFrame();
+ * </pre>
+ * endStage() records the time since the previous endStage() or beginFrame(), so stages are timed
+ * back to back with one System.nanoTime() call each. Recording allocates nothing and takes no
+ * locks; it must happen on one thread, usually the one that processes frames. Any thread can call
+ * snapshot(), dump() or toString().
+ */
+public final class PipelineStats {
+
+    private final String[] mStageNames;
+    private final LatencyHistogram[] mStages;
+    private final LatencyHistogram mFrames = new LatencyHistogram();
+    private final long[] mLastStageNs;
+    private long mLastFrameNs;
+
+    private long mFrameStartNs;
+    private long mLastMarkNs;
+    private volatile long mDropped;
+    private volatile long mSkipped;
+
+    public PipelineStats(String... stageNames) {
+        mStageNames = stageNames.clone();
+        mStages = new LatencyHistogram[stageNames.length];
+        mLastStageNs = new long[stageNames.length];
+        for (int i = 0; i < mStages.length; i++)
+            mStages[i] = new LatencyHistogram();
+    }
+
+    public int stageCount() {
+        return mStages.length;
+    }
+
+    public String stageName(int stage) {
+        return mStageNames[stage];
+    }
+
+    public void beginFrame() {
+        mFrameStartNs = mLastMarkNs = System.nanoTime();
+        Arrays.fill(mLastStageNs, 0);
+    }
+
+    /**
+     * Records the time since the previous mark as a duration of stage.
+     */
+    public void endStage(int stage) {
+        long now = System.nanoTime();
+        mStages[stage].record(now - mLastMarkNs);
+        mLastStageNs[stage] = now - mLastMarkNs;
+        mLastMarkNs = now;
+    }
+
+    /**
+     * Records a stage duration measured by the caller, e.g. for work done outside beginFrame()/endFrame().
+     */
+    public void recordStage(int stage, long ns) {
+        mStages[stage].record(ns);
+        mLastStageNs[stage] = ns;
+    }
+
+    public void endFrame() {
+        long now = System.nanoTime();
+        mFrames.record(now - mFrameStartNs);
+        mLastFrameNs = now - mFrameStartNs;
+        mLastMarkNs = now;
+    }
+
+    /** Duration of the stage since the last beginFrame(), 0 if not recorded; for the recording thread */
+    public long lastStageNs(int stage) {
+        return mLastStageNs[stage];
+    }
+
+    /** Duration of the last frame; for the recording thread */
+    public long lastFrameNs() {
+        return mLastFrameNs;
+    }
+
+    /** A frame arrived but could not be processed, e.g. the camera delivered no image. */
+    public void frameDropped() {
+        mDropped = mDropped + 1;
+    }
+
+    /** A frame was deliberately not processed, e.g. while loading or to stay within the frame budget. */
+    public void frameSkipped() {
+        mSkipped = mSkipped + 1;
+    }
+
+    public long droppedFrames() {
+        return mDropped;
+    }
+
+    public long skippedFrames() {
+        return mSkipped;
+    }
+
+    /**
+     * Live histogram of a stage; read it from other threads only through copyTo() or its getters.
+     */
+    public LatencyHistogram stage(int stage) {
+        return mStages[stage];
+    }
+
+    /** Live histogram of whole frames, from beginFrame() to endFrame() */
+    public LatencyHistogram frames() {
+        return mFrames;
+    }
+
+    /**
+     * Copies the stage histograms into dst, which must have the same number of stages.
+     */
+    public void copyTo(PipelineStats dst) {
+        if (dst.mStages.length != mStages.length)
+            throw new IllegalArgumentException("Stage count " + dst.mStages.length + " != " + mStages.length);
+        for (int i = 0; i < mStages.length; i++)
+            mStages[i].copyTo(dst.mStages[i]);
+        mFrames.copyTo(dst.mFrames);
+        dst.mDropped = mDropped;
+        dst.mSkipped = mSkipped;
+    }
+
+    /**
+     * Consistent copy for reporting, allocates.
+     */
+    public PipelineStats snapshot() {
+        PipelineStats s = new PipelineStats(mStageNames);
+        copyTo(s);
+        return s;
+    }
+
+    /**
+     * Clears all histograms and counters; call it on the recording thread.
+     */
+    public void reset() {
+        for (LatencyHistogram h : mStages)
+            h.reset();
+        mFrames.reset();
+        mDropped = 0;
+        mSkipped = 0;
+    }
+
+    /**
+     * Writes one line per stage and one for whole frames, e.g. to a FileWriter.
+     */
+    public void dump(Appendable out) throws IOException {
+        for (int i = 0; i < mStages.length; i++)
+            out.append(mStageNames[i]).append(": ").append(mStages[i].toString()).append('\n');
+        out.append("frame: ").append(mFrames.toString())
+                .append(" dropped=").append(Long.toString(mDropped))
+                .append(" skipped=").append(Long.toString(mSkipped)).append('\n');
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            dump(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+}
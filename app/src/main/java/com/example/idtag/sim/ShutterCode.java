@@ -0,0 +1,77 @@
+package com.example.idtag.sim;
+
+/**
+ * Symbol sequence an LCD shutter repeats to transmit a tag ID: a preamble of five "on" symbols and
+ * one "off", followed by the ID bits MSB first in Manchester code (1 is on, off; 0 is off, on).
+ * Manchester data never has more than two equal symbols in a row, so the preamble is unambiguous
+ * in a cyclic stream and the code needs no clock recovery beyond the symbol rate.
+ */
+public final class ShutterCode {
+
+    public static final int PREAMBLE_LENGTH = 6;
+
+    private final int mIdBits;
+
+    public ShutterCode(int idBits) {
+        if (idBits < 1 || idBits > 30)
+            throw new IllegalArgumentException("idBits must be in [1, 30]: " + idBits);
+        mIdBits = idBits;
+    }
+
+    public int idBits() {
+        return mIdBits;
+    }
+
+    /** Symbols per repetition of the code */
+    public int length() {
+        return PREAMBLE_LENGTH + 2 * mIdBits;
+    }
+
+    /**
+     * Shutter state while symbol index is shown; index is taken modulo length().
+     */
+    public boolean symbol(int id, long index) {
+        int i = (int) Math.floorMod(index, (long) length());
+        if (i < PREAMBLE_LENGTH)
+            return i < PREAMBLE_LENGTH - 1;
+        int pair = (i - PREAMBLE_LENGTH) >> 1;
+        boolean bit = ((id >>> (mIdBits - 1 - pair)) & 1) != 0;
+        boolean first = ((i - PREAMBLE_LENGTH) & 1) == 0;
+        return bit == first;
+    }
+
+    /**
+     * Decodes the ID from at least one full repetition of received symbols, in time order and
+     * starting at any phase. The last complete code in the window wins.
+     * @return the ID, or -1 if no preamble followed by valid Manchester data was found
+     */
+    public int decode(boolean[] symbols, int from, int count) {
+        int len = length();
+        if (count < len)
+            return -1;
+        for (int start = from + count - len; start >= from; start--) {
+            if (!isPreamble(symbols, start))
+                continue;
+            int id = 0;
+            for (int b = 0; b < mIdBits; b++) {
+                boolean s0 = symbols[start + PREAMBLE_LENGTH + 2 * b];
+                boolean s1 = symbols[start + PREAMBLE_LENGTH + 2 * b + 1];
+                if (s0 == s1) {
+                    id = -1;
+                    break;
+                }
+                id = (id << 1) | (s0 ? 1 : 0);
+            }
+            if (id >= 0)
+                return id;
+        }
+        return -1;
+    }
+
+    private static boolean isPreamble(boolean[] s, int at) {
+        for (int i = 0; i < PREAMBLE_LENGTH - 1; i++)
+            if (!s[at + i])
+                return false;
+        return !s[at + PREAMBLE_LENGTH - 1];
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.idtag.sim;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic camera frames of retroreflective tags, for tests and benchmarks without a phone.
+ *
+ * A scene is fully defined by its Config: the same seed gives the same tags, distractors and noise,
+ * and frame f can be rendered in any order. Tags are discs that move in straight lines and bounce
+ * off the frame edges; their brightness follows the ShutterCode of their ID, one symbol every
+ * framesPerSymbol frames from a random phase. Lamps are soft discs that flicker with the mains,
+ * windows are bright rectangles. Edges are blurred, sensor noise is added and values above 255
+ * saturate, like an overexposed torch reflection.
+ *
+ * The ground truth (position, radius, ID and shutter state of every tag) is available per frame.
+ * Pure Java; one instance renders on one thread at a time.
+ */
+public final class SyntheticScene {
+
+    /**
+     * Scene parameters. Levels are in 8-bit units and may exceed 255 to saturate.
+     */
+    public static final class Config {
+        public int width = 640;
+        public int height = 480;
+        public long seed = 1;
+
+        public int tagCount = 3;
+        public int tagRadiusMin = 4;
+        public int tagRadiusMax = 10;
+        /** Largest tag speed in pixels per frame */
+        public double maxSpeed = 1.5;
+        public int idBits = 8;
+        public int framesPerSymbol = 2;
+        public double tagOnLevel = 320;
+        public double tagOffLevel = 70;
+
+        public int lampCount = 1;
+        public int lampRadius = 24;
+        public double lampLevel = 300;
+        /** Relative brightness drop of lamps at the trough of the mains flicker */
+        public double lampFlicker = 0.15;
+        /** Apparent flicker frequency after aliasing with the frame rate, in cycles per frame */
+        public double lampFlickerPerFrame = 1 / 3.3;
+        public int windowCount = 1;
+        public double windowLevel = 215;
+
+        public double background = 30;
+        /** Width of the soft edge of tags and lamps in pixels, 0 for hard edges */
+        public double blur = 1.0;
+        /** Standard deviation of the additive sensor noise */
+        public double noiseSigma = 4;
+    }
+
+    private final Config mConfig;
+    private final ShutterCode mCode;
+
+    private final int[] mTagId;
+    private final double[] mTagX0;
+    private final double[] mTagY0;
+    private final double[] mTagVx;
+    private final double[] mTagVy;
+    private final int[] mTagRadius;
+    private final int[] mTagPhase;
+
+    private final double[] mLampX;
+    private final double[] mLampY;
+    private final double[] mLampPhase;
+    private final int[] mWindows; // x, y, w, h
+
+    // one frame before noise and saturation, reused
+    private float[] mLevels;
+    private byte[] mLuma;
+    private final Noise mNoise = new Noise();
+
+    public SyntheticScene(Config config) {
+        if (config.width <= 0 || config.height <= 0)
+            throw new IllegalArgumentException("Bad frame size " + config.width + "x" + config.height);
+        if (config.tagRadiusMin < 1 || config.tagRadiusMax < config.tagRadiusMin)
+            throw new IllegalArgumentException("Bad tag radius range " + config.tagRadiusMin + ".." + config.tagRadiusMax);
+        if (config.tagCount > (1 << config.idBits))
+            throw new IllegalArgumentException(config.tagCount + " tags do not fit in " + config.idBits + " ID bits");
+        if (config.framesPerSymbol < 1)
+            throw new IllegalArgumentException("framesPerSymbol must be at least 1: " + config.framesPerSymbol);
+        mConfig = config;
+        mCode = new ShutterCode(config.idBits);
+        Random random = new Random(config.seed);
+
+        int n = config.tagCount;
+        mTagId = new int[n];
+        mTagX0 = new double[n];
+        mTagY0 = new double[n];
+        mTagVx = new double[n];
+        mTagVy = new double[n];
+        mTagRadius = new int[n];
+        mTagPhase = new int[n];
+        for (int i = 0; i < n; i++) {
+            int id;
+            do {
+                id = random.nextInt(1 << config.idBits);
+            } while (indexOf(mTagId, i, id) >= 0);
+            mTagId[i] = id;
+            mTagRadius[i] = config.tagRadiusMin + random.nextInt(config.tagRadiusMax - config.tagRadiusMin + 1);
+            mTagX0[i] = random.nextDouble() * config.width;
+            mTagY0[i] = random.nextDouble() * config.height;
+            double angle = random.nextDouble() * 2 * Math.PI, speed = random.nextDouble() * config.maxSpeed;
+            mTagVx[i] = Math.cos(angle) * speed;
+            mTagVy[i] = Math.sin(angle) * speed;
+            mTagPhase[i] = random.nextInt(mCode.length() * config.framesPerSymbol);
+        }
+
+        mLampX = new double[config.lampCount];
+        mLampY = new double[config.lampCount];
+        mLampPhase = new double[config.lampCount];
+        for (int i = 0; i < config.lampCount; i++) {
+            mLampX[i] = random.nextDouble() * config.width;
+            mLampY[i] = random.nextDouble() * config.height;
+            mLampPhase[i] = random.nextDouble();
+        }
+        mWindows = new int[config.windowCount * 4];
+        for (int i = 0; i < config.windowCount; i++) {
+            int w = config.width / 8 + random.nextInt(config.width / 4 + 1);
+            int h = config.height / 8 + random.nextInt(config.height / 4 + 1);
+            mWindows[i * 4] = random.nextInt(Math.max(1, config.width - w));
+            mWindows[i * 4 + 1] = random.nextInt(Math.max(1, config.height - h));
+            mWindows[i * 4 + 2] = w;
+            mWindows[i * 4 + 3] = h;
+        }
+    }
+
+    public Config config() {
+        return mConfig;
+    }
+
+    public int width() {
+        return mConfig.width;
+    }
+
+    public int height() {
+        return mConfig.height;
+    }
+
+    public ShutterCode code() {
+        return mCode;
+    }
+
+    public int tagCount() {
+        return mTagId.length;
+    }
+
+    public int tagId(int tag) {
+        return mTagId[tag];
+    }
+
+    public int tagRadius(int tag) {
+        return mTagRadius[tag];
+    }
+
+    /** Center of the tag in frame f, in pixels */
+    public double tagX(int tag, long frame) {
+        return bounce(mTagX0[tag] + mTagVx[tag] * frame, mTagRadius[tag], mConfig.width - 1 - mTagRadius[tag]);
+    }
+
+    public double tagY(int tag, long frame) {
+        return bounce(mTagY0[tag] + mTagVy[tag] * frame, mTagRadius[tag], mConfig.height - 1 - mTagRadius[tag]);
+    }
+
+    /** Index of the ShutterCode symbol the tag shows in frame f */
+    public long tagSymbol(int tag, long frame) {
+        return Math.floorDiv(frame + mTagPhase[tag], (long) mConfig.framesPerSymbol);
+    }
+
+    /** Whether the shutter of the tag is open (bright) in frame f */
+    public boolean tagLit(int tag, long frame) {
+        return mCode.symbol(mTagId[tag], tagSymbol(tag, frame));
+    }
+
+    /**
+     * Renders the luma plane of frame f into y, row-major without padding.
+     */
+    public void renderY(long frame, byte[] y) {
+        int w = mConfig.width, h = mConfig.height;
+        if (y.length < w * h)
+            throw new IllegalArgumentException("Buffer too small: " + y.length + " < " + w * h);
+        float[] levels = renderLevels(frame);
+        Noise noise = mNoise;
+        noise.seed(mConfig.seed * 0x9E3779B97F4A7C15L + frame);
+        float sigma = (float) mConfig.noiseSigma;
+        for (int i = 0; i < w * h; i++) {
+            float v = levels[i] + (sigma > 0 ? sigma * noise.gaussian() : 0);
+            y[i] = (byte) (v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f));
+        }
+    }
+
+    /**
+     * Renders frame f as opaque gray RGBA into rgba, 4 bytes per pixel.
+     */
+    public void renderRgba(long frame, byte[] rgba) {
+        int n = mConfig.width * mConfig.height;
+        if (rgba.length < n * 4)
+            throw new IllegalArgumentException("Buffer too small: " + rgba.length + " < " + n * 4);
+        if (mLuma == null || mLuma.length != n)
+            mLuma = new byte[n];
+        byte[] y = mLuma;
+        renderY(frame, y);
+        for (int i = 0; i < n; i++) {
+            byte v = y[i];
+            rgba[i * 4] = v;
+            rgba[i * 4 + 1] = v;
+            rgba[i * 4 + 2] = v;
+            rgba[i * 4 + 3] = (byte) 255;
+        }
+    }
+
+    private float[] renderLevels(long frame) {
+        Config c = mConfig;
+        int w = c.width, h = c.height;
+        if (mLevels == null || mLevels.length != w * h)
+            mLevels = new float[w * h];
+        float[] levels = mLevels;
+
+        // background with a mild vertical gradient
+        for (int yy = 0; yy < h; yy++) {
+            float v = (float) (c.background * (0.8 + 0.4 * yy / h));
+            Arrays.fill(levels, yy * w, (yy + 1) * w, v);
+        }
+        for (int i = 0; i < mWindows.length; i += 4) {
+            int x0 = mWindows[i], y0 = mWindows[i + 1], x1 = x0 + mWindows[i + 2], y1 = y0 + mWindows[i + 3];
+            for (int yy = y0; yy < y1; yy++)
+                for (int xx = x0; xx < x1; xx++)
+                    levels[yy * w + xx] = (float) c.windowLevel;
+        }
+        for (int i = 0; i < mLampX.length; i++) {
+            double flicker = Math.abs(Math.sin(Math.PI * (frame * c.lampFlickerPerFrame + mLampPhase[i])));
+            double level = c.lampLevel * (1 - c.lampFlicker * (1 - flicker));
+            disc(levels, mLampX[i], mLampY[i], c.lampRadius, level);
+        }
+        for (int t = 0; t < mTagId.length; t++) {
+            double level = tagLit(t, frame) ? c.tagOnLevel : c.tagOffLevel;
+            disc(levels, tagX(t, frame), tagY(t, frame), mTagRadius[t], level);
+        }
+        return levels;
+    }
+
+    // raises the pixels of a disc with a soft edge of width blur to at least level
+    private void disc(float[] levels, double cx, double cy, double r, double level) {
+        int w = mConfig.width, h = mConfig.height;
+        double blur = mConfig.blur, reach = r + blur;
+        int x0 = Math.max(0, (int) Math.floor(cx - reach)), x1 = Math.min(w - 1, (int) Math.ceil(cx + reach));
+        int y0 = Math.max(0, (int) Math.floor(cy - reach)), y1 = Math.min(h - 1, (int) Math.ceil(cy + reach));
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                double d = Math.sqrt((x - cx) * (x - cx) + (y - cy) * (y - cy)) - r;
+                double a = blur > 0 ? Math.min(1, Math.max(0, 0.5 - d / (2 * blur))) : (d <= 0 ? 1 : 0);
+                if (a <= 0)
+                    continue;
+                int i = y * w + x;
+                float v = (float) (levels[i] + (level - levels[i]) * a);
+                if (v > levels[i])
+                    levels[i] = v;
+            }
+        }
+    }
+
+    // position folded back into [lo, hi], as if bouncing off the edges
+    private static double bounce(double p, double lo, double hi) {
+        double span = hi - lo;
+        if (span <= 0)
+            return lo;
+        double q = (p - lo) % (2 * span);
+        if (q < 0)
+            q += 2 * span;
+        return lo + (q <= span ? q : 2 * span - q);
+    }
+
+    private static int indexOf(int[] a, int n, int v) {
+        for (int i = 0; i < n; i++)
+            if (a[i] == v)
+                return i;
+        return -1;
+    }
+
+    /**
+     * xorshift64* with an Irwin-Hall approximation of the normal distribution, several times
+     * faster than Random.nextGaussian() and good enough for sensor noise.
+     */
+    private static final class Noise {
+        private long mState;
+
+        void seed(long seed) {
+            mState = seed == 0 ? 0x2545F4914F6CDD1DL : seed;
+        }
+
+        float gaussian() {
+            long x = mState;
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            mState = x;
+            long r = x * 0x2545F4914F6CDD1DL;
+            // four 16-bit uniforms, sum has mean 2 and variance 1/3 in units of 65536
+            float sum = (r & 0xffff) + ((r >>> 16) & 0xffff) + ((r >>> 32) & 0xffff) + (r >>> 48);
+            return (sum / 65536f - 2f) * 1.7320508f;
+        }
+    }
+}
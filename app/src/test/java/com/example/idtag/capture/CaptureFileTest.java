@@ -0,0 +1,307 @@
+package com.example.idtag.capture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CaptureWriter, CaptureReader and FrameRecorder: round trips with small chunks and windows so that
+ * records cross mapping boundaries, files cut short by a crash, and dropped frame counting.
+ */
+public class CaptureFileTest {
+
+    // odd sizes, so that payloads need padding and records straddle 4 KiB chunks
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+    private static final long SMALL_CHUNK = 4096;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void roundTripY8AndI420AcrossChunksAndWindows() throws IOException {
+        File file = folder.newFile("round.idcap");
+        int frames = 40;
+        FrameInfo[] infos = new FrameInfo[frames];
+        byte[][] payloads = new byte[frames][];
+        try (CaptureWriter writer = new CaptureWriter(file, SMALL_CHUNK)) {
+            for (int i = 0; i < frames; i++) {
+                infos[i] = frame(i, i % 3 == 0 ? FrameInfo.FORMAT_I420 : FrameInfo.FORMAT_Y8);
+                payloads[i] = randomBytes(infos[i].payloadBytes());
+                writer.write(infos[i], payloads[i], 0);
+            }
+            assertEquals(frames, writer.frames());
+        }
+        assertTrue("records cross chunks", file.length() > 4 * SMALL_CHUNK);
+
+        for (long window : new long[] {CaptureWriter.RECORD_HEADER_BYTES, 1000, SMALL_CHUNK, 1 << 20}) {
+            try (CaptureReader reader = new CaptureReader(file, window)) {
+                assertEquals(frames, readAll(reader, infos, payloads));
+                reader.rewind();
+                assertEquals("after rewind, window " + window, frames, readAll(reader, infos, payloads));
+            }
+        }
+    }
+
+    @Test
+    public void payloadAtAnOffset() throws IOException {
+        File file = folder.newFile("offset.idcap");
+        FrameInfo info = frame(7, FrameInfo.FORMAT_Y8);
+        byte[] data = randomBytes(info.payloadBytes() + 5);
+        try (CaptureWriter writer = new CaptureWriter(file, SMALL_CHUNK)) {
+            writer.write(info, data, 5);
+        }
+        try (CaptureReader reader = new CaptureReader(file)) {
+            FrameInfo read = new FrameInfo();
+            assertTrue(reader.next(read));
+            byte[] dst = new byte[info.payloadBytes() + 3];
+            reader.readPayload(dst, 3);
+            for (int i = 0; i < info.payloadBytes(); i++)
+                assertEquals(data[5 + i], dst[3 + i]);
+        }
+    }
+
+    @Test
+    public void fileCutMidPayloadEndsAtLastCompleteRecord() throws IOException {
+        File file = folder.newFile("payload.idcap");
+        int frames = 10;
+        FrameInfo[] infos = new FrameInfo[frames];
+        byte[][] payloads = writeY8(file, infos, frames);
+        long recordBytes = CaptureWriter.RECORD_HEADER_BYTES + ((infos[0].payloadBytes() + 7) & ~7);
+        long lastRecord = CaptureWriter.FILE_HEADER_BYTES + (frames - 1) * recordBytes;
+        truncate(file, lastRecord + CaptureWriter.RECORD_HEADER_BYTES + 100);
+        try (CaptureReader reader = new CaptureReader(file, SMALL_CHUNK)) {
+            assertEquals(frames - 1, readAll(reader, infos, payloads));
+        }
+    }
+
+    @Test
+    public void fileCutMidHeaderEndsAtLastCompleteRecord() throws IOException {
+        File file = folder.newFile("header.idcap");
+        int frames = 10;
+        FrameInfo[] infos = new FrameInfo[frames];
+        byte[][] payloads = writeY8(file, infos, frames);
+        long recordBytes = CaptureWriter.RECORD_HEADER_BYTES + ((infos[0].payloadBytes() + 7) & ~7);
+        long lastRecord = CaptureWriter.FILE_HEADER_BYTES + (frames - 1) * recordBytes;
+        for (long cut : new long[] {lastRecord + CaptureWriter.RECORD_HEADER_BYTES - 1, lastRecord + 2}) {
+            truncate(file, cut);
+            try (CaptureReader reader = new CaptureReader(file, SMALL_CHUNK)) {
+                assertEquals("cut at " + cut, frames - 1, readAll(reader, infos, payloads));
+            }
+        }
+    }
+
+    @Test
+    public void unclosedFileEndsAtTheZeroesPastTheLastRecord() throws IOException {
+        File file = folder.newFile("crash.idcap");
+        int frames = 6;
+        FrameInfo[] infos = new FrameInfo[frames];
+        byte[][] payloads = new byte[frames][];
+        CaptureWriter writer = new CaptureWriter(file, SMALL_CHUNK);
+        try {
+            for (int i = 0; i < frames; i++) {
+                infos[i] = frame(i, FrameInfo.FORMAT_Y8);
+                payloads[i] = randomBytes(infos[i].payloadBytes());
+                writer.write(infos[i], payloads[i], 0);
+            }
+            writer.flush();
+            // as after a crash: the file still has the length of the mapped chunks
+            assertTrue(file.length() > writer.length());
+            try (CaptureReader reader = new CaptureReader(file, SMALL_CHUNK)) {
+                assertEquals(frames, readAll(reader, infos, payloads));
+            }
+        } finally {
+            writer.close();
+        }
+        assertEquals(writer.length(), file.length());
+    }
+
+    @Test(expected = IOException.class)
+    public void notACaptureFile() throws IOException {
+        File file = folder.newFile("other.bin");
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.write(new byte[64]);
+        }
+        new CaptureReader(file).close();
+    }
+
+    @Test
+    public void recorderWritesWhatItDoesNotDrop() throws IOException {
+        File file = folder.newFile("recorder.idcap");
+        int offered = 500;
+        byte[][] planes = new byte[offered][];
+        FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT, FrameInfo.FORMAT_Y8, 2);
+        FrameInfo info = new FrameInfo();
+        int accepted = 0;
+        for (int i = 0; i < offered; i++) {
+            planes[i] = randomBytes(WIDTH * HEIGHT);
+            info.frameNumber = i;
+            if (recorder.offerY(ByteBuffer.wrap(planes[i]), WIDTH, info))
+                accepted++;
+        }
+        recorder.close();
+        assertEquals(accepted, recorder.recordedFrames());
+        assertEquals(offered - accepted, recorder.droppedFrames());
+
+        // the frames that were not dropped, in order and intact
+        try (CaptureReader reader = new CaptureReader(file)) {
+            FrameInfo read = new FrameInfo();
+            byte[] payload = new byte[WIDTH * HEIGHT];
+            long last = -1;
+            int frames = 0;
+            while (reader.next(read)) {
+                assertTrue(read.frameNumber > last);
+                last = read.frameNumber;
+                reader.readPayload(payload, 0);
+                assertArrayEquals(planes[(int) read.frameNumber], payload);
+                frames++;
+            }
+            assertEquals(accepted, frames);
+        }
+    }
+
+    @Test
+    public void recorderDropsWithoutAFreeBuffer() throws IOException {
+        File file = folder.newFile("busy.idcap");
+        // one large buffer: right after a commit the writer still holds it
+        int side = 1024;
+        FrameRecorder recorder = new FrameRecorder(file, side, side, FrameInfo.FORMAT_Y8, 1);
+        FrameInfo info = new FrameInfo();
+        int attempts = 200, committed = 0, dropped = 0;
+        for (int i = 0; i < attempts; i++) {
+            byte[] buffer = recorder.claim();
+            if (buffer == null) {
+                dropped++;
+                assertEquals(dropped, recorder.droppedFrames());
+                continue;
+            }
+            info.frameNumber = i;
+            recorder.commit(buffer, info);
+            committed++;
+        }
+        recorder.close();
+        assertTrue("no frame was dropped", dropped > 0);
+        assertEquals(committed, recorder.recordedFrames());
+        assertEquals(dropped, recorder.droppedFrames());
+    }
+
+    @Test
+    public void recorderCountsAbandonedAndLateFramesAsDropped() throws IOException {
+        File file = folder.newFile("drops.idcap");
+        FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT, FrameInfo.FORMAT_Y8, 1);
+        byte[] buffer = recorder.claim();
+        assertTrue(buffer != null);
+        recorder.abandon(buffer); // a failed copy is a dropped frame
+        assertEquals(1, recorder.droppedFrames());
+
+        buffer = recorder.claim(); // the abandoned buffer is free again
+        assertTrue(buffer != null);
+        recorder.commit(buffer, frame(1, FrameInfo.FORMAT_Y8));
+        recorder.close();
+        // closed: no buffer is handed out any more
+        assertNull(recorder.claim());
+        assertFalse(recorder.offerY(ByteBuffer.allocate(WIDTH * HEIGHT), WIDTH, new FrameInfo()));
+        assertEquals(3, recorder.droppedFrames());
+        assertEquals(1, recorder.recordedFrames());
+    }
+
+    @Test
+    public void recorderCopiesStridedI420Planes() throws IOException {
+        File file = folder.newFile("yuv.idcap");
+        int cw = (WIDTH + 1) / 2, ch = (HEIGHT + 1) / 2;
+        int yStride = WIDTH + 3, uvStride = 2 * cw + 4;
+        byte[] y = randomBytes(yStride * HEIGHT);
+        // interleaved chroma as in NV21/NV12 camera planes: pixel stride 2, U and V one byte apart
+        byte[] uv = randomBytes(uvStride * ch + 1);
+        FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT, FrameInfo.FORMAT_I420, 1);
+        FrameInfo info = frame(5, FrameInfo.FORMAT_I420);
+        ByteBuffer u = ByteBuffer.wrap(uv), v = ByteBuffer.wrap(uv, 1, uv.length - 1).slice();
+        assertTrue(recorder.offerYuv(ByteBuffer.wrap(y), yStride, u, v, uvStride, 2, info));
+        recorder.close();
+
+        try (CaptureReader reader = new CaptureReader(file)) {
+            FrameInfo read = new FrameInfo();
+            assertTrue(reader.next(read));
+            assertEquals(FrameInfo.FORMAT_I420, read.format);
+            byte[] payload = new byte[reader.payloadBytes()];
+            reader.readPayload(payload, 0);
+            for (int r = 0; r < HEIGHT; r++)
+                for (int c = 0; c < WIDTH; c++)
+                    assertEquals(y[r * yStride + c], payload[r * WIDTH + c]);
+            int uStart = WIDTH * HEIGHT, vStart = uStart + cw * ch;
+            for (int r = 0; r < ch; r++) {
+                for (int c = 0; c < cw; c++) {
+                    assertEquals(uv[r * uvStride + 2 * c], payload[uStart + r * cw + c]);
+                    assertEquals(uv[r * uvStride + 2 * c + 1], payload[vStart + r * cw + c]);
+                }
+            }
+            assertFalse(reader.next(read));
+        }
+    }
+
+    private byte[][] writeY8(File file, FrameInfo[] infos, int frames) throws IOException {
+        byte[][] payloads = new byte[frames][];
+        try (CaptureWriter writer = new CaptureWriter(file, SMALL_CHUNK)) {
+            for (int i = 0; i < frames; i++) {
+                infos[i] = frame(i, FrameInfo.FORMAT_Y8);
+                payloads[i] = randomBytes(infos[i].payloadBytes());
+                writer.write(infos[i], payloads[i], 0);
+            }
+        }
+        return payloads;
+    }
+
+    // reads to the end, checking every frame against the expected ones
+    private static int readAll(CaptureReader reader, FrameInfo[] infos, byte[][] payloads) throws IOException {
+        FrameInfo read = new FrameInfo();
+        int n = 0;
+        while (reader.next(read)) {
+            FrameInfo expected = infos[n];
+            assertEquals(expected.toString(), read.toString());
+            assertEquals(expected.torchOn, read.torchOn);
+            byte[] payload = new byte[reader.payloadBytes()];
+            reader.readPayload(payload, 0);
+            assertArrayEquals("frame " + n, payloads[n], payload);
+            n++;
+        }
+        return n;
+    }
+
+    private static FrameInfo frame(int i, int format) {
+        FrameInfo info = new FrameInfo();
+        info.frameNumber = 1000 + i;
+        info.timestampNs = 5_000_000_000L + i * 33_333_333L;
+        info.exposureNs = i % 4 == 0 ? -1 : 8_000_000L + i;
+        info.torchOn = i % 2 == 1;
+        info.width = WIDTH + (format == FrameInfo.FORMAT_I420 ? 1 : 0);
+        info.height = HEIGHT;
+        info.format = format;
+        return info;
+    }
+
+    private byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        random.nextBytes(b);
+        return b;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.idtag.detect;
+
+import com.example.idtag.capture.CaptureReader;
+import com.example.idtag.capture.FrameInfo;
+import com.example.idtag.sim.SyntheticScene;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Accuracy and throughput of the TagPipeline on synthetic scenes and, when available, recorded
+ * captures; fails when a change makes it worse than regression_baseline.properties allows.
+ *
+ * Per synthetic scene it scores tag detection precision and recall per frame (a modulated track
+ * within radius + 3 pixels of a tag), the share of tags whose ID is decoded, wrong IDs and the
+ * mean frame of the first correct decode. Speed is the time spent in TagPipeline.process()
+ * divided by that of a plain pass over the same frames, so the baseline holds on any machine.
+ *
+ * Recorded captures are read from the directory in the idtag.corpus system property (Gradle passes
+ * -Pidtag.corpus=dir through): every name.idcap next to a name.ids file with the expected IDs, one
+ * per line. Without positions they are scored on IDs only. The test is skipped without the property.
+ *
+ * The measured values are printed in the format of the baseline file, to update it after an
+ * intended change. idtag.regression.speed=false skips the speed check on noisy machines.
+ */
+public class PipelineRegressionTest {
+
+    private static final double MAX_ACCURACY_DROP = 0.02;
+    private static final double MAX_FIRST_DECODE_INCREASE = 1.10;
+    private static final double MAX_SLOWDOWN = 1.5;
+    private static final int MATCH_MARGIN = 3;
+
+    private static Properties baseline;
+
+    @BeforeClass
+    public static void loadBaseline() throws IOException {
+        baseline = new Properties();
+        try (InputStream in = PipelineRegressionTest.class.getResourceAsStream("regression_baseline.properties")) {
+            assertNotNull("regression_baseline.properties not found", in);
+            baseline.load(in);
+        }
+    }
+
+    @Test
+    public void syntheticScenes() {
+        List<String> failures = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+        long pipelineNs = 0, referenceNs = 0;
+
+        // the JIT warms up on a run that is not scored
+        runScene(new Scene("warmup", 120), new Score());
+        for (Scene scene : scenes()) {
+            for (long seed = 1; seed <= 3; seed++) {
+                scene.config.seed = seed;
+                String name = scene.name + ".seed" + seed;
+                Score score = runScene(scene, new Score());
+                pipelineNs += score.pipelineNs;
+                referenceNs += score.referenceNs;
+                score.report(name, report);
+                score.check(name, failures);
+            }
+        }
+        double cost = (double) pipelineNs / referenceNs;
+        report.append("costRatio=").append(round(cost)).append('\n');
+        System.out.print(report);
+
+        if (!"false".equals(System.getProperty("idtag.regression.speed"))) {
+            double base = Double.parseDouble(baseline.getProperty("costRatio"));
+            if (cost > base * MAX_SLOWDOWN)
+                failures.add("costRatio " + round(cost) + " > " + MAX_SLOWDOWN + " x " + base);
+        }
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+
+    @Test
+    public void recordedCaptures() throws IOException {
+        String corpus = System.getProperty("idtag.corpus");
+        assumeTrue("-Didtag.corpus not set", corpus != null);
+        File[] files = new File(corpus).listFiles((dir, name) -> name.endsWith(".idcap"));
+        assertNotNull("Not a directory: " + corpus, files);
+
+        List<String> failures = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+        for (File file : files) {
+            File ids = new File(file.getPath().replaceAll("\\.idcap$", ".ids"));
+            if (!ids.exists())
+                continue;
+            Set<Integer> expected = new HashSet<>();
+            for (String line : Files.readAllLines(ids.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    expected.add(Integer.parseInt(line));
+            }
+            Score score = runCapture(file, expected);
+            String name = "recorded." + file.getName().replaceAll("\\.idcap$", "");
+            score.report(name, report);
+            // a new capture has no baseline yet, it must at least decode something
+            if (baseline.getProperty(name + ".idRecall") != null)
+                score.check(name, failures);
+            else if (score.idRecall() == 0)
+                failures.add(name + ": no ID decoded");
+        }
+        System.out.print(report);
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+
+    private static List<Scene> scenes() {
+        List<Scene> scenes = new ArrayList<>();
+        scenes.add(new Scene("default", 240));
+
+        Scene crowded = new Scene("crowded", 240);
+        crowded.config.tagCount = 8;
+        crowded.config.lampCount = 3;
+        scenes.add(crowded);
+
+        Scene fast = new Scene("fast", 240);
+        fast.config.maxSpeed = 4;
+        scenes.add(fast);
+
+        Scene small = new Scene("small", 240);
+        small.config.tagRadiusMin = 2;
+        small.config.tagRadiusMax = 4;
+        scenes.add(small);
+
+        Scene noisy = new Scene("noisy", 240);
+        noisy.config.noiseSigma = 12;
+        noisy.config.tagOnLevel = 220;
+        noisy.config.lampFlicker = 0.4;
+        scenes.add(noisy);
+        return scenes;
+    }
+
+    private static final class Scene {
+        final String name;
+        final int frames;
+        final SyntheticScene.Config config = new SyntheticScene.Config();
+
+        Scene(String name, int frames) {
+            this.name = name;
+            this.frames = frames;
+        }
+    }
+
+    private static Score runScene(Scene s, Score score) {
+        SyntheticScene.Config config = s.config;
+        SyntheticScene scene = new SyntheticScene(config);
+        TagPipeline pipeline = new TagPipeline(pipelineConfig(config.idBits, config.framesPerSymbol));
+        int w = config.width, h = config.height, frames = s.frames;
+        byte[] y = new byte[w * h];
+        int tags = scene.tagCount();
+        long[] firstDecode = new long[tags];
+        Arrays.fill(firstDecode, -1);
+        boolean[] matched = new boolean[tags];
+
+        for (int f = 0; f < frames; f++) {
+            scene.renderY(f, y);
+            score.reference(y);
+            long start = System.nanoTime();
+            pipeline.process(f, y, w, h);
+            score.pipelineNs += System.nanoTime() - start;
+
+            // detection: greedy nearest match of reported tracks to tags
+            Arrays.fill(matched, false);
+            for (TagTracker.Track t : pipeline.tracks()) {
+                if (!t.isModulated() || t.missed() > 0)
+                    continue;
+                score.reported++;
+                int tag = nearestTag(scene, f, t.x(), t.y(), matched);
+                if (tag < 0)
+                    continue;
+                matched[tag] = true;
+                score.truePositives++;
+                if (t.decodedFrame() == f) {
+                    if (t.decodedId() == scene.tagId(tag)) {
+                        if (firstDecode[tag] < 0)
+                            firstDecode[tag] = f;
+                    } else {
+                        score.wrongIds++;
+                    }
+                }
+            }
+            score.visible += tags;
+        }
+        for (int tag = 0; tag < tags; tag++) {
+            score.tags++;
+            if (firstDecode[tag] >= 0) {
+                score.decoded++;
+                score.firstDecodeFrames += firstDecode[tag];
+            } else {
+                score.firstDecodeFrames += frames;
+            }
+        }
+        return score;
+    }
+
+    private static Score runCapture(File file, Set<Integer> expected) throws IOException {
+        Score score = new Score();
+        Set<Integer> found = new HashSet<>();
+        FrameInfo info = new FrameInfo();
+        TagPipeline pipeline = null;
+        byte[] y = null;
+        long frames = 0, firstDecodeSum = 0;
+        try (CaptureReader reader = new CaptureReader(file)) {
+            while (reader.next(info)) {
+                if (y == null || y.length < reader.payloadBytes())
+                    y = new byte[reader.payloadBytes()];
+                reader.readPayload(y, 0);
+                if (pipeline == null)
+                    pipeline = new TagPipeline(pipelineConfig(8, 2));
+                score.reference(y);
+                long start = System.nanoTime();
+                pipeline.process(frames, y, info.width, info.height); // Y8 and the Y plane of I420
+                score.pipelineNs += System.nanoTime() - start;
+                for (TagTracker.Track t : pipeline.tracks()) {
+                    if (t.decodedFrame() != frames)
+                        continue;
+                    if (!expected.contains(t.decodedId()))
+                        score.wrongIds++;
+                    else if (found.add(t.decodedId()))
+                        firstDecodeSum += frames;
+                }
+                frames++;
+            }
+        }
+        score.tags = expected.size();
+        score.decoded = found.size();
+        score.firstDecodeFrames = firstDecodeSum + (long) (expected.size() - found.size()) * frames;
+        return score;
+    }
+
+    private static TagPipeline.Config pipelineConfig(int idBits, int framesPerSymbol) {
+        TagPipeline.Config config = new TagPipeline.Config();
+        config.tracker.idBits = idBits;
+        config.tracker.framesPerSymbol = framesPerSymbol;
+        return config;
+    }
+
+    private static int nearestTag(SyntheticScene scene, long frame, float x, float y, boolean[] taken) {
+        int best = -1;
+        double bestD2 = Double.MAX_VALUE;
+        for (int tag = 0; tag < scene.tagCount(); tag++) {
+            if (taken[tag])
+                continue;
+            double dx = scene.tagX(tag, frame) - x, dy = scene.tagY(tag, frame) - y;
+            double d2 = dx * dx + dy * dy, r = scene.tagRadius(tag) + MATCH_MARGIN;
+            if (d2 <= r * r && d2 < bestD2) {
+                bestD2 = d2;
+                best = tag;
+            }
+        }
+        return best;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000) / 1000.0;
+    }
+
+    private static final class Score {
+        long visible, reported, truePositives;
+        long tags, decoded, wrongIds, firstDecodeFrames;
+        long pipelineNs, referenceNs;
+        int sink;
+
+        // the reference workload: one read of every pixel, as cheap as a frame pass gets
+        void reference(byte[] y) {
+            long start = System.nanoTime();
+            int count = 0;
+            for (byte b : y)
+                count += (b & 0xff) >= 50 ? 1 : 0;
+            sink += count;
+            referenceNs += System.nanoTime() - start;
+        }
+
+        double precision() {
+            return reported == 0 ? 1 : (double) truePositives / reported;
+        }
+
+        double recall() {
+            return visible == 0 ? 1 : (double) truePositives / visible;
+        }
+
+        double idRecall() {
+            return tags == 0 ? 1 : (double) decoded / tags;
+        }
+
+        double firstDecode() {
+            return tags == 0 ? 0 : (double) firstDecodeFrames / tags;
+        }
+
+        void report(String name, StringBuilder sb) {
+            if (visible > 0) {
+                sb.append(name).append(".precision=").append(round(precision())).append('\n');
+                sb.append(name).append(".recall=").append(round(recall())).append('\n');
+            }
+            sb.append(name).append(".idRecall=").append(round(idRecall())).append('\n');
+            sb.append(name).append(".wrongIds=").append(wrongIds).append('\n');
+            sb.append(name).append(".firstDecode=").append(round(firstDecode())).append('\n');
+        }
+
+        void check(String name, List<String> failures) {
+            if (visible > 0) {
+                atLeast(name + ".precision", precision(), failures);
+                atLeast(name + ".recall", recall(), failures);
+            }
+            atLeast(name + ".idRecall", idRecall(), failures);
+            String wrong = baseline.getProperty(name + ".wrongIds");
+            if (wrong != null && wrongIds > Long.parseLong(wrong))
+                failures.add(name + ".wrongIds " + wrongIds + " > " + wrong);
+            String first = baseline.getProperty(name + ".firstDecode");
+            if (first != null && firstDecode() > Double.parseDouble(first) * MAX_FIRST_DECODE_INCREASE)
+                failures.add(name + ".firstDecode " + round(firstDecode()) + " > " + MAX_FIRST_DECODE_INCREASE + " x " + first);
+        }
+
+        private static void atLeast(String key, double value, List<String> failures) {
+            String base = baseline.getProperty(key);
+            if (base == null) {
+                failures.add(key + " has no baseline");
+                return;
+            }
+            if (value < Double.parseDouble(base) - MAX_ACCURACY_DROP)
+                failures.add(key + " " + round(value) + " < " + base + " - " + MAX_ACCURACY_DROP);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.idtag.detect;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RunMask and BlobDetector.label() against straightforward per-pixel code on random masks, with
+ * odd and even kernels so that the anchor and border rules of Imgproc.dilate()/erode() are covered.
+ */
+public class RunMaskTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void thresholdAndRasterize() {
+        for (int t = 0; t < 50; t++) {
+            int w = 1 + random.nextInt(70), h = 1 + random.nextInt(30), stride = w + random.nextInt(9);
+            byte[] y = randomPlane(w, h);
+            ByteBuffer buf = ByteBuffer.allocateDirect(stride * h + 3);
+            for (int r = 0; r < h; r++)
+                for (int c = 0; c < w; c++)
+                    buf.put(3 + r * stride + c, y[r * w + c]);
+            byte[] expected = denseThreshold(y, 128);
+
+            RunMask mask = new RunMask();
+            mask.threshold(y, w, h, 128);
+            byte[] actual = new byte[w * h];
+            mask.rasterize(actual);
+            assertArrayEquals(expected, actual);
+            assertEquals(count(expected), mask.area());
+
+            mask.threshold(buf, 3, stride, w, h, 128);
+            mask.rasterize(actual);
+            assertArrayEquals(expected, actual);
+
+            ByteBuffer out = ByteBuffer.allocateDirect(stride * h);
+            for (int i = 0; i < out.limit(); i++)
+                out.put(i, (byte) 7);
+            mask.rasterize(out, 0, stride, true);
+            for (int r = 0; r < h; r++)
+                for (int c = 0; c < w; c++)
+                    assertEquals(expected[r * w + c], out.get(r * stride + c));
+        }
+    }
+
+    @Test
+    public void morphology() {
+        for (int t = 0; t < 200; t++) {
+            int w = 1 + random.nextInt(50), h = 1 + random.nextInt(30);
+            int kw = 1 + random.nextInt(8), kh = 1 + random.nextInt(8);
+            byte[] dense = denseThreshold(randomPlane(w, h), 128);
+            RunMask mask = new RunMask(), dst = new RunMask();
+            mask.threshold(dense, w, h, 128);
+            byte[] actual = new byte[w * h];
+            String where = w + "x" + h + " kernel " + kw + "x" + kh;
+
+            mask.dilate(kw, kh, dst);
+            dst.rasterize(actual);
+            assertArrayEquals("dilate " + where, denseMorph(dense, w, h, kw, kh, true), actual);
+
+            mask.erode(kw, kh, dst);
+            dst.rasterize(actual);
+            assertArrayEquals("erode " + where, denseMorph(dense, w, h, kw, kh, false), actual);
+
+            mask.copyTo(dst);
+            dst.close(kw, kh);
+            dst.rasterize(actual);
+            byte[] closed = denseMorph(denseMorph(dense, w, h, kw, kh, true), w, h, kw, kh, false);
+            assertArrayEquals("close " + where, closed, actual);
+
+            mask.copyTo(dst);
+            dst.open(kw, kh);
+            dst.rasterize(actual);
+            byte[] opened = denseMorph(denseMorph(dense, w, h, kw, kh, false), w, h, kw, kh, true);
+            assertArrayEquals("open " + where, opened, actual);
+        }
+    }
+
+    @Test
+    public void labeling() {
+        BlobDetector detector = new BlobDetector();
+        Blobs blobs = new Blobs();
+        for (int t = 0; t < 100; t++) {
+            int w = 1 + random.nextInt(60), h = 1 + random.nextInt(40);
+            byte[] y = randomPlane(w, h);
+            detector.detect(y, w, h, 128, 1, Integer.MAX_VALUE, blobs);
+
+            // flood fill from every unvisited pixel in raster order gives the same blob order
+            boolean[] seen = new boolean[w * h];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            int blob = 0;
+            for (int start = 0; start < w * h; start++) {
+                if (seen[start] || (y[start] & 0xff) < 128)
+                    continue;
+                int area = 0, peak = 0, minX = w, minY = h, maxX = -1, maxY = -1;
+                long sx = 0, sy = 0;
+                seen[start] = true;
+                queue.add(start);
+                while (!queue.isEmpty()) {
+                    int i = queue.poll(), x = i % w, yy = i / w;
+                    area++;
+                    sx += x;
+                    sy += yy;
+                    peak = Math.max(peak, y[i] & 0xff);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, yy);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, yy);
+                    int[] next = {x > 0 ? i - 1 : -1, x < w - 1 ? i + 1 : -1, yy > 0 ? i - w : -1, yy < h - 1 ? i + w : -1};
+                    for (int n : next) {
+                        if (n >= 0 && !seen[n] && (y[n] & 0xff) >= 128) {
+                            seen[n] = true;
+                            queue.add(n);
+                        }
+                    }
+                }
+                assertEquals(area, blobs.area(blob));
+                assertEquals((float) sx / area, blobs.cx(blob), 1e-4f);
+                assertEquals((float) sy / area, blobs.cy(blob), 1e-4f);
+                assertEquals(minX, blobs.minX(blob));
+                assertEquals(minY, blobs.minY(blob));
+                assertEquals(maxX, blobs.maxX(blob));
+                assertEquals(maxY, blobs.maxY(blob));
+                assertEquals(peak, blobs.peak(blob));
+                blob++;
+            }
+            assertEquals(blob, blobs.size());
+        }
+    }
+
+    // clusters of bright pixels on a dark background, with random values on both sides of 128
+    private byte[] randomPlane(int w, int h) {
+        byte[] y = new byte[w * h];
+        double density = random.nextDouble() * 0.6;
+        for (int i = 0; i < y.length; i++) {
+            boolean bright = random.nextDouble() < density || (i > 0 && y[i - 1] < 0 && random.nextBoolean());
+            y[i] = (byte) (bright ? 128 + random.nextInt(128) : random.nextInt(128));
+        }
+        return y;
+    }
+
+    private static byte[] denseThreshold(byte[] y, int threshold) {
+        byte[] mask = new byte[y.length];
+        for (int i = 0; i < y.length; i++)
+            mask[i] = (y[i] & 0xff) >= threshold ? (byte) 255 : 0;
+        return mask;
+    }
+
+    // Imgproc.dilate()/erode() with a rectangle, anchor at the center, default border
+    private static byte[] denseMorph(byte[] src, int w, int h, int kw, int kh, boolean dilate) {
+        byte[] dst = new byte[src.length];
+        int ax = kw / 2, ay = kh / 2;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                boolean any = false, all = true;
+                for (int j = 0; j < kh; j++) {
+                    for (int i = 0; i < kw; i++) {
+                        int sx = x + i - ax, sy = y + j - ay;
+                        if (sx < 0 || sy < 0 || sx >= w || sy >= h)
+                            continue; // unset for dilation, set for erosion
+                        boolean set = src[sy * w + sx] != 0;
+                        any |= set;
+                        all &= set;
+                    }
+                }
+                dst[y * w + x] = (dilate ? any : all) ? (byte) 255 : 0;
+            }
+        }
+        return dst;
+    }
+
+    private static long count(byte[] mask) {
+        long n = 0;
+        for (byte b : mask)
+            if (b != 0)
+                n++;
+        return n;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.idtag.kernel;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SwarKernels against plain per-byte code, on all byte pairs and on random planes with odd offsets
+ * and lengths, so that the 8 byte path and the per-byte remainder are both covered.
+ */
+public class SwarKernelsTest {
+
+    private static final int SIZE = 1003;
+    private static final ByteOrder[] ORDERS = {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN};
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void laneOperationsOnAllBytePairs() {
+        for (int x = 0; x < 256; x++) {
+            for (int y = 0; y < 256; y += 8) {
+                long a = SwarKernels.broadcast(x), b = 0;
+                for (int lane = 0; lane < 8; lane++)
+                    b |= (long) (y + lane) << (8 * lane);
+                long ge = SwarKernels.geMask(a, b), max = SwarKernels.max(a, b);
+                for (int lane = 0; lane < 8; lane++) {
+                    int v = y + lane;
+                    assertEquals(x + " >= " + v, x >= v ? 0xFF : 0, (int) (ge >>> (8 * lane)) & 0xFF);
+                    assertEquals("max(" + x + ", " + v + ")", Math.max(x, v), (int) (max >>> (8 * lane)) & 0xFF);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void threshold() {
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer src = randomBuffer(SIZE, order, true);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(order);
+            for (int t : new int[] {-1, 0, 1, 50, 127, 128, 200, 254, 255}) {
+                for (int offset = 0; offset < 9; offset++) {
+                    int count = SIZE - offset - random.nextInt(9);
+                    clear(dst);
+                    SwarKernels.threshold(src, offset, dst, offset, count, t);
+                    for (int i = 0; i < SIZE; i++) {
+                        int expected = i < offset || i >= offset + count ? 0 : (src.get(i) & 0xff) > t ? 255 : 0;
+                        assertEquals("t=" + t + " at " + i, expected, dst.get(i) & 0xff);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void max3() {
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer a = randomBuffer(SIZE, order, true), b = randomBuffer(SIZE, order, true);
+            ByteBuffer c = randomBuffer(SIZE, order, false);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(order);
+            for (int count = 0; count < 40; count++) {
+                SwarKernels.max3(a, 3, b, 1, c, 0, dst, 5, count);
+                for (int i = 0; i < count; i++) {
+                    int expected = Math.max(Math.max(a.get(3 + i) & 0xff, b.get(1 + i) & 0xff), c.get(i) & 0xff);
+                    assertEquals("at " + i, expected, dst.get(5 + i) & 0xff);
+                }
+            }
+            SwarKernels.max3(a, 0, b, 0, c, 0, dst, 0, SIZE);
+            for (int i = 0; i < SIZE; i++)
+                assertEquals(Math.max(Math.max(a.get(i) & 0xff, b.get(i) & 0xff), c.get(i) & 0xff), dst.get(i) & 0xff);
+        }
+    }
+
+    @Test
+    public void maxRgba() {
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer src = randomBuffer(4 * SIZE + 4, order, true);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(order);
+            for (int offset = 0; offset < 5; offset++) {
+                int count = SIZE - random.nextInt(20);
+                clear(dst);
+                SwarKernels.maxRgba(src, offset, dst, 0, count);
+                for (int i = 0; i < count; i++) {
+                    int s = offset + 4 * i;
+                    int expected = Math.max(Math.max(src.get(s) & 0xff, src.get(s + 1) & 0xff), src.get(s + 2) & 0xff);
+                    assertEquals(order + " pixel " + i, expected, dst.get(i) & 0xff);
+                }
+                for (int i = count; i < SIZE; i++)
+                    assertEquals(0, dst.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void absDiff() {
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer a = randomBuffer(SIZE, order, true), b = randomBuffer(SIZE, order, false);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(order);
+            for (int offset = 0; offset < 9; offset++) {
+                int count = SIZE - offset;
+                SwarKernels.absDiff(a, offset, b, 0, dst, 0, count);
+                for (int i = 0; i < count; i++)
+                    assertEquals(Math.abs((a.get(offset + i) & 0xff) - (b.get(i) & 0xff)), dst.get(i) & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void subtractSaturate() {
+        for (ByteOrder order : ORDERS) {
+            ByteBuffer a = randomBuffer(SIZE, order, true), b = randomBuffer(SIZE, order, true);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(order);
+            for (int offset = 0; offset < 9; offset++) {
+                int count = SIZE - offset;
+                SwarKernels.subtractSaturate(a, 0, b, offset, dst, 0, count);
+                for (int i = 0; i < count; i++)
+                    assertEquals(Math.max((a.get(i) & 0xff) - (b.get(offset + i) & 0xff), 0), dst.get(i) & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void mixedByteOrders() {
+        // e.g. a native PixelCursor buffer into a big-endian allocateDirect() buffer
+        for (ByteOrder srcOrder : ORDERS) {
+            ByteOrder dstOrder = srcOrder == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            ByteBuffer a = randomBuffer(4 * SIZE, srcOrder, true), b = randomBuffer(SIZE, dstOrder, true);
+            ByteBuffer c = randomBuffer(SIZE, srcOrder, false);
+            ByteBuffer dst = ByteBuffer.allocateDirect(SIZE).order(dstOrder);
+            String orders = srcOrder + " into " + dstOrder + " at ";
+
+            SwarKernels.threshold(a, 0, dst, 0, SIZE, 100);
+            for (int i = 0; i < SIZE; i++)
+                assertEquals(orders + i, (a.get(i) & 0xff) > 100 ? 255 : 0, dst.get(i) & 0xff);
+
+            SwarKernels.max3(a, 0, b, 0, c, 0, dst, 0, SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                int expected = Math.max(Math.max(a.get(i) & 0xff, b.get(i) & 0xff), c.get(i) & 0xff);
+                assertEquals(orders + i, expected, dst.get(i) & 0xff);
+            }
+
+            SwarKernels.maxRgba(a, 0, dst, 0, SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                int s = 4 * i;
+                int expected = Math.max(Math.max(a.get(s) & 0xff, a.get(s + 1) & 0xff), a.get(s + 2) & 0xff);
+                assertEquals(orders + i, expected, dst.get(i) & 0xff);
+            }
+
+            SwarKernels.absDiff(a, 0, b, 0, dst, 0, SIZE);
+            for (int i = 0; i < SIZE; i++)
+                assertEquals(orders + i, Math.abs((a.get(i) & 0xff) - (b.get(i) & 0xff)), dst.get(i) & 0xff);
+
+            SwarKernels.subtractSaturate(a, 0, b, 0, dst, 0, SIZE);
+            for (int i = 0; i < SIZE; i++)
+                assertEquals(orders + i, Math.max((a.get(i) & 0xff) - (b.get(i) & 0xff), 0), dst.get(i) & 0xff);
+        }
+    }
+
+    @Test
+    public void inPlace() {
+        ByteBuffer a = randomBuffer(SIZE, ByteOrder.LITTLE_ENDIAN, true);
+        ByteBuffer b = randomBuffer(SIZE, ByteOrder.LITTLE_ENDIAN, true);
+        byte[] expected = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++)
+            expected[i] = (byte) Math.abs((a.get(i) & 0xff) - (b.get(i) & 0xff));
+        SwarKernels.absDiff(a, 0, b, 0, a, 0, SIZE);
+        for (int i = 0; i < SIZE; i++)
+            assertEquals(expected[i], a.get(i));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBounds() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(16);
+        SwarKernels.threshold(buf, 9, buf, 0, 8, 100);
+    }
+
+    // direct or heap buffer with random bytes, biased to the extremes where borrows show up
+    private ByteBuffer randomBuffer(int size, ByteOrder order, boolean direct) {
+        ByteBuffer buf = (direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size)).order(order);
+        for (int i = 0; i < size; i++) {
+            int r = random.nextInt(10);
+            buf.put(i, (byte) (r == 0 ? 0 : r == 1 ? 255 : r == 2 ? 127 + random.nextInt(3) : random.nextInt(256)));
+        }
+        return buf;
+    }
+
+    private static void clear(ByteBuffer buf) {
+        for (int i = 0; i < buf.limit(); i++)
+            buf.put(i, (byte) 0);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.idtag.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FrameBudgetGovernor on synthetic frame times: when it moves down and up the ladder, how the up
+ * dwell backs off and how the thermal status sets the floor.
+ */
+public class FrameBudgetGovernorTest {
+
+    private static final long BUDGET = 10_000_000L;
+    private static final long SLOW = 2 * BUDGET;
+    private static final long FAST = BUDGET / 10;
+    private static final long STEADY = (long) (BUDGET * 0.8); // between the two thresholds
+
+    private static FrameBudgetGovernor governor() {
+        return new FrameBudgetGovernor(BUDGET, "full", "half", "roi", "roiSparse");
+    }
+
+    // frames after a transition (or the start) until the given evaluation
+    private static int framesFor(int evaluations) {
+        return FrameBudgetGovernor.WINDOW + (evaluations - 1) * FrameBudgetGovernor.EVALUATE_FRAMES;
+    }
+
+    private static int feed(FrameBudgetGovernor g, long frameNs, int frames) {
+        int level = g.level();
+        for (int i = 0; i < frames; i++)
+            level = g.onFrame(frameNs);
+        return level;
+    }
+
+    @Test
+    public void downshiftAfterDownAfterEvaluations() {
+        FrameBudgetGovernor g = governor();
+        int frames = framesFor(FrameBudgetGovernor.DOWN_AFTER);
+        assertEquals(0, feed(g, SLOW, frames - 1));
+        assertEquals(1, feed(g, SLOW, 1));
+        assertEquals(1, g.downshifts());
+        assertEquals(1, g.entries(1));
+
+        // the new level is measured from scratch
+        assertEquals(1, feed(g, SLOW, frames - 1));
+        assertEquals(2, feed(g, SLOW, 1));
+    }
+
+    @Test
+    public void spikesAboveThePercentileDoNotDownshift() {
+        FrameBudgetGovernor g = governor();
+        // 3 slow frames in every 30, the slowest 10% of the window
+        for (int i = 0; i < framesFor(40); i++)
+            g.onFrame(i % 10 == 0 ? SLOW : STEADY);
+        assertEquals(0, g.level());
+        assertEquals(0, g.downshifts());
+    }
+
+    @Test
+    public void steadyBetweenThresholdsStays() {
+        FrameBudgetGovernor g = governor();
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER));
+        assertEquals(1, feed(g, STEADY, framesFor(100)));
+        assertEquals(0, g.upshifts());
+    }
+
+    @Test
+    public void upshiftOnlyAfterTheDwell() {
+        FrameBudgetGovernor g = governor();
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER));
+        int frames = framesFor(FrameBudgetGovernor.UP_AFTER);
+        assertEquals(1, feed(g, FAST, frames - 1));
+        assertEquals(0, feed(g, FAST, 1));
+        assertEquals(1, g.upshifts());
+    }
+
+    @Test
+    public void dwellDoublesOnQuickRefailUpToTheCap() {
+        FrameBudgetGovernor g = governor();
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER));
+        int dwell = FrameBudgetGovernor.UP_AFTER;
+        for (int cycle = 0; cycle < 6; cycle++) {
+            int frames = framesFor(dwell);
+            assertEquals("dwell " + dwell, 1, feed(g, FAST, frames - 1));
+            assertEquals("dwell " + dwell, 0, feed(g, FAST, 1));
+            // fails again right away
+            assertEquals(1, feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER)));
+            dwell = Math.min(dwell * 2, FrameBudgetGovernor.MAX_UP_AFTER);
+        }
+        assertEquals(FrameBudgetGovernor.MAX_UP_AFTER, dwell);
+    }
+
+    @Test
+    public void lateRefailKeepsTheDwell() {
+        FrameBudgetGovernor g = governor();
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER));
+        feed(g, FAST, framesFor(FrameBudgetGovernor.UP_AFTER));
+        assertEquals(0, g.level());
+        // holds longer than UP_AFTER evaluations before failing
+        feed(g, STEADY, framesFor(FrameBudgetGovernor.UP_AFTER + 2));
+        feed(g, SLOW, FrameBudgetGovernor.DOWN_AFTER * FrameBudgetGovernor.EVALUATE_FRAMES);
+        assertEquals(1, g.level());
+        int frames = framesFor(FrameBudgetGovernor.UP_AFTER);
+        assertEquals(1, feed(g, FAST, frames - 1));
+        assertEquals(0, feed(g, FAST, 1));
+    }
+
+    @Test
+    public void hotterStatusJumpsToItsFloor() {
+        FrameBudgetGovernor g = governor();
+        assertEquals(2, g.setThermalStatus(FrameBudgetGovernor.THERMAL_MODERATE));
+        assertEquals(2, g.thermalFloor());
+        assertEquals(1, g.downshifts());
+        // fast frames do not go above the floor
+        assertEquals(2, feed(g, FAST, framesFor(200)));
+        // beyond the ladder the floor is the last level
+        assertEquals(3, g.setThermalStatus(FrameBudgetGovernor.THERMAL_SHUTDOWN));
+    }
+
+    @Test
+    public void coolerStatusNeverUpshiftsByItself() {
+        FrameBudgetGovernor g = governor();
+        g.setThermalStatus(FrameBudgetGovernor.THERMAL_SEVERE);
+        assertEquals(3, g.level());
+        assertEquals(3, g.setThermalStatus(FrameBudgetGovernor.THERMAL_NONE));
+        assertEquals(0, g.thermalFloor());
+        assertEquals(3, feed(g, STEADY, framesFor(100)));
+        assertEquals(0, g.upshifts());
+        // fast frames climb one level per dwell
+        int frames = framesFor(FrameBudgetGovernor.UP_AFTER);
+        assertEquals(3, feed(g, FAST, frames - 1));
+        assertEquals(2, feed(g, FAST, 1));
+    }
+
+    @Test
+    public void coolerStatusResetsTheDwell() {
+        FrameBudgetGovernor g = governor();
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER));
+        feed(g, FAST, framesFor(FrameBudgetGovernor.UP_AFTER));
+        feed(g, SLOW, framesFor(FrameBudgetGovernor.DOWN_AFTER)); // dwell doubled
+        g.setThermalStatus(FrameBudgetGovernor.THERMAL_LIGHT);
+        g.setThermalStatus(FrameBudgetGovernor.THERMAL_NONE);
+        assertEquals(1, g.level());
+        int frames = framesFor(FrameBudgetGovernor.UP_AFTER);
+        assertEquals(1, feed(g, FAST, frames - 1));
+        assertEquals(0, feed(g, FAST, 1));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.idtag.benchmarks;
+
+import org.opencv.core.CvType;
+import org.opencv.core.DMatch;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.utils.Converters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java object list to Mat and back, serial paths only. Compares the allocating conversions with
+ * the reused destination Mat and the primitive array variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvertersBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private final List<Point> points = new ArrayList<>();
+    private final List<Rect> rects = new ArrayList<>();
+    private final List<KeyPoint> keyPoints = new ArrayList<>();
+    private final List<DMatch> matches = new ArrayList<>();
+    private int[] xy;
+    private int[] xyOut;
+
+    private final List<Point> pointsOut = new ArrayList<>();
+    private final List<Rect> rectsOut = new ArrayList<>();
+    private final List<KeyPoint> keyPointsOut = new ArrayList<>();
+    private final List<DMatch> matchesOut = new ArrayList<>();
+    private Mat dst;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        Converters.setParallelThreshold(Integer.MAX_VALUE);
+        Random random = new Random(42);
+        xy = new int[size * 2];
+        xyOut = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            int x = random.nextInt(1920), y = random.nextInt(1080);
+            points.add(new Point(x, y));
+            xy[i * 2] = x;
+            xy[i * 2 + 1] = y;
+            rects.add(new Rect(x, y, 1 + random.nextInt(64), 1 + random.nextInt(64)));
+            keyPoints.add(new KeyPoint(x, y, 31, random.nextFloat() * 360, random.nextFloat(), 0, -1));
+            matches.add(new DMatch(i, random.nextInt(size), random.nextFloat() * 256));
+        }
+        dst = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dst.release();
+        Converters.setParallelThreshold(32768);
+    }
+
+    @Benchmark
+    public List<Point> pointListNewMat() {
+        Mat m = Converters.vector_Point_to_Mat(points);
+        pointsOut.clear();
+        Converters.Mat_to_vector_Point(m, pointsOut);
+        m.release();
+        return pointsOut;
+    }
+
+    @Benchmark
+    public List<Point> pointListReusedMat() {
+        Converters.vector_Point_to_Mat(points, CvType.CV_32S, dst);
+        Converters.Mat_to_vector_Point(dst, pointsOut);
+        return pointsOut;
+    }
+
+    @Benchmark
+    public int[] pointArrayReusedMat() {
+        Converters.vector_Point_to_Mat(xy, size, dst);
+        Converters.Mat_to_vector_Point(dst, xyOut);
+        return xyOut;
+    }
+
+    @Benchmark
+    public List<Rect> rectListReusedMat() {
+        Converters.vector_Rect_to_Mat(rects, dst);
+        Converters.Mat_to_vector_Rect(dst, rectsOut);
+        return rectsOut;
+    }
+
+    @Benchmark
+    public List<KeyPoint> keyPointListReusedMat() {
+        Converters.vector_KeyPoint_to_Mat(keyPoints, dst);
+        Converters.Mat_to_vector_KeyPoint(dst, keyPointsOut);
+        return keyPointsOut;
+    }
+
+    @Benchmark
+    public List<DMatch> dMatchListReusedMat() {
+        Converters.vector_DMatch_to_Mat(matches, dst);
+        Converters.Mat_to_vector_DMatch(dst, matchesOut);
+        return matchesOut;
+    }
+}
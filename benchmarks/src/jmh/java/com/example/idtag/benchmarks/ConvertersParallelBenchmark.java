@@ -0,0 +1,103 @@
+package com.example.idtag.benchmarks;
+
+import org.opencv.core.DMatch;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.utils.Converters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serial against fork/join conversion of large vectors, to place Converters' parallel threshold.
+ * The crossover is the smallest size where "parallel" wins; run once per core count:
+ * <pre>
+ * ./gradlew :benchmarks:jmh -PjmhInclude=ConvertersParallel -PjmhCpus=4
+ * ./gradlew :benchmarks:jmh -PjmhInclude=ConvertersParallel -PjmhCpus=8
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvertersParallelBenchmark {
+
+    @Param({"1024", "4096", "16384", "65536", "262144"})
+    public int size;
+
+    @Param({"serial", "parallel"})
+    public String mode;
+
+    private final List<KeyPoint> keyPoints = new ArrayList<>();
+    private final List<Rect> rects = new ArrayList<>();
+    private final List<KeyPoint> keyPointsOut = new ArrayList<>();
+    private final List<DMatch> matchesOut = new ArrayList<>();
+    private Mat keyPointMat;
+    private Mat rectMat;
+    private Mat matchMat;
+    private Mat dst;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        Random random = new Random(7);
+        List<DMatch> matches = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            float x = random.nextFloat() * 1920, y = random.nextFloat() * 1080;
+            keyPoints.add(new KeyPoint(x, y, 31, random.nextFloat() * 360, random.nextFloat(), 0, -1));
+            rects.add(new Rect((int) x, (int) y, 8, 8));
+            matches.add(new DMatch(i, random.nextInt(size), random.nextFloat() * 256));
+        }
+        Converters.setParallelThreshold(Integer.MAX_VALUE);
+        keyPointMat = Converters.vector_KeyPoint_to_Mat(keyPoints);
+        rectMat = Converters.vector_Rect_to_Mat(rects);
+        matchMat = Converters.vector_DMatch_to_Mat(matches);
+        dst = new Mat();
+        Converters.setParallelThreshold("parallel".equals(mode) ? 1 : Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        keyPointMat.release();
+        rectMat.release();
+        matchMat.release();
+        dst.release();
+        Converters.setParallelThreshold(32768);
+    }
+
+    @Benchmark
+    public Mat keyPointsToMat() {
+        Converters.vector_KeyPoint_to_Mat(keyPoints, dst);
+        return dst;
+    }
+
+    @Benchmark
+    public List<KeyPoint> matToKeyPoints() {
+        Converters.Mat_to_vector_KeyPoint(keyPointMat, keyPointsOut);
+        return keyPointsOut;
+    }
+
+    @Benchmark
+    public List<DMatch> matToDMatches() {
+        Converters.Mat_to_vector_DMatch(matchMat, matchesOut);
+        return matchesOut;
+    }
+
+    @Benchmark
+    public Mat rectsToMat() {
+        Converters.vector_Rect_to_Mat(rects, dst);
+        return dst;
+    }
+}
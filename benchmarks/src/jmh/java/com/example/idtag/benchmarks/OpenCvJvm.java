@@ -0,0 +1,21 @@
+package com.example.idtag.benchmarks;
+
+/**
+ * Loads the desktop OpenCV JNI library that build.gradle extracts next to the benchmarks.
+ */
+final class OpenCvJvm {
+
+    // file name of the library in org.openpnp:opencv 4.8.1, without "lib" and ".so"
+    private static final String LIBRARY = "opencv_java481";
+
+    private static boolean sLoaded;
+
+    private OpenCvJvm() {}
+
+    static synchronized void load() {
+        if (!sLoaded) {
+            System.loadLibrary(LIBRARY);
+            sLoaded = true;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.idtag.benchmarks;
+
+import com.example.idtag.sim.SyntheticScene;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.PixelCursor;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-pixel Java kernels over a SyntheticScene luma frame: thresholding and an
+ * intensity-weighted centroid, on a byte[], through PixelCursor and, as the native baseline,
+ * with Imgproc.threshold().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PixelKernelBenchmark {
+
+    private static final int THRESHOLD = 200;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[] frame;
+    private byte[] mask;
+    private Mat heapMat;
+    private Mat directMat;
+    private Mat maskMat;
+    private final PixelCursor cursor = new PixelCursor();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        String[] wh = resolution.split("x");
+        width = Integer.parseInt(wh[0]);
+        height = Integer.parseInt(wh[1]);
+        SyntheticScene.Config config = new SyntheticScene.Config();
+        config.width = width;
+        config.height = height;
+        config.tagCount = 12;
+        frame = new byte[width * height];
+        new SyntheticScene(config).renderY(0, frame);
+        mask = new byte[frame.length];
+        heapMat = new Mat(height, width, CvType.CV_8UC1);
+        heapMat.put(0, 0, frame);
+        directMat = Mat.allocateDirect(height, width, CvType.CV_8UC1);
+        directMat.put(0, 0, frame);
+        maskMat = new Mat(height, width, CvType.CV_8UC1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cursor.release();
+        heapMat.release();
+        directMat.release();
+        maskMat.release();
+    }
+
+    @Benchmark
+    public byte[] thresholdByteArray() {
+        byte[] src = frame, dst = mask;
+        for (int i = 0; i < src.length; i++)
+            dst[i] = (src[i] & 0xff) > THRESHOLD ? (byte) 255 : 0;
+        return dst;
+    }
+
+    @Benchmark
+    public Mat thresholdNative() {
+        Imgproc.threshold(heapMat, maskMat, THRESHOLD, 255, Imgproc.THRESH_BINARY);
+        return maskMat;
+    }
+
+    @Benchmark
+    public double[] centroidByteArray() {
+        long sum = 0, sx = 0, sy = 0;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                int v = frame[i] & 0xff;
+                if (v > THRESHOLD) {
+                    sum += v;
+                    sx += (long) v * x;
+                    sy += (long) v * y;
+                }
+            }
+        }
+        return new double[] { (double) sx / sum, (double) sy / sum };
+    }
+
+    @Benchmark
+    public double[] centroidCursorDirect() {
+        return centroid(cursor.attach(directMat, false));
+    }
+
+    @Benchmark
+    public double[] centroidCursorCopied() {
+        return centroid(cursor.attach(heapMat, false));
+    }
+
+    private double[] centroid(PixelCursor c) {
+        ByteBuffer buf = c.buffer();
+        long sum = 0, sx = 0, sy = 0;
+        for (int y = 0; y < height; y++) {
+            int row = c.rowOffset(y);
+            for (int x = 0; x < width; x++) {
+                int v = buf.get(row + x) & 0xff;
+                if (v > THRESHOLD) {
+                    sum += v;
+                    sx += (long) v * x;
+                    sy += (long) v * y;
+                }
+            }
+        }
+        c.detach();
+        return new double[] { (double) sx / sum, (double) sy / sum };
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.idtag.benchmarks;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.PointBufferI;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contour geometry in Java on a PointBufferI against the Imgproc natives and against the
+ * MatOfPoint.toArray() route that creates a Point per vertex.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PointBufferBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int vertices;
+
+    private final PointBufferI buffer = new PointBufferI();
+    private final Rect rect = new Rect();
+    private MatOfPoint contour;
+    private Mat mat;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        // regular polygon, the shape of a blob outline
+        for (int i = 0; i < vertices; i++) {
+            double a = 2 * Math.PI * i / vertices;
+            buffer.add((int) Math.round(500 + 400 * Math.cos(a)), (int) Math.round(500 + 300 * Math.sin(a)));
+        }
+        contour = buffer.toMat();
+        mat = new Mat();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contour.release();
+        mat.release();
+    }
+
+    @Benchmark
+    public double areaJava() {
+        return buffer.area();
+    }
+
+    @Benchmark
+    public double areaNative() {
+        return Imgproc.contourArea(contour);
+    }
+
+    @Benchmark
+    public double areaViaPointArray() {
+        Point[] p = contour.toArray();
+        double twice = 0;
+        for (int i = 0, j = p.length - 1; i < p.length; j = i++)
+            twice += p[j].x * p[i].y - p[i].x * p[j].y;
+        return Math.abs(twice) / 2;
+    }
+
+    @Benchmark
+    public Rect boundingRectJava() {
+        return buffer.boundingRect(rect);
+    }
+
+    @Benchmark
+    public Rect boundingRectNative() {
+        return Imgproc.boundingRect(contour);
+    }
+
+    @Benchmark
+    public PointBufferI fromMatToMat() {
+        buffer.fromMat(contour);
+        buffer.toMat(mat);
+        return buffer;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.idtag.benchmarks;
+
+import com.example.idtag.detect.BlobDetector;
+import com.example.idtag.detect.Blobs;
+import com.example.idtag.detect.RunMask;
+import com.example.idtag.sim.SyntheticScene;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threshold, 15x15 close and labeling of a SyntheticScene luma frame with RunMask, against the
+ * dense OpenCV stages FrameProcessor uses for the same mask.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RunMaskBenchmark {
+
+    // same constants as FrameProcessor
+    private static final int THRESHOLD = 50;
+    private static final int KERNEL_SIZE = 15;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[] frame;
+    private final RunMask mask = new RunMask();
+    private final RunMask closed = new RunMask();
+    private final BlobDetector detector = new BlobDetector();
+    private final Blobs blobs = new Blobs();
+    private Mat gray;
+    private Mat denseMask;
+    private Mat kernel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        String[] wh = resolution.split("x");
+        width = Integer.parseInt(wh[0]);
+        height = Integer.parseInt(wh[1]);
+        SyntheticScene.Config config = new SyntheticScene.Config();
+        config.width = width;
+        config.height = height;
+        config.tagCount = 12;
+        frame = new byte[width * height];
+        new SyntheticScene(config).renderY(0, frame);
+        mask.threshold(frame, width, height, THRESHOLD);
+        gray = new Mat(height, width, CvType.CV_8UC1);
+        gray.put(0, 0, frame);
+        denseMask = new Mat(height, width, CvType.CV_8UC1);
+        kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(KERNEL_SIZE, KERNEL_SIZE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gray.release();
+        denseMask.release();
+        kernel.release();
+    }
+
+    @Benchmark
+    public RunMask thresholdRle() {
+        mask.threshold(frame, width, height, THRESHOLD);
+        return mask;
+    }
+
+    @Benchmark
+    public Mat thresholdDense() {
+        Imgproc.threshold(gray, denseMask, THRESHOLD - 1, 255, Imgproc.THRESH_BINARY);
+        return denseMask;
+    }
+
+    @Benchmark
+    public RunMask closeRle() {
+        mask.copyTo(closed);
+        closed.close(KERNEL_SIZE, KERNEL_SIZE);
+        return closed;
+    }
+
+    @Benchmark
+    public Mat closeDense() {
+        Imgproc.morphologyEx(denseMask, denseMask, Imgproc.MORPH_CLOSE, kernel);
+        return denseMask;
+    }
+
+    @Benchmark
+    public Blobs labelRle() {
+        detector.label(mask, frame, 1, Integer.MAX_VALUE, blobs);
+        return blobs;
+    }
+
+    @Benchmark
+    public Blobs detect() {
+        detector.detect(frame, width, height, THRESHOLD, 1, Integer.MAX_VALUE, blobs);
+        return blobs;
+    }
+}
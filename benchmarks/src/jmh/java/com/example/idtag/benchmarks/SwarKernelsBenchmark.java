@@ -0,0 +1,175 @@
+package com.example.idtag.benchmarks;
+
+import com.example.idtag.kernel.SwarKernels;
+import com.example.idtag.sim.SyntheticScene;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SwarKernels against the same operation one byte at a time through the same direct buffers and,
+ * as the native baseline, the OpenCV call the app would otherwise make. Frames are two consecutive
+ * SyntheticScene frames in Mat.allocateDirect() Mats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SwarKernelsBenchmark {
+
+    private static final int THRESHOLD = 200;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private int pixels;
+    private Mat grayA;
+    private Mat grayB;
+    private Mat rgba;
+    private Mat rgb;
+    private Mat hsv;
+    private Mat dst;
+    private ByteBuffer a;
+    private ByteBuffer b;
+    private ByteBuffer rgbaBuf;
+    private ByteBuffer out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OpenCvJvm.load();
+        String[] wh = resolution.split("x");
+        int width = Integer.parseInt(wh[0]), height = Integer.parseInt(wh[1]);
+        pixels = width * height;
+        SyntheticScene.Config config = new SyntheticScene.Config();
+        config.width = width;
+        config.height = height;
+        config.tagCount = 12;
+        SyntheticScene scene = new SyntheticScene(config);
+        byte[] frame = new byte[pixels];
+        byte[] frameRgba = new byte[pixels * 4];
+
+        grayA = Mat.allocateDirect(height, width, CvType.CV_8UC1);
+        scene.renderY(0, frame);
+        grayA.put(0, 0, frame);
+        grayB = Mat.allocateDirect(height, width, CvType.CV_8UC1);
+        scene.renderY(1, frame);
+        grayB.put(0, 0, frame);
+        rgba = Mat.allocateDirect(height, width, CvType.CV_8UC4);
+        scene.renderRgba(0, frameRgba);
+        rgba.put(0, 0, frameRgba);
+        rgb = new Mat(height, width, CvType.CV_8UC3);
+        hsv = new Mat(height, width, CvType.CV_8UC3);
+        dst = Mat.allocateDirect(height, width, CvType.CV_8UC1);
+
+        a = grayA.asByteBuffer();
+        b = grayB.asByteBuffer();
+        rgbaBuf = rgba.asByteBuffer();
+        out = dst.asByteBuffer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        grayA.release();
+        grayB.release();
+        rgba.release();
+        rgb.release();
+        hsv.release();
+        dst.release();
+    }
+
+    @Benchmark
+    public ByteBuffer thresholdScalar() {
+        for (int i = 0; i < pixels; i++)
+            out.put(i, (a.get(i) & 0xff) > THRESHOLD ? (byte) 255 : 0);
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer thresholdSwar() {
+        SwarKernels.threshold(a, 0, out, 0, pixels, THRESHOLD);
+        return out;
+    }
+
+    @Benchmark
+    public Mat thresholdNative() {
+        Imgproc.threshold(grayA, dst, THRESHOLD, 255, Imgproc.THRESH_BINARY);
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer valueScalar() {
+        for (int i = 0; i < pixels; i++) {
+            int s = 4 * i;
+            int v = Math.max(Math.max(rgbaBuf.get(s) & 0xff, rgbaBuf.get(s + 1) & 0xff), rgbaBuf.get(s + 2) & 0xff);
+            out.put(i, (byte) v);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer valueSwar() {
+        SwarKernels.maxRgba(rgbaBuf, 0, out, 0, pixels);
+        return out;
+    }
+
+    /** The V channel the way FrameProcessor gets it */
+    @Benchmark
+    public Mat valueNative() {
+        Imgproc.cvtColor(rgba, rgb, Imgproc.COLOR_RGBA2RGB);
+        Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+        Core.extractChannel(hsv, dst, 2);
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer absDiffScalar() {
+        for (int i = 0; i < pixels; i++)
+            out.put(i, (byte) Math.abs((a.get(i) & 0xff) - (b.get(i) & 0xff)));
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer absDiffSwar() {
+        SwarKernels.absDiff(a, 0, b, 0, out, 0, pixels);
+        return out;
+    }
+
+    @Benchmark
+    public Mat absDiffNative() {
+        Core.absdiff(grayA, grayB, dst);
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer subtractScalar() {
+        for (int i = 0; i < pixels; i++)
+            out.put(i, (byte) Math.max((a.get(i) & 0xff) - (b.get(i) & 0xff), 0));
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer subtractSwar() {
+        SwarKernels.subtractSaturate(a, 0, b, 0, out, 0, pixels);
+        return out;
+    }
+
+    @Benchmark
+    public Mat subtractNative() {
+        Core.subtract(grayA, grayB, dst);
+        return dst;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.idtag.benchmarks;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of the small core value types that the bindings create per element. Needs no native code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValueTypesBenchmark {
+
+    private double x = 12.5;
+    private double y = 7.25;
+    private final Point point = new Point(3, 4);
+    private final Rect rect = new Rect(10, 20, 30, 40);
+    private final Scalar scalar = new Scalar(1, 2, 3, 4);
+    private final Size size = new Size(1920, 1080);
+    private final double[] values = {5, 6, 7, 8};
+
+    @Benchmark
+    public Point pointNew() {
+        return new Point(x, y);
+    }
+
+    @Benchmark
+    public Point pointClone() {
+        return point.clone();
+    }
+
+    @Benchmark
+    public void pointEqualsHashCode(Blackhole bh) {
+        bh.consume(point.equals(new Point(3, 4)));
+        bh.consume(point.hashCode());
+    }
+
+    @Benchmark
+    public boolean rectContains() {
+        return rect.contains(new Point(x + 10, y + 20));
+    }
+
+    @Benchmark
+    public void rectCorners(Blackhole bh) {
+        bh.consume(rect.tl());
+        bh.consume(rect.br());
+        bh.consume(rect.area());
+    }
+
+    @Benchmark
+    public Rect rectFromArray() {
+        Rect r = new Rect();
+        r.set(values);
+        return r;
+    }
+
+    @Benchmark
+    public Scalar scalarMul() {
+        return scalar.mul(scalar, 0.5);
+    }
+
+    @Benchmark
+    public Scalar scalarAll() {
+        return Scalar.all(x);
+    }
+
+    @Benchmark
+    public double sizeArea() {
+        return size.area();
+    }
+
+    @Benchmark
+    public Size sizeClone() {
+        return size.clone();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.idtag.microbenchmark;
+
+import android.graphics.Bitmap;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatPool;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Each stage of the FrameProcessor pipeline in isolation, plus the whole pipeline, on a synthetic
+ * frame with a few bright discs. Buffers are allocated before measuring, as the app does with the
+ * MatPool, so the numbers are the steady state per-frame cost.
+ */
+@RunWith(Parameterized.class)
+public class PipelineStageBenchmark {
+
+    // same constants as FrameProcessor
+    private static final double HIGH_INTENSITY_THRESHOLD = 50;
+    private static final Scalar HIGHLIGHT_COLOR = new Scalar(0, 255, 0);
+    private static final int KERNEL_SIZE = 15;
+
+    @Parameterized.Parameters(name = "{0}x{1}")
+    public static List<Object[]> resolutions() {
+        return Arrays.asList(new Object[][] {
+                { 1280, 720 },
+                { 1920, 1080 },
+                { 3840, 2160 },
+        });
+    }
+
+    @Rule
+    public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int width;
+    private final int height;
+
+    private Bitmap input;
+    private Bitmap output;
+    private Mat frame;
+    private Mat rgb;
+    private Mat hsv;
+    private Mat valueChannel;
+    private Mat mask;
+    private Mat kernel;
+    private final List<Mat> channels = new ArrayList<>();
+
+    public PipelineStageBenchmark(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @BeforeClass
+    public static void loadOpenCv() {
+        assertTrue("OpenCV not loaded", OpenCVLoader.initDebug());
+    }
+
+    @Before
+    public void setUp() {
+        frame = new Mat(height, width, CvType.CV_8UC4);
+        syntheticFrame(frame, new Random(1));
+        input = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Utils.matToBitmap(frame, input);
+        output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+        rgb = new Mat(height, width, CvType.CV_8UC3);
+        hsv = new Mat(height, width, CvType.CV_8UC3);
+        valueChannel = new Mat(height, width, CvType.CV_8UC1);
+        mask = new Mat(height, width, CvType.CV_8UC1);
+        kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(KERNEL_SIZE, KERNEL_SIZE));
+
+        // inputs of the later stages, as the earlier stages leave them
+        Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_RGBA2RGB);
+        Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+        Core.extractChannel(hsv, valueChannel, 2);
+        Imgproc.threshold(valueChannel, mask, HIGH_INTENSITY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+    }
+
+    @After
+    public void tearDown() {
+        for (Mat m : channels)
+            m.release();
+        frame.release();
+        rgb.release();
+        hsv.release();
+        valueChannel.release();
+        mask.release();
+        kernel.release();
+        input.recycle();
+        output.recycle();
+    }
+
+    @Test
+    public void bitmapToMat() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Utils.bitmapToMat(input, frame, false);
+        }
+    }
+
+    @Test
+    public void bitmapToMatPooled() {
+        MatPool pool = new MatPool(64L * 1024 * 1024);
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            pool.release(Utils.bitmapToMat(input, pool, false));
+        }
+        pool.clear();
+    }
+
+    @Test
+    public void cvtColorRgbaToRgb() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_RGBA2RGB);
+        }
+    }
+
+    @Test
+    public void cvtColorRgbToHsv() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+        }
+    }
+
+    @Test
+    public void split() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // Core.split() creates new Mats on every call, freeing them is part of its cost
+            Core.split(hsv, channels);
+            for (Mat m : channels)
+                m.release();
+            channels.clear();
+        }
+    }
+
+    @Test
+    public void extractChannel() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Core.extractChannel(hsv, valueChannel, 2);
+        }
+    }
+
+    @Test
+    public void threshold() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Imgproc.threshold(valueChannel, mask, HIGH_INTENSITY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+        }
+    }
+
+    @Test
+    public void morphologyExClose() {
+        Mat closed = new Mat(height, width, CvType.CV_8UC1);
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Imgproc.morphologyEx(mask, closed, Imgproc.MORPH_CLOSE, kernel);
+        }
+        closed.release();
+    }
+
+    @Test
+    public void setToMasked() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            frame.setTo(HIGHLIGHT_COLOR, mask).release();
+        }
+    }
+
+    @Test
+    public void matToBitmap() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Utils.matToBitmap(frame, output);
+        }
+    }
+
+    @Test
+    public void fullPipeline() {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Utils.bitmapToMat(input, frame, false);
+            Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_RGBA2RGB);
+            Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+            Core.extractChannel(hsv, valueChannel, 2);
+            Imgproc.threshold(valueChannel, mask, HIGH_INTENSITY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+            Imgproc.morphologyEx(mask, mask, Imgproc.MORPH_CLOSE, kernel);
+            frame.setTo(HIGHLIGHT_COLOR, mask).release();
+            Utils.matToBitmap(frame, output);
+        }
+    }
+
+    /**
+     * Dark noisy background with a dozen saturated discs, roughly what the camera sees of a lit tag.
+     */
+    private static void syntheticFrame(Mat rgba, Random random) {
+        Mat noise = new Mat(rgba.rows(), rgba.cols(), CvType.CV_8UC3);
+        Core.randu(noise, 0, 60);
+        Imgproc.cvtColor(noise, rgba, Imgproc.COLOR_RGB2RGBA); // opaque
+        noise.release();
+        int minSide = Math.min(rgba.cols(), rgba.rows());
+        for (int i = 0; i < 12; i++) {
+            Point center = new Point(random.nextInt(rgba.cols()), random.nextInt(rgba.rows()));
+            int radius = minSide / 100 + random.nextInt(minSide / 40);
+            Imgproc.circle(rgba, center, radius, new Scalar(250, 250, 250, 255), -1);
+        }
+    }
+}